@@ -1,5 +1,6 @@
 package ednel;
 
+import ednel.data.DatasetCache;
 import ednel.eda.RunFoldOfTenFoldCrossValidation;
 import ednel.utils.PBILLogger;
 import ednel.utils.operators.*;
@@ -64,19 +65,35 @@ public class Main {
 
     public static HashMap<String, Instances> loadDataset(
             String datasets_path, String dataset_name, int n_fold) throws Exception {
+        return Main.loadDataset(datasets_path, dataset_name, n_fold, false);
+    }
+
+    /**
+     * Loads the training and test sets of a fold of a dataset.
+     *
+     * @param datasets_path Path where all datasets are stored.
+     * @param dataset_name Name of dataset desired to be open
+     * @param n_fold Fold of the 10-fold cross-validation, starting at 1
+     * @param streaming Whether ARFF files are streamed (one row at a time) instead of read as a whole, for very large
+     *                  datasets
+     * @return A HashMap with the training (train_data) and test (test_data) sets.
+     */
+    public static HashMap<String, Instances> loadDataset(
+            String datasets_path, String dataset_name, int n_fold, boolean streaming) throws Exception {
 
         HashMap<String, Instances> datasets = new HashMap<>();
 
-        ConverterUtils.DataSource train_set = new ConverterUtils.DataSource(
+        // files are parsed only once; later loads read a binary copy of them
+        Instances train_data = DatasetCache.load(
                 datasets_path + File.separator +
-                        dataset_name + File.separator + dataset_name + "-10-" + n_fold + "tra.arff"
+                        dataset_name + File.separator + dataset_name + "-10-" + n_fold + "tra.arff",
+                streaming
         );
-        ConverterUtils.DataSource test_set = new ConverterUtils.DataSource(
+        Instances test_data = DatasetCache.load(
                 datasets_path + File.separator +
-                        dataset_name + File.separator + dataset_name + "-10-" + n_fold + "tst.arff"
+                        dataset_name + File.separator + dataset_name + "-10-" + n_fold + "tst.arff",
+                streaming
         );
-
-        Instances train_data = train_set.getDataSet(), test_data = test_set.getDataSet();
         train_data.setClassIndex(train_data.numAttributes() - 1);
         test_data.setClassIndex(test_data.numAttributes() - 1);
 
@@ -278,6 +295,15 @@ public class Main {
                 .desc("Whether to log metadata to files.")
                 .build());
 
+        options.addOption(Option.builder()
+                .longOpt("stream_arff")
+                .type(Boolean.class)
+                .required(false)
+                .hasArg(false)
+                .desc("Whether to stream ARFF files (one row at a time) when loading them, instead of reading them " +
+                        "as a whole. Reduces peak memory for very large datasets.")
+                .build());
+
         //        options.addOption(Option.builder()
 //                .longOpt("early_stop_tolerance")
 //                .type(Integer.class)
@@ -307,6 +333,7 @@ public class Main {
         // boolean parameters
         options.put("log", cmd.hasOption("log")? "true" : "false");
         options.put("no_cycles", cmd.hasOption("no_cycles")? "true" : "false");
+        options.put("stream_arff", cmd.hasOption("stream_arff")? "true" : "false");
 
         // checks if datasets_path and metadata_path exists
         String[] check_exists = {"datasets_path", "metadata_path"};
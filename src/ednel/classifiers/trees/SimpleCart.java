@@ -21,6 +21,9 @@
 
 package ednel.classifiers.trees;
 
+import ednel.data.ColumnarDataset;
+import ednel.data.DatasetView;
+import ednel.utils.PresortedIndex;
 import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableClassifier;
 import weka.core.*;
@@ -31,6 +34,10 @@ import weka.core.converters.ConverterUtils;
 import weka.core.matrix.Matrix;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start --> Class implementing minimal cost-complexity pruning.<br/>
@@ -109,6 +116,18 @@ import java.util.*;
  *  Percentage of training data size (0-1].
  *  (default 1).
  * </pre>
+ *
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots used to grow the trees of the pruning folds.
+ *  (default 1 - i.e. no parallelism; 0 - use all available processors)
+ * </pre>
+ *
+ * <pre>
+ * -B &lt;num bins&gt;
+ *  Maximum number of bins of numeric attributes when searching for splits.
+ *  (default 0 - i.e. evaluate every distinct value)
+ * </pre>
  * <p>
  * <!-- options-end -->
  *
@@ -123,6 +142,18 @@ public class SimpleCart extends RandomizableClassifier implements
      */
     private static final long serialVersionUID = 4154189200352566053L;
 
+    /**
+     * Largest number of values of a nominal attribute (that reach a node) for
+     * which all subsets are evaluated in multi-class problems.
+     */
+    protected static final int MAX_EXHAUSTIVE_VALUES = 12;
+
+    /**
+     * Maximum number of moves, per value of a nominal attribute, made by the
+     * greedy refinement of a split subset.
+     */
+    protected static final int MAX_GREEDY_STEPS = 2;
+
     /**
      * Training data.
      */
@@ -144,7 +175,13 @@ public class SimpleCart extends RandomizableClassifier implements
     protected double m_SplitValue;
 
     /**
-     * Split subset used to split data for nominal attributes.
+     * Split subset used to split data for nominal attributes, as a bitmask: bit v
+     * is set if instances with the v-th value go to the first successor.
+     */
+    protected long[] m_SplitSubset;
+
+    /**
+     * Description of the split subset, for output.
      */
     protected String m_SplitString;
 
@@ -231,6 +268,472 @@ public class SimpleCart extends RandomizableClassifier implements
      */
     protected double m_SizePer = 1;
 
+    /**
+     * Number of threads used to grow the trees of the pruning folds (0 for all available processors).
+     */
+    protected int m_numExecutionSlots = 1;
+
+    /**
+     * Threads that grow the trees of pruning folds, shared by all instances.
+     */
+    private static volatile ExecutorService m_FoldPool = null;
+
+    /**
+     * Maximum number of bins of numeric attributes, in histogram mode (0 to
+     * evaluate every distinct value).
+     */
+    protected int m_numBins = 0;
+
+    /**
+     * Bins of numeric attributes, set before growing a node in histogram mode.
+     */
+    protected transient HistogramBins m_Bins = null;
+
+    /**
+     * Class histograms of numeric attributes at the node, set before growing a
+     * node in histogram mode.
+     */
+    protected transient double[][][] m_Histograms = null;
+
+    /**
+     * Flattened form of the tree, used for inference; built once training is
+     * over, and discarded whenever the tree is pruned again.
+     */
+    protected CompiledTree m_Compiled = null;
+
+    /**
+     * A tree flattened into parallel arrays, one entry per node in pre-order, so
+     * that predictions are made with a loop over arrays instead of recursive
+     * calls over node objects.
+     */
+    protected static class CompiledTree implements java.io.Serializable {
+
+        private static final long serialVersionUID = -2461931047236245876L;
+
+        /**
+         * Index of the split attribute of each node; -1 for leaves.
+         */
+        protected int[] attribute;
+
+        /**
+         * Split point of nodes split on numeric attributes.
+         */
+        protected double[] threshold;
+
+        /**
+         * Bitmask of the values that go to the left successor, for nodes split on
+         * nominal attributes; null otherwise.
+         */
+        protected long[][] subset;
+
+        /**
+         * Index of left and right successors of each node.
+         */
+        protected int[] left;
+        protected int[] right;
+
+        /**
+         * Proportion of instances that went to the left and right successors of
+         * each node, used when the value of the split attribute is missing.
+         */
+        protected double[] propLeft;
+        protected double[] propRight;
+
+        /**
+         * Class probabilities of each leaf; null for inner nodes, and for leaves
+         * no instance reached.
+         */
+        protected double[][] leafDist;
+
+        /**
+         * Attributes used in splits.
+         */
+        protected int[] usedAttributes;
+
+        protected int numClasses;
+
+        /**
+         * Maximum number of nodes pending visit while traversing the tree.
+         */
+        protected int maxPending;
+
+        protected CompiledTree(SimpleCart root, int numClasses) {
+            this.numClasses = numClasses;
+
+            ArrayList<SimpleCart> nodes = new ArrayList<SimpleCart>();
+            ArrayList<Integer> depths = new ArrayList<Integer>();
+            collect(root, 0, nodes, depths);
+
+            int numNodes = nodes.size();
+            attribute = new int[numNodes];
+            threshold = new double[numNodes];
+            subset = new long[numNodes][];
+            left = new int[numNodes];
+            right = new int[numNodes];
+            propLeft = new double[numNodes];
+            propRight = new double[numNodes];
+            leafDist = new double[numNodes][];
+
+            IdentityHashMap<SimpleCart, Integer> offsets = new IdentityHashMap<SimpleCart, Integer>();
+            for (int n = 0; n < numNodes; n++) {
+                offsets.put(nodes.get(n), n);
+            }
+
+            TreeSet<Integer> used = new TreeSet<Integer>();
+            maxPending = 1;
+            for (int n = 0; n < numNodes; n++) {
+                SimpleCart node = nodes.get(n);
+                maxPending = Math.max(maxPending, depths.get(n) + 2);
+                if (isLeaf(node)) {
+                    attribute[n] = -1;
+                    leafDist[n] = node.m_ClassProbs;
+                    continue;
+                }
+                attribute[n] = node.m_Attribute.index();
+                used.add(attribute[n]);
+                left[n] = offsets.get(node.m_Successors[0]);
+                right[n] = offsets.get(node.m_Successors[1]);
+                propLeft[n] = node.m_Props[0];
+                propRight[n] = node.m_Props[1];
+                if (node.m_Attribute.isNominal()) {
+                    subset[n] = node.m_SplitSubset.clone();
+                } else {
+                    threshold[n] = node.m_SplitValue;
+                }
+            }
+            usedAttributes = new int[used.size()];
+            int counter = 0;
+            for (Integer attIndex : used) {
+                usedAttributes[counter++] = attIndex;
+            }
+        }
+
+        private static boolean isLeaf(SimpleCart node) {
+            return node.m_isLeaf || node.m_Attribute == null || node.m_Successors == null;
+        }
+
+        private static void collect(SimpleCart node, int depth, ArrayList<SimpleCart> nodes,
+                                    ArrayList<Integer> depths) {
+            nodes.add(node);
+            depths.add(depth);
+            if (!isLeaf(node)) {
+                for (SimpleCart successor : node.m_Successors) {
+                    collect(successor, depth + 1, nodes, depths);
+                }
+            }
+        }
+
+        /**
+         * Adds the class probabilities of an instance to dist.
+         *
+         * @param columns      values of instances, one array per attribute
+         *                     (only the ones of used attributes are read)
+         * @param row          index of the instance in columns
+         * @param dist         array where class probabilities are added to
+         * @param pendingNodes scratch array with maxPending entries
+         * @param pendingProps scratch array with maxPending entries
+         */
+        protected void distribution(double[][] columns, int row, double[] dist,
+                                    int[] pendingNodes, double[] pendingProps) {
+            int numPending = 1;
+            pendingNodes[0] = 0;
+            pendingProps[0] = 1;
+
+            while (numPending > 0) {
+                numPending--;
+                int n = pendingNodes[numPending];
+                double prop = pendingProps[numPending];
+
+                // descends until a leaf or a missing value is found
+                while (attribute[n] != -1) {
+                    double value = columns[attribute[n]][row];
+                    if (Double.isNaN(value)) {
+                        // visits the right successor later, and the left one now
+                        pendingNodes[numPending] = right[n];
+                        pendingProps[numPending] = prop * propRight[n];
+                        numPending++;
+                        prop *= propLeft[n];
+                        n = left[n];
+                    } else if (subset[n] != null) {
+                        int v = (int) value;
+                        n = (subset[n][v >>> 6] & (1L << v)) != 0 ? left[n] : right[n];
+                    } else {
+                        n = value < threshold[n] ? left[n] : right[n];
+                    }
+                }
+                if (leafDist[n] != null) {
+                    for (int k = 0; k < numClasses; k++) {
+                        dist[k] += prop * leafDist[n][k];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Predicts class probabilities of a batch of instances.
+         *
+         * @param columns values of instances, one array per attribute (only the
+         *                ones of used attributes are read)
+         * @param numRows number of instances
+         * @return class probabilities of each instance
+         */
+        protected double[][] distributions(double[][] columns, int numRows) {
+            int[] pendingNodes = new int[maxPending];
+            double[] pendingProps = new double[maxPending];
+
+            double[][] dists = new double[numRows][numClasses];
+            for (int i = 0; i < numRows; i++) {
+                distribution(columns, i, dists[i], pendingNodes, pendingProps);
+            }
+            return dists;
+        }
+
+        /**
+         * Copies the values of used attributes of a batch of instances into
+         * columns.
+         *
+         * @param batch instances
+         * @return one array per attribute, with values of used attributes only
+         */
+        protected double[][] toColumns(Instances batch) {
+            double[][] columns = new double[batch.numAttributes()][];
+            for (int attIndex : usedAttributes) {
+                columns[attIndex] = new double[batch.numInstances()];
+            }
+            for (int i = 0; i < batch.numInstances(); i++) {
+                Instance instance = batch.instance(i);
+                for (int attIndex : usedAttributes) {
+                    columns[attIndex][i] = instance.value(attIndex);
+                }
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Quantile bins of the numeric attributes of a dataset, for the histogram
+     * mode of split search.
+     */
+    protected static class HistogramBins {
+        /**
+         * For each numeric attribute, bin of each instance (-1 for missing values).
+         */
+        protected int[][] binOf;
+
+        /**
+         * For each numeric attribute, smallest and largest value in each bin.
+         */
+        protected double[][] binMin;
+        protected double[][] binMax;
+
+        /**
+         * Class value of each instance.
+         */
+        protected int[] classOf;
+
+        /**
+         * Bins numeric attributes in at most numBins bins with (roughly) the same
+         * number of instances. Instances with the same value always share a bin,
+         * so if an attribute has at most numBins distinct values, each value is a
+         * bin of its own.
+         *
+         * @param data          training instances
+         * @param sortedIndices sorted indices of instances for each attribute
+         * @param numBins       maximum number of bins
+         */
+        protected HistogramBins(Instances data, int[][] sortedIndices, int numBins) {
+            binOf = new int[data.numAttributes()][];
+            binMin = new double[data.numAttributes()][];
+            binMax = new double[data.numAttributes()][];
+
+            classOf = new int[data.numInstances()];
+            for (int i = 0; i < data.numInstances(); i++) {
+                classOf[i] = (int) data.instance(i).classValue();
+            }
+
+            for (int j = 0; j < data.numAttributes(); j++) {
+                if (j == data.classIndex() || !data.attribute(j).isNumeric()) {
+                    continue;
+                }
+                binOf[j] = new int[data.numInstances()];
+                Arrays.fill(binOf[j], -1);
+
+                int numValues = 0;
+                while (numValues < sortedIndices[j].length
+                        && !data.instance(sortedIndices[j][numValues]).isMissing(j)) {
+                    numValues++;
+                }
+
+                int numDistinct = 0;
+                for (int i = 0; i < numValues; i++) {
+                    if (i == 0 || data.instance(sortedIndices[j][i]).value(j)
+                            > data.instance(sortedIndices[j][i - 1]).value(j)) {
+                        numDistinct++;
+                    }
+                }
+                boolean exact = numDistinct <= numBins;
+
+                double[] mins = new double[Math.max(1, Math.min(numBins, numDistinct))];
+                double[] maxs = new double[mins.length];
+                int bin = -1;
+                double prev = Double.NaN;
+                for (int i = 0; i < numValues; i++) {
+                    double value = data.instance(sortedIndices[j][i]).value(j);
+                    // starts a new bin at every distinct value, if there are few of them, or
+                    // else once the quota of the current bin is met; never between two
+                    // equal values
+                    if (bin == -1 || (value > prev && (exact || (i >= (long) (bin + 1) * numValues / mins.length
+                            && bin + 1 < mins.length)))) {
+                        bin++;
+                        mins[bin] = value;
+                    }
+                    maxs[bin] = value;
+                    binOf[j][sortedIndices[j][i]] = bin;
+                    prev = value;
+                }
+                binMin[j] = Arrays.copyOf(mins, bin + 1);
+                binMax[j] = Arrays.copyOf(maxs, bin + 1);
+            }
+        }
+
+        /**
+         * Computes class histograms of numeric attributes for the instances at a
+         * node.
+         *
+         * @param sortedIndices sorted indices of instances at the node
+         * @param weights       weights of instances at the node
+         * @param numClasses    number of classes
+         * @return for each numeric attribute, the class distribution of each bin
+         */
+        protected double[][][] histograms(int[][] sortedIndices, double[][] weights,
+                                          int numClasses) {
+            double[][][] histograms = new double[binOf.length][][];
+            for (int j = 0; j < binOf.length; j++) {
+                if (binOf[j] == null) {
+                    continue;
+                }
+                histograms[j] = new double[binMin[j].length][numClasses];
+                for (int i = 0; i < sortedIndices[j].length; i++) {
+                    int bin = binOf[j][sortedIndices[j][i]];
+                    if (bin == -1) {
+                        break; // missing values are at the end
+                    }
+                    histograms[j][bin][classOf[sortedIndices[j][i]]] += weights[j][i];
+                }
+            }
+            return histograms;
+        }
+
+        /**
+         * Computes the class histograms of a node from the ones of its parent and
+         * of its sibling.
+         *
+         * @param parent  histograms of the parent node
+         * @param sibling histograms of the sibling node
+         * @return histograms of the node
+         */
+        protected static double[][][] subtract(double[][][] parent, double[][][] sibling) {
+            double[][][] histograms = new double[parent.length][][];
+            for (int j = 0; j < parent.length; j++) {
+                if (parent[j] == null) {
+                    continue;
+                }
+                histograms[j] = new double[parent[j].length][];
+                for (int b = 0; b < parent[j].length; b++) {
+                    histograms[j][b] = new double[parent[j][b].length];
+                    for (int c = 0; c < parent[j][b].length; c++) {
+                        double diff = parent[j][b][c] - sibling[j][b][c];
+                        // discards rounding errors of subtraction
+                        histograms[j][b][c] = diff > 1e-9 ? diff : 0;
+                    }
+                }
+            }
+            return histograms;
+        }
+    }
+
+    /**
+     * Buffers used while searching for the split of a node, kept per thread and
+     * reused across candidate splits, attributes, nodes and trees, so that
+     * evaluating a candidate split allocates no memory.
+     */
+    protected static class SplitScratch {
+        private static final ThreadLocal<SplitScratch> LOCAL = ThreadLocal.withInitial(SplitScratch::new);
+
+        /**
+         * Class distributions of the two branches, without missing values.
+         */
+        protected double[][] currDist = new double[2][0];
+
+        /**
+         * Total weights of the two branches, without missing values.
+         */
+        protected double[] currWeights = new double[2];
+
+        /**
+         * Class distributions of the two branches, with missing values split
+         * among them; filled by computeGiniGain.
+         */
+        protected double[][] tempDist = new double[2][0];
+
+        /**
+         * Class distribution of the node.
+         */
+        protected double[] parentDist = new double[0];
+
+        /**
+         * Class distribution of instances with missing values at the node.
+         */
+        protected double[] missingDist = new double[0];
+
+        /**
+         * Class distribution of each value of a nominal attribute.
+         */
+        protected double[][] valueDist = new double[0][0];
+
+        /**
+         * Number of classes of the current search.
+         */
+        protected int numClasses;
+
+        /**
+         * Returns the buffers of the current thread, cleared for a new search.
+         *
+         * @param numClasses number of classes
+         * @param numValues  number of values of the attribute (0 for numeric
+         *                   attributes)
+         * @return buffers of the current thread
+         */
+        protected static SplitScratch get(int numClasses, int numValues) {
+            SplitScratch scratch = LOCAL.get();
+            scratch.clear(numClasses, numValues);
+            return scratch;
+        }
+
+        private void clear(int numClasses, int numValues) {
+            this.numClasses = numClasses;
+            if (parentDist.length < numClasses) {
+                currDist = new double[2][numClasses];
+                tempDist = new double[2][numClasses];
+                parentDist = new double[numClasses];
+                missingDist = new double[numClasses];
+                valueDist = new double[valueDist.length][numClasses];
+            }
+            if (valueDist.length < numValues) {
+                valueDist = new double[numValues][parentDist.length];
+            }
+            for (int k = 0; k < 2; k++) {
+                Arrays.fill(currDist[k], 0, numClasses, 0);
+                currWeights[k] = 0;
+            }
+            Arrays.fill(parentDist, 0, numClasses, 0);
+            Arrays.fill(missingDist, 0, numClasses, 0);
+            for (int v = 0; v < numValues; v++) {
+                Arrays.fill(valueDist[v], 0, numClasses, 0);
+            }
+        }
+    }
+
     /**
      * Return a description suitable for displaying in the explorer/experimenter.
      *
@@ -287,6 +790,45 @@ public class SimpleCart extends RandomizableClassifier implements
         return result;
     }
 
+    /**
+     * Checks whether some instance of a dataset has a missing class value.
+     *
+     * @param data the dataset
+     * @return true if any class value is missing
+     */
+    protected static boolean hasMissingClass(Instances data) {
+        for (int i = 0; i < data.numInstances(); i++) {
+            if (data.instance(i).classIsMissing()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the threads shared by all instances of this class for growing the
+     * trees of pruning folds. There are as many threads as available processors,
+     * no matter how many trees are built at the same time; threads are daemons,
+     * and are created on first use.
+     *
+     * @return the executor of pruning folds
+     */
+    protected static ExecutorService getFoldPool() {
+        if (m_FoldPool == null) {
+            synchronized (SimpleCart.class) {
+                if (m_FoldPool == null) {
+                    m_FoldPool = Executors.newFixedThreadPool(
+                            Runtime.getRuntime().availableProcessors(), runnable -> {
+                                Thread thread = new Thread(runnable, "SimpleCart-pruning-fold");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                }
+            }
+        }
+        return m_FoldPool;
+    }
+
     /**
      * Build the classifier.
      *
@@ -297,67 +839,89 @@ public class SimpleCart extends RandomizableClassifier implements
     public void buildClassifier(Instances data) throws Exception {
 
         getCapabilities().testWithFail(data);
-        data = new Instances(data);
-        data.deleteWithMissingClass();
+
+        // training data is only read from, so it is only copied if instances
+        // have to be removed
+        if (hasMissingClass(data)) {
+            data = new Instances(data);
+            data.deleteWithMissingClass();
+        }
+
+        // instances are sorted once per dataset; the orders of data and of the
+        // pruning folds are filtered from the index of the dataset behind data
+        DatasetView view = DatasetView.viewOf(data);
+        if (view == null) {
+            view = ColumnarDataset.of(data).all();
+        }
+        PresortedIndex index = view.getDataset().getPresortedIndex();
 
         // unpruned CART decision tree
         if (!m_Prune) {
 
             // calculate sorted indices and weights, and compute initial class counts.
-            int[][] sortedIndices = new int[data.numAttributes()][0];
+            int[][] sortedIndices = index.getSortedIndices(view.getRows());
             double[][] weights = new double[data.numAttributes()][0];
             double[] classProbs = new double[data.numClasses()];
             double totalWeight = computeSortedInfo(data, sortedIndices, weights,
-                    classProbs);
+                    classProbs, true);
+            initHistograms(data, sortedIndices, weights);
 
             makeTree(data, data.numInstances(), sortedIndices, weights, classProbs,
                     totalWeight, m_minNumObj, m_Heuristic);
+            m_Compiled = new CompiledTree(this, data.numClasses());
             return;
         }
 
+        // same instances, in the same order, as randomizing, truncating and
+        // stratifying a copy of data
         Random random = new Random(m_Seed);
-        Instances cvData = new Instances(data);
-        cvData.randomize(random);
-        cvData = new Instances(cvData, 0,
-                (int) (cvData.numInstances() * m_SizePer) - 1);
-        cvData.stratify(m_numFoldsPruning);
+        DatasetView cvView = view.shuffle(random);
+        int[] cvPositions = new int[Math.max((int) (cvView.size() * m_SizePer) - 1, 0)];
+        for (int i = 0; i < cvPositions.length; i++) {
+            cvPositions[i] = i;
+        }
+        final DatasetView cvFolds = cvView.subset(cvPositions).stratify(m_numFoldsPruning);
 
         double[][] alphas = new double[m_numFoldsPruning][];
         double[][] errors = new double[m_numFoldsPruning][];
 
-        // calculate errors and alphas for each fold
-        for (int i = 0; i < m_numFoldsPruning; i++) {
-
-            // for every fold, grow tree on training set and fix error on test set.
-            Instances train = cvData.trainCV(m_numFoldsPruning, i);
-            Instances test = cvData.testCV(m_numFoldsPruning, i);
-
-            // calculate sorted indices and weights, and compute initial class counts
-            // for each fold
-            int[][] sortedIndices = new int[train.numAttributes()][0];
-            double[][] weights = new double[train.numAttributes()][0];
-            double[] classProbs = new double[train.numClasses()];
-            double totalWeight = computeSortedInfo(train, sortedIndices, weights,
-                    classProbs);
-
-            makeTree(train, train.numInstances(), sortedIndices, weights, classProbs,
-                    totalWeight, m_minNumObj, m_Heuristic);
-
-            int numNodes = numInnerNodes();
-            alphas[i] = new double[numNodes + 2];
-            errors[i] = new double[numNodes + 2];
-
-            // prune back and log alpha-values and errors on test set
-            prune(alphas[i], errors[i], test);
+        // calculate errors and alphas for each fold; each fold is grown on its own
+        // tree, so folds are independent of each other and of the final tree
+        List<Future<?>> tasks = null;
+        if (m_numExecutionSlots != 1) {
+            int n_threads = m_numExecutionSlots > 1? m_numExecutionSlots
+                    : Runtime.getRuntime().availableProcessors();
+            int n_tasks = Math.min(n_threads, m_numFoldsPruning);
+            tasks = new ArrayList<Future<?>>(n_tasks);
+            for (int t = 0; t < n_tasks; t++) {
+                final int first = t;
+                // each task grows every n_tasks-th fold, so that at most n_tasks
+                // folds of this tree are grown at the same time
+                tasks.add(getFoldPool().submit(() -> {
+                    for (int i = first; i < m_numFoldsPruning; i += n_tasks) {
+                        double[][] alphasErrors = pruningFold(cvFolds, index, i);
+                        alphas[i] = alphasErrors[0];
+                        errors[i] = alphasErrors[1];
+                    }
+                    return null;
+                }));
+            }
+        } else {
+            for (int i = 0; i < m_numFoldsPruning; i++) {
+                double[][] alphasErrors = pruningFold(cvFolds, index, i);
+                alphas[i] = alphasErrors[0];
+                errors[i] = alphasErrors[1];
+            }
         }
 
         // calculate sorted indices and weights, and compute initial class counts on
         // all training instances
-        int[][] sortedIndices = new int[data.numAttributes()][0];
+        int[][] sortedIndices = index.getSortedIndices(view.getRows());
         double[][] weights = new double[data.numAttributes()][0];
         double[] classProbs = new double[data.numClasses()];
         double totalWeight = computeSortedInfo(data, sortedIndices, weights,
-                classProbs);
+                classProbs, true);
+        initHistograms(data, sortedIndices, weights);
 
         // build tree using all the data
         makeTree(data, data.numInstances(), sortedIndices, weights, classProbs,
@@ -370,6 +934,21 @@ public class SimpleCart extends RandomizableClassifier implements
         // prune back and log alpha-values
         int iterations = prune(treeAlphas, null, null);
 
+        // waits for folds grown concurrently with the final tree
+        if (tasks != null) {
+            try {
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception)? (Exception) e.getCause() : e;
+            } finally {
+                for (Future<?> task : tasks) {
+                    task.cancel(true);
+                }
+            }
+        }
+
         double[] treeErrors = new double[numNodes + 2];
 
         // for each pruned subtree, find the cross-validated error
@@ -414,6 +993,69 @@ public class SimpleCart extends RandomizableClassifier implements
         // "unprune" final tree (faster than regrowing it)
         unprune();
         prune(bestAlpha);
+
+        m_Compiled = new CompiledTree(this, data.numClasses());
+    }
+
+    /**
+     * Grows a tree on the training set of a pruning fold, and then prunes it back,
+     * logging alpha-values and errors on the test set of the fold.
+     *
+     * A new tree is used for each fold, so that folds can be grown concurrently.
+     *
+     * @param cvFolds stratified data used for the pruning folds
+     * @param index   presorted index of the dataset behind cvFolds
+     * @param fold    index of the fold
+     * @return an array with the alpha-values and the errors of the fold, in this order
+     * @throws Exception if something goes wrong
+     */
+    protected double[][] pruningFold(DatasetView cvFolds, PresortedIndex index, int fold) throws Exception {
+        DatasetView trainView = cvFolds.trainCV(m_numFoldsPruning, fold);
+        Instances train = trainView.toInstances();
+        Instances test = cvFolds.testCV(m_numFoldsPruning, fold).toInstances();
+
+        SimpleCart tree = new SimpleCart();
+        tree.m_numBins = m_numBins;
+
+        // calculate sorted indices and weights, and compute initial class counts
+        // for the fold; sorted indices are filtered from the ones of the dataset
+        int[][] sortedIndices = index.getSortedIndices(trainView.getRows());
+        double[][] weights = new double[train.numAttributes()][0];
+        double[] classProbs = new double[train.numClasses()];
+        double totalWeight = tree.computeSortedInfo(train, sortedIndices, weights,
+                classProbs, true);
+        tree.initHistograms(train, sortedIndices, weights);
+
+        tree.makeTree(train, train.numInstances(), sortedIndices, weights, classProbs,
+                totalWeight, m_minNumObj, m_Heuristic);
+
+        int numNodes = tree.numInnerNodes();
+        double[] alphas = new double[numNodes + 2];
+        double[] errors = new double[numNodes + 2];
+
+        // prune back and log alpha-values and errors on test set
+        tree.prune(alphas, errors, test);
+
+        return new double[][]{alphas, errors};
+    }
+
+    /**
+     * Prepares the root of a tree to search splits of numeric attributes over
+     * histograms, if the histogram mode is on (i.e. the maximum number of bins
+     * is larger than zero).
+     *
+     * @param data          training instances
+     * @param sortedIndices sorted indices of the instances
+     * @param weights       weights of the instances
+     */
+    protected void initHistograms(Instances data, int[][] sortedIndices, double[][] weights) {
+        if (m_numBins > 0) {
+            m_Bins = new HistogramBins(data, sortedIndices, m_numBins);
+            m_Histograms = m_Bins.histograms(sortedIndices, weights, data.numClasses());
+        } else {
+            m_Bins = null;
+            m_Histograms = null;
+        }
     }
 
     /**
@@ -435,6 +1077,12 @@ public class SimpleCart extends RandomizableClassifier implements
                             double totalWeight, double minNumObj, boolean useHeuristic)
             throws Exception {
 
+        // histograms are only needed while growing this node
+        HistogramBins bins = m_Bins;
+        double[][][] histograms = m_Histograms;
+        m_Bins = null;
+        m_Histograms = null;
+
         // if no instances have reached this node (normally won't happen)
         if (totalWeight == 0) {
             m_Attribute = null;
@@ -461,7 +1109,7 @@ public class SimpleCart extends RandomizableClassifier implements
         double[][] props = new double[data.numAttributes()][0];
         double[][] totalSubsetWeights = new double[data.numAttributes()][2];
         double[] splits = new double[data.numAttributes()];
-        String[] splitString = new String[data.numAttributes()];
+        long[][] splitSubsets = new long[data.numAttributes()][];
         double[] giniGains = new double[data.numAttributes()];
 
         // for each attribute find split information
@@ -470,13 +1118,17 @@ public class SimpleCart extends RandomizableClassifier implements
             if (i == data.classIndex()) {
                 continue;
             }
-            if (att.isNumeric()) {
+            if (att.isNumeric() && bins != null) {
+                // numeric attribute, split points between bins
+                splits[i] = histogramDistribution(props, dists, att, sortedIndices[i],
+                        weights[i], totalSubsetWeights, giniGains, data, bins, histograms[i]);
+            } else if (att.isNumeric()) {
                 // numeric attribute
                 splits[i] = numericDistribution(props, dists, att, sortedIndices[i],
                         weights[i], totalSubsetWeights, giniGains, data);
             } else {
                 // nominal attribute
-                splitString[i] = nominalDistribution(props, dists, att,
+                splitSubsets[i] = nominalDistribution(props, dists, att,
                         sortedIndices[i], weights[i], totalSubsetWeights, giniGains, data,
                         useHeuristic);
             }
@@ -509,11 +1161,12 @@ public class SimpleCart extends RandomizableClassifier implements
             if (m_Attribute.isNumeric()) {
                 m_SplitValue = splits[attIndex];
             } else {
-                m_SplitString = splitString[attIndex];
+                m_SplitSubset = splitSubsets[attIndex];
+                m_SplitString = toSplitString(m_Attribute, m_SplitSubset);
             }
 
             splitData(subsetIndices, subsetWeights, m_Attribute, m_SplitValue,
-                    m_SplitString, sortedIndices, weights, data);
+                    m_SplitSubset, sortedIndices, weights, data);
 
             // If split of the node results in a node with less than minimal number of
             // isntances,
@@ -529,6 +1182,22 @@ public class SimpleCart extends RandomizableClassifier implements
             m_Successors = new SimpleCart[2];
             for (int i = 0; i < 2; i++) {
                 m_Successors[i] = new SimpleCart();
+            }
+            if (bins != null) {
+                // histograms of the smaller successor are computed, and the ones of
+                // the larger one are derived from the histograms of this node
+                int smaller = subsetIndices[0][attIndex].length <= subsetIndices[1][attIndex].length ? 0 : 1;
+                double[][][] smallerHistograms = bins.histograms(subsetIndices[smaller],
+                        subsetWeights[smaller], data.numClasses());
+                m_Successors[smaller].m_Histograms = smallerHistograms;
+                m_Successors[1 - smaller].m_Histograms = HistogramBins.subtract(histograms,
+                        smallerHistograms);
+                histograms = null;
+                for (int i = 0; i < 2; i++) {
+                    m_Successors[i].m_Bins = bins;
+                }
+            }
+            for (int i = 0; i < 2; i++) {
                 m_Successors[i].makeTree(data, m_totalTrainInstances, subsetIndices[i],
                         subsetWeights[i], dists[attIndex][i],
                         totalSubsetWeights[attIndex][i], minNumObj, useHeuristic);
@@ -546,6 +1215,7 @@ public class SimpleCart extends RandomizableClassifier implements
     public void prune(double alpha) throws Exception {
 
         Vector<SimpleCart> nodeList;
+        m_Compiled = null;
 
         // determine training error of pruned subtrees (both with and without
         // replacing a subtree),
@@ -607,6 +1277,7 @@ public class SimpleCart extends RandomizableClassifier implements
             throws Exception {
 
         Vector<SimpleCart> nodeList;
+        m_Compiled = null;
 
         // determine training error of subtrees (both with and without replacing a
         // subtree),
@@ -683,6 +1354,7 @@ public class SimpleCart extends RandomizableClassifier implements
      * than re-growing the tree because CART do not have to be fit again.
      */
     protected void unprune() {
+        m_Compiled = null;
         if (m_Successors != null) {
             m_isLeaf = false;
             for (SimpleCart m_Successor : m_Successors) {
@@ -691,6 +1363,116 @@ public class SimpleCart extends RandomizableClassifier implements
         }
     }
 
+    /**
+     * Compute distributions, proportions and total weights of two successor nodes
+     * for a given numeric attribute, evaluating split points between the bins of
+     * the attribute only. Split points lie halfway between the largest value of
+     * a bin and the smallest value of the next non-empty bin.
+     *
+     * @param props         proportions of each two branches for each attribute
+     * @param dists         class distributions of two branches for each attribute
+     * @param att           numeric att split on
+     * @param sortedIndices sorted indices of instances for the attirubte
+     * @param weights       weights of instances for the attirbute
+     * @param subsetWeights total weight of two branches split based on the
+     *                      attribute
+     * @param giniGains     Gini gains for each attribute
+     * @param data          training instances
+     * @param bins          bins of numeric attributes
+     * @param histogram     class distribution of each bin of the attribute at
+     *                      the node
+     * @return split point for the given numeric attribute
+     * @throws Exception if something goes wrong
+     */
+    protected double histogramDistribution(double[][] props, double[][][] dists,
+                                           Attribute att, int[] sortedIndices, double[] weights,
+                                           double[][] subsetWeights, double[] giniGains, Instances data,
+                                           HistogramBins bins, double[][] histogram) throws Exception {
+
+        double splitPoint = Double.NaN;
+        int numClasses = data.numClasses();
+        int attIndex = att.index();
+
+        SplitScratch scratch = SplitScratch.get(numClasses, 0);
+        double[][] currDist = scratch.currDist;
+        double[] currWeights = scratch.currWeights;
+        double[][] dist = new double[2][numClasses];
+
+        // class distribution of instances with missing values (at the end)
+        double missingWeight = 0;
+        for (int j = sortedIndices.length - 1; j >= 0
+                && bins.binOf[attIndex][sortedIndices[j]] == -1; j--) {
+            scratch.missingDist[bins.classOf[sortedIndices[j]]] += weights[j];
+            missingWeight += weights[j];
+        }
+
+        // Move all instances without missing values into second subset
+        for (int b = 0; b < histogram.length; b++) {
+            for (int k = 0; k < numClasses; k++) {
+                currDist[1][k] += histogram[b][k];
+                currWeights[1] += histogram[b][k];
+            }
+        }
+        for (int k = 0; k < numClasses; k++) {
+            scratch.parentDist[k] = currDist[1][k] + scratch.missingDist[k];
+        }
+        System.arraycopy(currDist[1], 0, dist[1], 0, dist[1].length);
+        double parentWeight = currWeights[1] + missingWeight;
+        double parentGini = computeGini(scratch.parentDist, parentWeight);
+
+        // Try split points between non-empty bins
+        double bestGiniGain = -Double.MAX_VALUE;
+        int lastBin = -1;
+        for (int b = 0; b < histogram.length; b++) {
+            double binWeight = 0;
+            for (int k = 0; k < numClasses; k++) {
+                binWeight += histogram[b][k];
+            }
+            if (binWeight == 0) {
+                continue;
+            }
+            if (lastBin != -1) {
+                double currGiniGain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
+
+                if (currGiniGain > bestGiniGain) {
+                    bestGiniGain = currGiniGain;
+                    splitPoint = (bins.binMax[attIndex][lastBin] + bins.binMin[attIndex][b]) / 2.0;
+
+                    for (int j = 0; j < 2; j++) {
+                        System.arraycopy(scratch.tempDist[j], 0, dist[j], 0, numClasses);
+                    }
+                }
+            }
+            for (int k = 0; k < numClasses; k++) {
+                currDist[0][k] += histogram[b][k];
+                currDist[1][k] -= histogram[b][k];
+            }
+            currWeights[0] += binWeight;
+            currWeights[1] -= binWeight;
+            lastBin = b;
+        }
+
+        // Compute weights
+        props[attIndex] = new double[2];
+        for (int k = 0; k < 2; k++) {
+            props[attIndex][k] = Utils.sum(dist[k]);
+        }
+        if (Utils.sum(props[attIndex]) != 0) {
+            Utils.normalize(props[attIndex]);
+        }
+
+        // Compute subset weights
+        subsetWeights[attIndex] = new double[2];
+        for (int j = 0; j < 2; j++) {
+            subsetWeights[attIndex][j] += Utils.sum(dist[j]);
+        }
+
+        giniGains[attIndex] = bestGiniGain;
+        dists[attIndex] = dist;
+
+        return splitPoint;
+    }
+
     /**
      * Compute distributions, proportions and total weights of two successor nodes
      * for a given numeric attribute.
@@ -713,25 +1495,31 @@ public class SimpleCart extends RandomizableClassifier implements
             throws Exception {
 
         double splitPoint = Double.NaN;
-        double[][] dist = null;
         int numClasses = data.numClasses();
         int i; // differ instances with or without missing values
 
-        double[][] currDist = new double[2][numClasses];
-        dist = new double[2][numClasses];
+        SplitScratch scratch = SplitScratch.get(numClasses, 0);
+        double[][] currDist = scratch.currDist;
+        double[] currWeights = scratch.currWeights;
+        double[][] dist = new double[2][numClasses];
 
         // Move all instances without missing values into second subset
-        double[] parentDist = new double[numClasses];
-        int missingStart = 0;
+        double parentWeight = 0, missingWeight = 0;
         for (int j = 0; j < sortedIndices.length; j++) {
             Instance inst = data.instance(sortedIndices[j]);
+            int classValue = (int) inst.classValue();
             if (!inst.isMissing(att)) {
-                missingStart++;
-                currDist[1][(int) inst.classValue()] += weights[j];
+                currDist[1][classValue] += weights[j];
+                currWeights[1] += weights[j];
+            } else {
+                scratch.missingDist[classValue] += weights[j];
+                missingWeight += weights[j];
             }
-            parentDist[(int) inst.classValue()] += weights[j];
+            scratch.parentDist[classValue] += weights[j];
+            parentWeight += weights[j];
         }
         System.arraycopy(currDist[1], 0, dist[1], 0, dist[1].length);
+        double parentGini = computeGini(scratch.parentDist, parentWeight);
 
         // Try all possible split points
         double currSplit = data.instance(sortedIndices[0]).value(att);
@@ -744,34 +1532,7 @@ public class SimpleCart extends RandomizableClassifier implements
                 break;
             }
             if (inst.value(att) > currSplit) {
-
-                double[][] tempDist = new double[2][numClasses];
-                for (int k = 0; k < 2; k++) {
-                    // tempDist[k] = currDist[k];
-                    System.arraycopy(currDist[k], 0, tempDist[k], 0, tempDist[k].length);
-                }
-
-                double[] tempProps = new double[2];
-                for (int k = 0; k < 2; k++) {
-                    tempProps[k] = Utils.sum(tempDist[k]);
-                }
-
-                if (Utils.sum(tempProps) != 0) {
-                    Utils.normalize(tempProps);
-                }
-
-                // split missing values
-                int index = missingStart;
-                while (index < sortedIndices.length) {
-                    Instance insta = data.instance(sortedIndices[index]);
-                    for (int j = 0; j < 2; j++) {
-                        tempDist[j][(int) insta.classValue()] += tempProps[j]
-                                * weights[index];
-                    }
-                    index++;
-                }
-
-                currGiniGain = computeGiniGain(parentDist, tempDist);
+                currGiniGain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
 
                 if (currGiniGain > bestGiniGain) {
                     bestGiniGain = currGiniGain;
@@ -781,14 +1542,17 @@ public class SimpleCart extends RandomizableClassifier implements
                     // currSplit)/2.0*100000)/100000.0;
                     splitPoint = (inst.value(att) + currSplit) / 2.0;
 
-                    for (int j = 0; j < currDist.length; j++) {
-                        System.arraycopy(tempDist[j], 0, dist[j], 0, dist[j].length);
+                    for (int j = 0; j < 2; j++) {
+                        System.arraycopy(scratch.tempDist[j], 0, dist[j], 0, dist[j].length);
                     }
                 }
             }
             currSplit = inst.value(att);
-            currDist[0][(int) inst.classValue()] += weights[i];
-            currDist[1][(int) inst.classValue()] -= weights[i];
+            int classValue = (int) inst.classValue();
+            currDist[0][classValue] += weights[i];
+            currDist[1][classValue] -= weights[i];
+            currWeights[0] += weights[i];
+            currWeights[1] -= weights[i];
         }
 
         // Compute weights
@@ -832,37 +1596,41 @@ public class SimpleCart extends RandomizableClassifier implements
      * @return Gini gain for the given nominal attribute
      * @throws Exception if something goes wrong
      */
-    protected String nominalDistribution(double[][] props, double[][][] dists,
+    protected long[] nominalDistribution(double[][] props, double[][][] dists,
                                          Attribute att, int[] sortedIndices, double[] weights,
                                          double[][] subsetWeights, double[] giniGains, Instances data,
                                          boolean useHeuristic) throws Exception {
 
-        String[] values = new String[att.numValues()];
-        int numCat = values.length; // number of values of the attribute
+        int numCat = att.numValues(); // number of values of the attribute
         int numClasses = data.numClasses();
 
-        String bestSplitString = "";
         double bestGiniGain = -Double.MAX_VALUE;
 
         // class frequency for each value
         int[] classFreq = new int[numCat];
-        for (int j = 0; j < numCat; j++) {
-            classFreq[j] = 0;
-        }
 
-        double[] parentDist = new double[numClasses];
-        double[][] currDist = new double[2][numClasses];
+        SplitScratch scratch = SplitScratch.get(numClasses, numCat);
+        double[][] currDist = scratch.currDist;
+        double[] currWeights = scratch.currWeights;
+        double[][] valueDist = scratch.valueDist;
         double[][] dist = new double[2][numClasses];
-        int missingStart = 0;
 
+        // class distribution of each value, of missing values, and of the node
+        double parentWeight = 0, missingWeight = 0;
         for (int i = 0; i < sortedIndices.length; i++) {
             Instance inst = data.instance(sortedIndices[i]);
+            int classValue = (int) inst.classValue();
             if (!inst.isMissing(att)) {
-                missingStart++;
                 classFreq[(int) inst.value(att)]++;
+                valueDist[(int) inst.value(att)][classValue] += weights[i];
+            } else {
+                scratch.missingDist[classValue] += weights[i];
+                missingWeight += weights[i];
             }
-            parentDist[(int) inst.classValue()] += weights[i];
+            scratch.parentDist[classValue] += weights[i];
+            parentWeight += weights[i];
         }
+        double parentGini = computeGini(scratch.parentDist, parentWeight);
 
         // count the number of values that class frequency is not 0
         int nonEmpty = 0;
@@ -873,31 +1641,40 @@ public class SimpleCart extends RandomizableClassifier implements
         }
 
         // attribute values that class frequency is not 0
-        String[] nonEmptyValues = new String[nonEmpty];
+        int[] nonEmptyValues = new int[nonEmpty];
         int nonEmptyIndex = 0;
         for (int j = 0; j < numCat; j++) {
             if (classFreq[j] != 0) {
-                nonEmptyValues[nonEmptyIndex] = att.value(j);
+                nonEmptyValues[nonEmptyIndex] = j;
                 nonEmptyIndex++;
             }
         }
 
         // attribute values that class frequency is 0
         int empty = numCat - nonEmpty;
-        String[] emptyValues = new String[empty];
+        int[] emptyValues = new int[empty];
         int emptyIndex = 0;
         for (int j = 0; j < numCat; j++) {
             if (classFreq[j] == 0) {
-                emptyValues[emptyIndex] = att.value(j);
+                emptyValues[emptyIndex] = j;
                 emptyIndex++;
             }
         }
 
         if (nonEmpty <= 1) {
             giniGains[att.index()] = 0;
-            return "";
+            return new long[(numCat + 63) >>> 6];
         }
 
+        // values that go to the first branch: either the first values of
+        // sortedValues, or the values given by the bits of a number
+        int[] sortedValues = null;
+        int bestPrefix = -1;
+        int bestSubset = -1;
+
+        // whether subsets found by ordering values are refined with a greedy search
+        boolean refine = false;
+
         // for tow-class probloms
         if (data.numClasses() == 2) {
 
@@ -908,221 +1685,108 @@ public class SimpleCart extends RandomizableClassifier implements
             // class distribution for each attribute value
             double[][] valDist = new double[nonEmpty][2];
 
-            for (int j = 0; j < nonEmpty; j++) {
-                for (int k = 0; k < 2; k++) {
-                    valDist[j][k] = 0;
-                }
-            }
-
             for (int sortedIndice : sortedIndices) {
                 Instance inst = data.instance(sortedIndice);
                 if (inst.isMissing(att)) {
                     break;
                 }
 
-                for (int j = 0; j < nonEmpty; j++) {
-                    if (att.value((int) inst.value(att)).compareTo(nonEmptyValues[j]) == 0) {
-                        valDist[j][(int) inst.classValue()] += inst.weight();
-                        break;
-                    }
-                }
-            }
-
-            for (int j = 0; j < nonEmpty; j++) {
-                double distSum = Utils.sum(valDist[j]);
-                if (distSum == 0) {
-                    pClass0[j] = 0;
-                } else {
-                    pClass0[j] = valDist[j][0] / distSum;
-                }
-            }
-
-            // sort category according to the probability of the first class
-            String[] sortedValues = new String[nonEmpty];
-            for (int j = 0; j < nonEmpty; j++) {
-                sortedValues[j] = nonEmptyValues[Utils.minIndex(pClass0)];
-                pClass0[Utils.minIndex(pClass0)] = Double.MAX_VALUE;
-            }
-
-            // Find a subset of attribute values that maximize Gini decrease
-
-            // for the attribute values that class frequency is not 0
-            String tempStr = "";
-
-            for (int j = 0; j < nonEmpty - 1; j++) {
-                currDist = new double[2][numClasses];
-                if (tempStr == "") {
-                    tempStr = "(" + sortedValues[j] + ")";
-                } else {
-                    tempStr += "|" + "(" + sortedValues[j] + ")";
-                }
-                for (int i = 0; i < sortedIndices.length; i++) {
-                    Instance inst = data.instance(sortedIndices[i]);
-                    if (inst.isMissing(att)) {
-                        break;
-                    }
-
-                    if (tempStr.indexOf("(" + att.value((int) inst.value(att)) + ")") != -1) {
-                        currDist[0][(int) inst.classValue()] += weights[i];
-                    } else {
-                        currDist[1][(int) inst.classValue()] += weights[i];
-                    }
-                }
-
-                double[][] tempDist = new double[2][numClasses];
-                for (int kk = 0; kk < 2; kk++) {
-                    tempDist[kk] = currDist[kk];
-                }
-
-                double[] tempProps = new double[2];
-                for (int kk = 0; kk < 2; kk++) {
-                    tempProps[kk] = Utils.sum(tempDist[kk]);
-                }
-
-                if (Utils.sum(tempProps) != 0) {
-                    Utils.normalize(tempProps);
-                }
-
-                // split missing values
-                int mstart = missingStart;
-                while (mstart < sortedIndices.length) {
-                    Instance insta = data.instance(sortedIndices[mstart]);
-                    for (int jj = 0; jj < 2; jj++) {
-                        tempDist[jj][(int) insta.classValue()] += tempProps[jj]
-                                * weights[mstart];
+                for (int j = 0; j < nonEmpty; j++) {
+                    if ((int) inst.value(att) == nonEmptyValues[j]) {
+                        valDist[j][(int) inst.classValue()] += inst.weight();
+                        break;
                     }
-                    mstart++;
                 }
+            }
 
-                double currGiniGain = computeGiniGain(parentDist, tempDist);
-
-                if (currGiniGain > bestGiniGain) {
-                    bestGiniGain = currGiniGain;
-                    bestSplitString = tempStr;
-                    for (int jj = 0; jj < 2; jj++) {
-                        // dist[jj] = new double[currDist[jj].length];
-                        System.arraycopy(tempDist[jj], 0, dist[jj], 0, dist[jj].length);
-                    }
+            for (int j = 0; j < nonEmpty; j++) {
+                double distSum = Utils.sum(valDist[j]);
+                if (distSum == 0) {
+                    pClass0[j] = 0;
+                } else {
+                    pClass0[j] = valDist[j][0] / distSum;
                 }
             }
+
+            // sort category according to the probability of the first class
+            sortedValues = new int[nonEmpty];
+            for (int j = 0; j < nonEmpty; j++) {
+                sortedValues[j] = nonEmptyValues[Utils.minIndex(pClass0)];
+                pClass0[Utils.minIndex(pClass0)] = Double.MAX_VALUE;
+            }
         }
 
-        // multi-class problems - exhaustive search
-        else if (!useHeuristic || nonEmpty <= 4) {
+        // multi-class problems - exhaustive search, as long as the number of
+        // subsets is manageable
+        else if (nonEmpty <= 4 || (!useHeuristic && nonEmpty <= MAX_EXHAUSTIVE_VALUES)) {
 
             // Firstly, for attribute values which class frequency is not zero
             for (int i = 0; i < (int) Math.pow(2, nonEmpty - 1); i++) {
-                String tempStr = "";
-                currDist = new double[2][numClasses];
-                int mod;
-                int bit10 = i;
-                for (int j = nonEmpty - 1; j >= 0; j--) {
-                    mod = bit10 % 2; // convert from 10bit to 2bit
-                    if (mod == 1) {
-                        if (tempStr == "") {
-                            tempStr = "(" + nonEmptyValues[j] + ")";
-                        } else {
-                            tempStr += "|" + "(" + nonEmptyValues[j] + ")";
-                        }
-                    }
-                    bit10 = bit10 / 2;
-                }
-                for (int j = 0; j < sortedIndices.length; j++) {
-                    Instance inst = data.instance(sortedIndices[j]);
-                    if (inst.isMissing(att)) {
-                        break;
-                    }
-
-                    if (tempStr.indexOf("(" + att.value((int) inst.value(att)) + ")") != -1) {
-                        currDist[0][(int) inst.classValue()] += weights[j];
-                    } else {
-                        currDist[1][(int) inst.classValue()] += weights[j];
-                    }
-                }
-
-                double[][] tempDist = new double[2][numClasses];
-                for (int k = 0; k < 2; k++) {
-                    tempDist[k] = currDist[k];
-                }
-
-                double[] tempProps = new double[2];
+                // bit 0 of i stands for the last non-empty value, bit 1 for the one
+                // before it, and so on
                 for (int k = 0; k < 2; k++) {
-                    tempProps[k] = Utils.sum(tempDist[k]);
+                    Arrays.fill(currDist[k], 0, numClasses, 0);
+                    currWeights[k] = 0;
                 }
-
-                if (Utils.sum(tempProps) != 0) {
-                    Utils.normalize(tempProps);
-                }
-
-                // split missing values
-                int index = missingStart;
-                while (index < sortedIndices.length) {
-                    Instance insta = data.instance(sortedIndices[index]);
-                    for (int j = 0; j < 2; j++) {
-                        tempDist[j][(int) insta.classValue()] += tempProps[j]
-                                * weights[index];
+                for (int j = 0; j < nonEmpty; j++) {
+                    int subset = ((i >> (nonEmpty - 1 - j)) & 1) == 1 ? 0 : 1;
+                    for (int c = 0; c < numClasses; c++) {
+                        currDist[subset][c] += valueDist[nonEmptyValues[j]][c];
+                        currWeights[subset] += valueDist[nonEmptyValues[j]][c];
                     }
-                    index++;
                 }
 
-                double currGiniGain = computeGiniGain(parentDist, tempDist);
+                double currGiniGain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
 
                 if (currGiniGain > bestGiniGain) {
                     bestGiniGain = currGiniGain;
-                    bestSplitString = tempStr;
+                    bestSubset = i;
                     for (int j = 0; j < 2; j++) {
-                        // dist[jj] = new double[currDist[jj].length];
-                        System.arraycopy(tempDist[j], 0, dist[j], 0, dist[j].length);
+                        System.arraycopy(scratch.tempDist[j], 0, dist[j], 0, dist[j].length);
                     }
                 }
             }
         }
 
-        // huristic search to solve multi-classes problems
+        // huristic search to solve multi-classes problems; if the heuristic was
+        // not asked for, there are too many values for an exhaustive search, so the
+        // subset found by the heuristic is then refined
         else {
+            refine = !useHeuristic;
             // Firstly, for attribute values which class frequency is not zero
             int n = nonEmpty;
             int k = data.numClasses(); // number of classes of the data
             double[][] P = new double[n][k]; // class probability matrix
-            int[] numInstancesValue = new int[n]; // number of instances for an
-            // attribute value
+            double[] valueWeights = new double[n]; // weight of the instances
+            // at the node with each attribute value
             double[] meanClass = new double[k]; // vector of mean class probability
-            int numInstances = data.numInstances(); // total number of instances
-
-            // initialize the vector of mean class probability
-            for (int j = 0; j < meanClass.length; j++) {
-                meanClass[j] = 0;
-            }
+            double totalWeight = 0; // weight of the instances at the node with
+            // a known attribute value
 
-            for (int j = 0; j < numInstances; j++) {
-                Instance inst = data.instance(j);
-                int valueIndex = 0; // attribute value index in nonEmptyValues
-                for (int i = 0; i < nonEmpty; i++) {
-                    if (att.value((int) inst.value(att)).compareToIgnoreCase(
-                            nonEmptyValues[i]) == 0) {
-                        valueIndex = i;
-                        break;
-                    }
+            // class distributions of the node, as accumulated above
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < k; j++) {
+                    P[i][j] = valueDist[nonEmptyValues[i]][j];
+                    valueWeights[i] += P[i][j];
+                    meanClass[j] += P[i][j];
                 }
-                P[valueIndex][(int) inst.classValue()]++;
-                numInstancesValue[valueIndex]++;
-                meanClass[(int) inst.classValue()]++;
+                totalWeight += valueWeights[i];
             }
 
             // calculate the class probability matrix
             for (int i = 0; i < P.length; i++) {
                 for (int j = 0; j < P[0].length; j++) {
-                    if (numInstancesValue[i] == 0) {
+                    if (valueWeights[i] == 0) {
                         P[i][j] = 0;
                     } else {
-                        P[i][j] /= numInstancesValue[i];
+                        P[i][j] /= valueWeights[i];
                     }
                 }
             }
 
             // calculate the vector of mean class probability
             for (int i = 0; i < meanClass.length; i++) {
-                meanClass[i] /= numInstances;
+                meanClass[i] /= totalWeight;
             }
 
             // calculate the covariance matrix
@@ -1132,7 +1796,7 @@ public class SimpleCart extends RandomizableClassifier implements
                     double element = 0;
                     for (int j = 0; j < n; j++) {
                         element += (P[j][i2] - meanClass[i2]) * (P[j][i1] - meanClass[i1])
-                                * numInstancesValue[j];
+                                * valueWeights[j];
                     }
                     covariance[i1][i2] = element;
                 }
@@ -1172,77 +1836,61 @@ public class SimpleCart extends RandomizableClassifier implements
             }
 
             // sort category according to Sa(s)
-            double[] pCopy = new double[n];
-            System.arraycopy(Sa, 0, pCopy, 0, n);
-            String[] sortedValues = new String[n];
-            Arrays.sort(Sa);
-
+            sortedValues = new int[n];
             for (int j = 0; j < n; j++) {
-                sortedValues[j] = nonEmptyValues[Utils.minIndex(pCopy)];
-                pCopy[Utils.minIndex(pCopy)] = Double.MAX_VALUE;
+                sortedValues[j] = nonEmptyValues[Utils.minIndex(Sa)];
+                Sa[Utils.minIndex(Sa)] = Double.MAX_VALUE;
             }
+        }
 
-            // for the attribute values that class frequency is not 0
-            String tempStr = "";
-
-            for (int j = 0; j < nonEmpty - 1; j++) {
-                currDist = new double[2][numClasses];
-                if (tempStr == "") {
-                    tempStr = "(" + sortedValues[j] + ")";
-                } else {
-                    tempStr += "|" + "(" + sortedValues[j] + ")";
-                }
-                for (int i = 0; i < sortedIndices.length; i++) {
-                    Instance inst = data.instance(sortedIndices[i]);
-                    if (inst.isMissing(att)) {
-                        break;
-                    }
-
-                    if (tempStr.indexOf("(" + att.value((int) inst.value(att)) + ")") != -1) {
-                        currDist[0][(int) inst.classValue()] += weights[i];
-                    } else {
-                        currDist[1][(int) inst.classValue()] += weights[i];
-                    }
-                }
-
-                double[][] tempDist = new double[2][numClasses];
-                for (int kk = 0; kk < 2; kk++) {
-                    tempDist[kk] = currDist[kk];
-                }
-
-                double[] tempProps = new double[2];
-                for (int kk = 0; kk < 2; kk++) {
-                    tempProps[kk] = Utils.sum(tempDist[kk]);
-                }
-
-                if (Utils.sum(tempProps) != 0) {
-                    Utils.normalize(tempProps);
+        // for sorted values, candidate subsets are prefixes of sortedValues:
+        // values are moved one by one from the second branch to the first one
+        if (sortedValues != null) {
+            for (int j = 0; j < nonEmpty; j++) {
+                for (int c = 0; c < numClasses; c++) {
+                    currDist[1][c] += valueDist[sortedValues[j]][c];
+                    currWeights[1] += valueDist[sortedValues[j]][c];
                 }
+            }
 
-                // split missing values
-                int mstart = missingStart;
-                while (mstart < sortedIndices.length) {
-                    Instance insta = data.instance(sortedIndices[mstart]);
-                    for (int jj = 0; jj < 2; jj++) {
-                        tempDist[jj][(int) insta.classValue()] += tempProps[jj]
-                                * weights[mstart];
-                    }
-                    mstart++;
+            for (int j = 0; j < nonEmpty - 1; j++) {
+                for (int c = 0; c < numClasses; c++) {
+                    double moved = valueDist[sortedValues[j]][c];
+                    currDist[0][c] += moved;
+                    currDist[1][c] -= moved;
+                    currWeights[0] += moved;
+                    currWeights[1] -= moved;
                 }
 
-                double currGiniGain = computeGiniGain(parentDist, tempDist);
+                double currGiniGain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
 
                 if (currGiniGain > bestGiniGain) {
                     bestGiniGain = currGiniGain;
-                    bestSplitString = tempStr;
+                    bestPrefix = j;
                     for (int jj = 0; jj < 2; jj++) {
-                        // dist[jj] = new double[currDist[jj].length];
-                        System.arraycopy(tempDist[jj], 0, dist[jj], 0, dist[jj].length);
+                        System.arraycopy(scratch.tempDist[jj], 0, dist[jj], 0, dist[jj].length);
                     }
                 }
             }
         }
 
+        // values of the first branch
+        boolean[] inFirst = new boolean[numCat];
+        if (bestPrefix != -1) {
+            for (int j = 0; j <= bestPrefix; j++) {
+                inFirst[sortedValues[j]] = true;
+            }
+        } else if (bestSubset != -1) {
+            for (int j = 0; j < nonEmpty; j++) {
+                inFirst[nonEmptyValues[j]] = ((bestSubset >> (nonEmpty - 1 - j)) & 1) == 1;
+            }
+        }
+
+        if (refine) {
+            bestGiniGain = refineSubset(inFirst, nonEmptyValues, scratch, bestGiniGain,
+                    parentGini, parentWeight, missingWeight, dist);
+        }
+
         // Compute weights
         int attIndex = att.index();
         props[attIndex] = new double[2];
@@ -1269,11 +1917,7 @@ public class SimpleCart extends RandomizableClassifier implements
         // most frequent branch
         for (int j = 0; j < empty; j++) {
             if (props[attIndex][0] >= props[attIndex][1]) {
-                if (bestSplitString == "") {
-                    bestSplitString = "(" + emptyValues[j] + ")";
-                } else {
-                    bestSplitString += "|" + "(" + emptyValues[j] + ")";
-                }
+                inFirst[emptyValues[j]] = true;
             }
         }
 
@@ -1282,7 +1926,127 @@ public class SimpleCart extends RandomizableClassifier implements
         giniGains[attIndex] = bestGiniGain;
 
         dists[attIndex] = dist;
-        return bestSplitString;
+
+        long[] subset = new long[(numCat + 63) >>> 6];
+        for (int v = 0; v < numCat; v++) {
+            if (inFirst[v]) {
+                subset[v >>> 6] |= 1L << v;
+            }
+        }
+        return subset;
+    }
+
+    /**
+     * Improves a nominal split with a greedy search: at each step, the value
+     * whose move to the other branch increases Gini gain the most is moved, until
+     * no move improves the split or MAX_GREEDY_STEPS moves per value were made.
+     *
+     * @param inFirst        whether each value is in the first branch; is updated
+     * @param nonEmptyValues values that reach the node
+     * @param scratch        buffers, with the class distribution of each value
+     *                       and of missing values
+     * @param giniGain       Gini gain of the split
+     * @param parentGini     gini of the node
+     * @param parentWeight   total weight of the node
+     * @param missingWeight  total weight of instances with missing values
+     * @param dist           class distributions of the branches of the split; is
+     *                       updated
+     * @return Gini gain of the refined split
+     */
+    protected double refineSubset(boolean[] inFirst, int[] nonEmptyValues, SplitScratch scratch,
+                                  double giniGain, double parentGini, double parentWeight,
+                                  double missingWeight, double[][] dist) {
+        int numClasses = scratch.numClasses;
+        double[][] currDist = scratch.currDist;
+        double[] currWeights = scratch.currWeights;
+
+        for (int k = 0; k < 2; k++) {
+            Arrays.fill(currDist[k], 0, numClasses, 0);
+            currWeights[k] = 0;
+        }
+        for (int value : nonEmptyValues) {
+            int branch = inFirst[value] ? 0 : 1;
+            for (int c = 0; c < numClasses; c++) {
+                currDist[branch][c] += scratch.valueDist[value][c];
+                currWeights[branch] += scratch.valueDist[value][c];
+            }
+        }
+
+        int maxSteps = MAX_GREEDY_STEPS * nonEmptyValues.length;
+        for (int step = 0; step < maxSteps; step++) {
+            int bestValue = -1;
+            double bestGain = giniGain;
+            for (int value : nonEmptyValues) {
+                moveValue(scratch, value, inFirst[value] ? 0 : 1);
+                double gain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
+                moveValue(scratch, value, inFirst[value] ? 1 : 0);
+
+                // small improvements are ignored, so that rounding errors do not
+                // make values go back and forth
+                if (gain > bestGain + 1e-12) {
+                    bestGain = gain;
+                    bestValue = value;
+                }
+            }
+            if (bestValue == -1) {
+                break;
+            }
+            moveValue(scratch, bestValue, inFirst[bestValue] ? 0 : 1);
+            inFirst[bestValue] = !inFirst[bestValue];
+            giniGain = computeGiniGain(scratch, parentGini, parentWeight, missingWeight);
+            for (int k = 0; k < 2; k++) {
+                System.arraycopy(scratch.tempDist[k], 0, dist[k], 0, dist[k].length);
+            }
+        }
+        return giniGain;
+    }
+
+    /**
+     * Moves the class distribution of a value from one branch to the other.
+     *
+     * @param scratch buffers with the class distribution of each value
+     * @param value   index of the value
+     * @param from    branch the value is moved from
+     */
+    private static void moveValue(SplitScratch scratch, int value, int from) {
+        for (int c = 0; c < scratch.numClasses; c++) {
+            double moved = scratch.valueDist[value][c];
+            scratch.currDist[from][c] -= moved;
+            scratch.currDist[1 - from][c] += moved;
+            scratch.currWeights[from] -= moved;
+            scratch.currWeights[1 - from] += moved;
+        }
+    }
+
+    /**
+     * Whether a value of a nominal attribute is in a split subset.
+     *
+     * @param subset bitmask of values
+     * @param value  index of the value
+     * @return true if the value is in the subset
+     */
+    protected static boolean inSubset(long[] subset, int value) {
+        return (subset[value >>> 6] & (1L << value)) != 0;
+    }
+
+    /**
+     * Describes a nominal split subset as "(value1)|(value2)|...".
+     *
+     * @param att    nominal attribute
+     * @param subset bitmask of values
+     * @return the description of the subset
+     */
+    protected static String toSplitString(Attribute att, long[] subset) {
+        StringBuilder builder = new StringBuilder();
+        for (int v = 0; v < att.numValues(); v++) {
+            if (inSubset(subset, v)) {
+                if (builder.length() > 0) {
+                    builder.append("|");
+                }
+                builder.append("(").append(att.value(v)).append(")");
+            }
+        }
+        return builder.toString();
     }
 
     /**
@@ -1295,14 +2059,14 @@ public class SimpleCart extends RandomizableClassifier implements
      *                      successor node
      * @param att           attribute the split based on
      * @param splitPoint    split point the split based on if att is numeric
-     * @param splitStr      split subset the split based on if att is nominal
+     * @param splitSubset   split subset the split based on if att is nominal
      * @param sortedIndices sorted indices of the instances to be split
      * @param weights       weights of the instances to bes split
      * @param data          training data
      * @throws Exception if something goes wrong
      */
     protected void splitData(int[][][] subsetIndices, double[][][] subsetWeights,
-                             Attribute att, double splitPoint, String splitStr, int[][] sortedIndices,
+                             Attribute att, double splitPoint, long[] splitSubset, int[][] sortedIndices,
                              double[][] weights, Instances data) throws Exception {
 
         int j;
@@ -1333,8 +2097,7 @@ public class SimpleCart extends RandomizableClassifier implements
                     if (att.isNumeric()) {
                         subset = (inst.value(att) < splitPoint) ? 0 : 1;
                     } else { // nominal attribute
-                        if (splitStr.indexOf("(" + att.value((int) inst.value(att.index()))
-                                + ")") != -1) {
+                        if (inSubset(splitSubset, (int) inst.value(att.index()))) {
                             subset = 0;
                         } else {
                             subset = 1;
@@ -1477,6 +2240,37 @@ public class SimpleCart extends RandomizableClassifier implements
      */
     protected double computeSortedInfo(Instances data, int[][] sortedIndices,
                                        double[][] weights, double[] classProbs) throws Exception {
+        return computeSortedInfo(data, sortedIndices, weights, classProbs, false);
+    }
+
+    /**
+     * Compute sorted indices, weights and class probabilities for a given
+     * dataset, possibly reusing sorted indices computed beforehand (e.g. by
+     * {@link PresortedIndex}). Return total weights of the data at the node.
+     *
+     * @param data          training data
+     * @param sortedIndices sorted indices of instances at the node
+     * @param weights       weights of instances at the node
+     * @param classProbs    class probabilities at the node
+     * @param presorted     whether sortedIndices are already filled in
+     * @return total weights of instances at the node
+     * @throws Exception if something goes wrong
+     */
+    protected double computeSortedInfo(Instances data, int[][] sortedIndices,
+                                       double[][] weights, double[] classProbs, boolean presorted) throws Exception {
+
+        if (presorted) {
+            for (int j = 0; j < data.numAttributes(); j++) {
+                if (j == data.classIndex()) {
+                    continue;
+                }
+                weights[j] = new double[data.numInstances()];
+                for (int i = 0; i < data.numInstances(); i++) {
+                    weights[j][i] = data.instance(sortedIndices[j][i]).weight();
+                }
+            }
+            return computeClassCounts(data, classProbs);
+        }
 
         // Create array of sorted indices and weights
         double[] vals = new double[data.numInstances()];
@@ -1523,7 +2317,17 @@ public class SimpleCart extends RandomizableClassifier implements
             }
         }
 
-        // Compute initial class counts
+        return computeClassCounts(data, classProbs);
+    }
+
+    /**
+     * Compute initial class counts of a dataset.
+     *
+     * @param data       training data
+     * @param classProbs array where class counts are added to
+     * @return total weights of instances
+     */
+    protected double computeClassCounts(Instances data, double[] classProbs) {
         double totalWeight = 0;
         for (int i = 0; i < data.numInstances(); i++) {
             Instance inst = data.instance(i);
@@ -1534,6 +2338,44 @@ public class SimpleCart extends RandomizableClassifier implements
         return totalWeight;
     }
 
+    /**
+     * Compute gini gain of a candidate split, whose class distributions (without
+     * missing values) are in scratch.currDist and scratch.currWeights. Instances
+     * with missing values are split among branches in proportion to their
+     * weights; the resulting distributions are left in scratch.tempDist.
+     *
+     * @param scratch       buffers with the distributions of the split
+     * @param parentGini    gini of the node
+     * @param parentWeight  total weight of the node
+     * @param missingWeight total weight of instances with missing values
+     * @return Gini gain computed
+     */
+    protected double computeGiniGain(SplitScratch scratch, double parentGini,
+                                     double parentWeight, double missingWeight) {
+        if (parentWeight == 0) {
+            return 0;
+        }
+        double knownWeight = scratch.currWeights[0] + scratch.currWeights[1];
+
+        double giniGain = parentGini;
+        for (int k = 0; k < 2; k++) {
+            double prop = knownWeight != 0 ? scratch.currWeights[k] / knownWeight : 0;
+            double childWeight = scratch.currWeights[k] + prop * missingWeight;
+
+            double sumSquares = 0;
+            for (int c = 0; c < scratch.numClasses; c++) {
+                double value = scratch.currDist[k][c] + prop * scratch.missingDist[c];
+                scratch.tempDist[k][c] = value;
+                sumSquares += value * value;
+            }
+            if (childWeight != 0) {
+                giniGain -= childWeight / parentWeight
+                        * (1 - sumSquares / (childWeight * childWeight));
+            }
+        }
+        return giniGain;
+    }
+
     /**
      * Compute and return gini gain for given distributions of a node and its
      * successor nodes.
@@ -1587,6 +2429,17 @@ public class SimpleCart extends RandomizableClassifier implements
      */
     @Override
     public double[] distributionForInstance(Instance instance) throws Exception {
+        if (m_Compiled != null) {
+            double[][] columns = new double[instance.numAttributes()][];
+            for (int attIndex : m_Compiled.usedAttributes) {
+                columns[attIndex] = new double[]{instance.value(attIndex)};
+            }
+            double[] dist = new double[m_Compiled.numClasses];
+            m_Compiled.distribution(columns, 0, dist, new int[m_Compiled.maxPending],
+                    new double[m_Compiled.maxPending]);
+            return dist;
+        }
+
         if (!m_isLeaf) {
             // value of split attribute is missing
             if (instance.isMissing(m_Attribute)) {
@@ -1605,8 +2458,7 @@ public class SimpleCart extends RandomizableClassifier implements
 
             // split attribute is nonimal
             else if (m_Attribute.isNominal()) {
-                if (m_SplitString.indexOf("("
-                        + m_Attribute.value((int) instance.value(m_Attribute)) + ")") != -1) {
+                if (inSubset(m_SplitSubset, (int) instance.value(m_Attribute))) {
                     return m_Successors[0].distributionForInstance(instance);
                 } else {
                     return m_Successors[1].distributionForInstance(instance);
@@ -1626,6 +2478,33 @@ public class SimpleCart extends RandomizableClassifier implements
         }
     }
 
+    /**
+     * Computes class probabilities of a batch of instances with the flattened
+     * form of the tree, reading values column by column.
+     *
+     * @param batch the instances to be classified
+     * @return predicted class probability distributions
+     * @throws Exception if distributions can't be computed successfully
+     */
+    @Override
+    public double[][] distributionsForInstances(Instances batch) throws Exception {
+        if (m_Compiled == null) {
+            return super.distributionsForInstances(batch);
+        }
+        return m_Compiled.distributions(m_Compiled.toColumns(batch), batch.numInstances());
+    }
+
+    /**
+     * Only the flattened form of the tree predicts batches more efficiently;
+     * nodes that are still being built or pruned are not flattened.
+     *
+     * @return whether the tree has been flattened
+     */
+    @Override
+    public boolean implementsMoreEfficientBatchPrediction() {
+        return m_Compiled != null;
+    }
+
     /**
      * Make the node leaf node.
      *
@@ -1808,6 +2687,13 @@ public class SimpleCart extends RandomizableClassifier implements
         result.addElement(new Option("\tPercentage of training data size (0-1].\n"
                 + "\t(default 1).", "C", 1, "-C"));
 
+        result.addElement(new Option("\tNumber of execution slots used to grow the trees of the pruning folds.\n"
+                + "\t(default 1 - i.e. no parallelism; 0 - use all available processors)",
+                "num-slots", 1, "-num-slots <num>"));
+
+        result.addElement(new Option("\tMaximum number of bins of numeric attributes when searching for splits.\n"
+                + "\t(default 0 - i.e. evaluate every distinct value)", "B", 1, "-B <num bins>"));
+
         result.addAll(Collections.list(super.listOptions()));
 
         return result.elements();
@@ -1861,6 +2747,18 @@ public class SimpleCart extends RandomizableClassifier implements
      *  Percentage of training data size (0-1].
      *  (default 1).
      * </pre>
+     *
+     * <pre>
+     * -num-slots &lt;num&gt;
+     *  Number of execution slots used to grow the trees of the pruning folds.
+     *  (default 1 - i.e. no parallelism; 0 - use all available processors)
+     * </pre>
+     *
+     * <pre>
+     * -B &lt;num bins&gt;
+     *  Maximum number of bins of numeric attributes when searching for splits.
+     *  (default 0 - i.e. evaluate every distinct value)
+     * </pre>
      * <p>
      * <!-- options-end -->
      *
@@ -1896,6 +2794,20 @@ public class SimpleCart extends RandomizableClassifier implements
             setSizePer(1);
         }
 
+        tmpStr = Utils.getOption("num-slots", options);
+        if (tmpStr.length() != 0) {
+            setNumExecutionSlots(Integer.parseInt(tmpStr));
+        } else {
+            setNumExecutionSlots(1);
+        }
+
+        tmpStr = Utils.getOption('B', options);
+        if (tmpStr.length() != 0) {
+            setNumBins(Integer.parseInt(tmpStr));
+        } else {
+            setNumBins(0);
+        }
+
         super.setOptions(options);
 
         Utils.checkForRemainingOptions(options);
@@ -1932,6 +2844,18 @@ public class SimpleCart extends RandomizableClassifier implements
         result.add("-C");
         result.add("" + getSizePer());
 
+        // options added to this class are only emitted when not the default, so
+        // that option strings of trees are the same as before they existed
+        if (getNumExecutionSlots() != 1) {
+            result.add("-num-slots");
+            result.add("" + getNumExecutionSlots());
+        }
+
+        if (getNumBins() != 0) {
+            result.add("-B");
+            result.add("" + getNumBins());
+        }
+
         Collections.addAll(result, super.getOptions());
 
         return result.toArray(new String[result.size()]);
@@ -2154,6 +3078,121 @@ public class SimpleCart extends RandomizableClassifier implements
         return m_SizePer;
     }
 
+    /**
+     * Returns the tip text for this property
+     *
+     * @return tip text for this property suitable for displaying in the
+     * explorer/experimenter gui.
+     */
+    public String numExecutionSlotsTipText() {
+        return "The number of execution slots (threads) used to grow the trees of the "
+                + "pruning folds (0 - use all available processors).";
+    }
+
+    /**
+     * Set the number of execution slots.
+     *
+     * @param value number of execution slots
+     */
+    public void setNumExecutionSlots(int value) {
+        if (value < 0) {
+            System.err
+                    .println("The number of execution slots must not be negative - ignored!");
+        } else {
+            m_numExecutionSlots = value;
+        }
+    }
+
+    /**
+     * Get the number of execution slots.
+     *
+     * @return number of execution slots
+     */
+    public int getNumExecutionSlots() {
+        return m_numExecutionSlots;
+    }
+
+    /**
+     * Returns the tip text for this property
+     *
+     * @return tip text for this property suitable for displaying in the
+     * explorer/experimenter gui.
+     */
+    public String numBinsTipText() {
+        return "The maximum number of (quantile) bins of numeric attributes when searching "
+                + "for splits (0 - evaluate every distinct value).";
+    }
+
+    /**
+     * Set the maximum number of bins of numeric attributes.
+     *
+     * @param value maximum number of bins
+     */
+    public void setNumBins(int value) {
+        if (value < 0) {
+            System.err
+                    .println("The number of bins must not be negative - ignored!");
+        } else {
+            m_numBins = value;
+        }
+    }
+
+    /**
+     * Get the maximum number of bins of numeric attributes.
+     *
+     * @return maximum number of bins
+     */
+    public int getNumBins() {
+        return m_numBins;
+    }
+
+    /**
+     * Gets the attribute used to split data at this node.
+     *
+     * @return the split attribute, or null if this node is a leaf
+     */
+    public Attribute getSplitAttribute() {
+        return m_Attribute;
+    }
+
+    /**
+     * Gets the split point, if the split attribute is numeric. Instances with values smaller than the split point go
+     * to the first successor.
+     *
+     * @return the split point
+     */
+    public double getSplitValue() {
+        return m_SplitValue;
+    }
+
+    /**
+     * Checks whether a value of a nominal split attribute goes to the first successor.
+     *
+     * @param valueIndex index of the value of the split attribute
+     * @return true if instances with this value go to the first successor
+     */
+    public boolean isInSplitSubset(int valueIndex) {
+        return inSubset(m_SplitSubset, valueIndex);
+    }
+
+    /**
+     * Gets the successors of this node.
+     *
+     * @return the successors, or null if this node was never split
+     */
+    public SimpleCart[] getSuccessors() {
+        return m_Successors;
+    }
+
+    /**
+     * Gets the class value predicted by this node, if it is a leaf.
+     *
+     * @return index of the class value (may be missing)
+     */
+    public double getClassValue() {
+        return m_ClassValue;
+    }
+
     /**
      * Returns the revision string.
      *
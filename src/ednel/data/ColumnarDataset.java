@@ -0,0 +1,276 @@
+package ednel.data;
+
+import ednel.utils.PresortedIndex;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.security.InvalidParameterException;
+
+/**
+ * An immutable dataset stored by columns: one array of primitive values per attribute (the class attribute
+ * included), plus the weight of each instance. Nominal values are stored as indices in the dictionary of their
+ * attribute, which is kept in the header of the dataset; missing values are stored as NaN.
+ *
+ * A dataset is meant to be created once per run. Subsets of it (e.g. the folds of a cross-validation) are
+ * {@link DatasetView}s, defined by the indices of their instances, and are only turned into Weka Instances when a
+ * learner requires them. All Instances materialized from the same dataset share the same Instance objects, so that
+ * each instance is stored at most once as a Weka object, regardless of how many subsets it belongs to.
+ */
+public class ColumnarDataset {
+    /** Attributes (with dictionaries of nominal attributes) and class index of the dataset; has no instances. */
+    private final Instances header;
+
+    /** Values of each attribute, in instance order. */
+    private final double[][] columns;
+
+    /** Weight of each instance. */
+    private final double[] weights;
+
+    /** Instances as Weka objects; only materialized on first request. */
+    private volatile Instance[] rows;
+
+    /** Instances sorted by each attribute; only built on first request. */
+    private volatile PresortedIndex index;
+
+    /** Statistics of all instances; only computed on first request. */
+    private volatile DatasetStatistics statistics;
+
+    /**
+     * Creates a dataset from its columns.
+     *
+     * @param header Dataset with the attributes and class index of the dataset. Its instances, if any, are ignored
+     * @param columns Values of each attribute, in instance order. Arrays are not copied, and must not be modified
+     * @param weights Weight of each instance. Not copied, and must not be modified
+     * @throws InvalidParameterException If the number of columns or the size of any of them does not match
+     */
+    public ColumnarDataset(Instances header, double[][] columns, double[] weights) throws InvalidParameterException {
+        if(header.classIndex() < 0) {
+            throw new InvalidParameterException("class index of the dataset is not set!");
+        }
+        if(columns.length != header.numAttributes()) {
+            throw new InvalidParameterException(String.format(
+                    "dataset has %d attributes, but %d columns were given", header.numAttributes(), columns.length
+            ));
+        }
+        for(double[] column : columns) {
+            if(column.length != weights.length) {
+                throw new InvalidParameterException("all columns must have one value per instance!");
+            }
+        }
+        this.header = new Instances(header, 0);
+        this.columns = columns;
+        this.weights = weights;
+        this.rows = null;
+        this.index = null;
+        this.statistics = null;
+    }
+
+    /**
+     * Creates a dataset from Weka Instances. The instances of data are reused as the rows of the dataset, instead of
+     * being materialized again from columns: views of the dataset share them with data, and must be handled as
+     * described in {@link DatasetView#toInstances()}.
+     *
+     * @param data Dataset, with class index set
+     * @return The same data, by columns
+     */
+    public static ColumnarDataset of(Instances data) {
+        int n_instances = data.numInstances(),
+                n_attributes = data.numAttributes();
+
+        double[][] columns = new double[n_attributes][n_instances];
+        double[] weights = new double[n_instances];
+        Instance[] rows = new Instance[n_instances];
+
+        for(int i = 0; i < n_instances; i++) {
+            Instance inst = data.instance(i);
+            for(int j = 0; j < n_attributes; j++) {
+                columns[j][i] = inst.value(j);
+            }
+            weights[i] = inst.weight();
+            rows[i] = inst;
+        }
+
+        ColumnarDataset dataset = new ColumnarDataset(data, columns, weights);
+        dataset.rows = rows;
+        return dataset;
+    }
+
+    public int numInstances() {
+        return this.weights.length;
+    }
+
+    public int numAttributes() {
+        return this.columns.length;
+    }
+
+    public int classIndex() {
+        return this.header.classIndex();
+    }
+
+    public int numClasses() {
+        return this.header.numClasses();
+    }
+
+    public Attribute attribute(int index) {
+        return this.header.attribute(index);
+    }
+
+    /**
+     * Returns an empty dataset with the same attributes and class index of this dataset.
+     */
+    public Instances getHeader() {
+        return new Instances(this.header, 0);
+    }
+
+    /**
+     * Returns the values of an attribute, in instance order. The array is not a copy, and must not be modified.
+     */
+    public double[] getColumn(int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * Returns the class value of each instance. The array is not a copy, and must not be modified.
+     */
+    public double[] getClassColumn() {
+        return this.columns[this.header.classIndex()];
+    }
+
+    /**
+     * Returns the weight of each instance. The array is not a copy, and must not be modified.
+     */
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    public double value(int row, int attribute) {
+        return this.columns[attribute][row];
+    }
+
+    /**
+     * Returns an instance as a Weka object. The same object is returned for every call with the same row.
+     *
+     * @param row Index of the instance
+     * @return The instance
+     */
+    public Instance instance(int row) {
+        return this.getRows()[row];
+    }
+
+    /**
+     * Returns the instances of this dataset as Weka objects, materializing them from columns on first call.
+     */
+    Instance[] getRows() {
+        Instance[] rows = this.rows;
+        if(rows == null) {
+            synchronized(this) {
+                rows = this.rows;
+                if(rows == null) {
+                    Instances dataset = new Instances(this.header, 0);
+                    rows = new Instance[this.numInstances()];
+                    double[] values = new double[this.numAttributes()];
+                    for(int i = 0; i < rows.length; i++) {
+                        for(int j = 0; j < values.length; j++) {
+                            values[j] = this.columns[j][i];
+                        }
+                        rows[i] = new DenseInstance(this.weights[i], values.clone());
+                        rows[i].setDataset(dataset);
+                    }
+                    this.rows = rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the instances of this dataset sorted by each attribute, sorting them on first call. The sorted order of
+     * any view of this dataset is filtered from it, with PresortedIndex.getSortedIndices(view.getRows()).
+     */
+    public PresortedIndex getPresortedIndex() {
+        PresortedIndex index = this.index;
+        if(index == null) {
+            synchronized(this) {
+                index = this.index;
+                if(index == null) {
+                    index = new PresortedIndex(this.header, this.columns);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the statistics of all instances of this dataset, computing them from columns on first call.
+     */
+    public DatasetStatistics getStatistics() {
+        DatasetStatistics statistics = this.statistics;
+        if(statistics == null) {
+            synchronized(this) {
+                statistics = this.statistics;
+                if(statistics == null) {
+                    statistics = DatasetStatistics.of(this, this.all().getRows());
+                    this.statistics = statistics;
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns a subset of this dataset.
+     *
+     * @param rows Index of each instance of the subset, in the order they will appear in the subset. Not copied
+     * @return A view of the subset
+     */
+    public DatasetView view(int[] rows) {
+        return new DatasetView(this, rows);
+    }
+
+    /**
+     * Returns a contiguous range of instances of this dataset.
+     *
+     * @param from Index of the first instance of the range
+     * @param to Index of the instance after the last instance of the range
+     * @return A view of the range
+     */
+    public DatasetView view(int from, int to) {
+        int[] rows = new int[to - from];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = from + i;
+        }
+        return new DatasetView(this, rows);
+    }
+
+    /**
+     * Returns a view of the whole dataset.
+     */
+    public DatasetView all() {
+        return this.view(0, this.numInstances());
+    }
+
+    /**
+     * Returns the training set of a fold of this dataset, with the same instances as Instances.trainCV.
+     *
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return A view of the training set
+     */
+    public DatasetView trainCV(int n_folds, int n_fold) {
+        return new DatasetView(this, PresortedIndex.trainCVRows(this.numInstances(), n_folds, n_fold));
+    }
+
+    /**
+     * Returns the test set of a fold of this dataset, with the same instances as Instances.testCV.
+     *
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return A view of the test set
+     */
+    public DatasetView testCV(int n_folds, int n_fold) {
+        return new DatasetView(this, PresortedIndex.testCVRows(this.numInstances(), n_folds, n_fold));
+    }
+}
@@ -0,0 +1,517 @@
+package ednel.data;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ConverterUtils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A binary cache of ARFF files, so that each file is only parsed once.
+ *
+ * The first time an ARFF file is loaded, it is parsed with Weka and a binary copy is written next to it (with the
+ * same name plus {@link #EXTENSION}). Later loads memory-map the binary copy and build instances straight from it,
+ * instead of parsing the ARFF file again. The binary copy stores the size, modification time and SHA-256 hash of the
+ * ARFF file it was created from. The ARFF file is only hashed when its size or modification time changed, and the
+ * binary copy is only rewritten when its hash changed as well.
+ *
+ * ARFF files may also be streamed: rows are parsed one at a time and stored by columns, the binary copy is written
+ * from these columns, and instances are then built from the binary copy. Peak memory is then close to the size of
+ * the dataset, instead of twice as much.
+ *
+ * The binary format is column-major, with big-endian values:
+ * <ul>
+ *     <li>magic number and version (two ints);</li>
+ *     <li>size and modification time, in milliseconds, of the source file (two longs);</li>
+ *     <li>hash of the source file (32 bytes);</li>
+ *     <li>relation name; number of attributes, class index and number of instances (three ints);</li>
+ *     <li>for each attribute, its name, its type (a byte: 0 for numeric, 1 for nominal) and, if nominal, the number
+ *     of values followed by each value;</li>
+ *     <li>the weight of each instance (doubles);</li>
+ *     <li>for each attribute, its value for each instance (doubles; nominal values are indices, missing values are
+ *     NaN).</li>
+ * </ul>
+ * Strings are written as an int with their length in bytes, followed by their UTF-8 bytes. Columns are read one at a
+ * time, each one mapped on its own, so that offsets never overflow and each column is read sequentially.
+ *
+ * Only datasets with numeric and nominal attributes are cached; other datasets are parsed at every load. Failing to
+ * write the cache (e.g. in a read-only directory) is not an error.
+ */
+public class DatasetCache {
+    /** Extension appended to the name of an ARFF file to get the name of its binary copy. */
+    public static final String EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x45444e43;  // "EDNC"
+    private static final int VERSION = 2;
+
+    /** Position of the size of the source file in the binary copy, right after magic number and version. */
+    private static final int STAMP_OFFSET = 8;
+
+    private static final byte TYPE_NUMERIC = 0;
+    private static final byte TYPE_NOMINAL = 1;
+
+    /** Number of values in each block of a column, while streaming. */
+    private static final int BLOCK_SIZE = 1 << 14;
+
+    /**
+     * Values of a dataset, read one column at a time.
+     */
+    private interface ColumnSource {
+        /**
+         * Reads the values of an attribute for all instances.
+         *
+         * @param attribute Index of the attribute
+         * @param column Array where values are written to, one per instance
+         */
+        void readColumn(int attribute, double[] column) throws IOException;
+
+        /**
+         * Reads the weight of all instances.
+         *
+         * @param weights Array where weights are written to, one per instance
+         */
+        void readWeights(double[] weights) throws IOException;
+    }
+
+    /**
+     * Size and modification time of a file, used for telling whether it changed without reading it.
+     */
+    private static class Stamp {
+        final long size;
+        final long lastModified;
+
+        Stamp(Path path) throws IOException {
+            this.size = Files.size(path);
+            this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        }
+
+        boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+
+    /**
+     * A column of values whose size is not known in advance. Values are stored in fixed-size blocks, so that
+     * growing a column never copies it.
+     */
+    private static class ColumnBuilder {
+        private final ArrayList<double[]> blocks = new ArrayList<>();
+        private int size = 0;
+
+        void add(double value) {
+            if((this.size % BLOCK_SIZE) == 0) {
+                this.blocks.add(new double[BLOCK_SIZE]);
+            }
+            this.blocks.get(this.size / BLOCK_SIZE)[this.size % BLOCK_SIZE] = value;
+            this.size += 1;
+        }
+
+        void copyTo(double[] column) {
+            for(int b = 0; b < this.blocks.size(); b++) {
+                int from = b * BLOCK_SIZE;
+                System.arraycopy(this.blocks.get(b), 0, column, from, Math.min(BLOCK_SIZE, this.size - from));
+            }
+        }
+    }
+
+    /**
+     * Loads an ARFF file, from its binary copy if there is an up-to-date one. The last attribute is set as the
+     * class attribute.
+     *
+     * @param arff_path Path to the ARFF file
+     * @return The dataset in the file
+     * @throws Exception If the ARFF file could not be read
+     */
+    public static Instances load(String arff_path) throws Exception {
+        return DatasetCache.load(arff_path, false);
+    }
+
+    /**
+     * Loads an ARFF file, from its binary copy if there is an up-to-date one. The last attribute is set as the
+     * class attribute.
+     *
+     * @param arff_path Path to the ARFF file
+     * @param streaming Whether the ARFF file, if parsed, is streamed instead of read as a whole
+     * @return The dataset in the file
+     * @throws Exception If the ARFF file could not be read
+     */
+    public static Instances load(String arff_path, boolean streaming) throws Exception {
+        Path source = Paths.get(arff_path);
+        Path cache = Paths.get(arff_path + DatasetCache.EXTENSION);
+
+        Stamp stamp = new Stamp(source);
+
+        if(Files.exists(cache)) {
+            try {
+                Instances data = DatasetCache.read(cache, source, stamp);
+                if(data != null) {
+                    return data;
+                }
+            } catch(IOException | RuntimeException e) {
+                // corrupted or truncated cache; parses ARFF file again
+            }
+        }
+
+        byte[] hash = DatasetCache.hash(source);
+
+        if(streaming) {
+            return DatasetCache.stream(source, stamp, hash, cache);
+        }
+
+        Instances data = new ConverterUtils.DataSource(arff_path).getDataSet();
+        data.setClassIndex(data.numAttributes() - 1);
+
+        if(DatasetCache.isCacheable(data)) {
+            try {
+                DatasetCache.write(data, new ColumnSource() {
+                    @Override
+                    public void readColumn(int attribute, double[] column) {
+                        for(int i = 0; i < column.length; i++) {
+                            column[i] = data.instance(i).value(attribute);
+                        }
+                    }
+
+                    @Override
+                    public void readWeights(double[] weights) {
+                        for(int i = 0; i < weights.length; i++) {
+                            weights[i] = data.instance(i).weight();
+                        }
+                    }
+                }, data.numInstances(), stamp, hash, cache);
+            } catch(IOException e) {
+                // cache is an optimization; data was read anyway
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Streams an ARFF file: parses one row at a time, writes the binary copy of the dataset, and builds instances
+     * from the binary copy.
+     *
+     * @param source Path of the ARFF file
+     * @param stamp Size and modification time of the ARFF file
+     * @param hash Hash of the ARFF file
+     * @param cache Path of the binary copy
+     * @return The dataset in the file, with the last attribute as class
+     * @throws Exception If the ARFF file could not be read
+     */
+    private static Instances stream(Path source, Stamp stamp, byte[] hash, Path cache) throws Exception {
+        ArffLoader loader = new ArffLoader();
+        loader.setFile(source.toFile());
+        Instances header = loader.getStructure();
+        header.setClassIndex(header.numAttributes() - 1);
+
+        if(!DatasetCache.isCacheable(header)) {
+            Instances data = loader.getDataSet();
+            data.setClassIndex(data.numAttributes() - 1);
+            return data;
+        }
+
+        // columns are only referenced while the binary copy is written, and may be collected while instances are
+        // built from it
+        Instances data = DatasetCache.writeStreamed(loader, header, stamp, hash, cache);
+        if(data != null) {
+            return data;
+        }
+        data = DatasetCache.read(cache, source, stamp);
+        if(data == null) {
+            throw new IOException("binary copy of " + source + " was modified while being read");
+        }
+        return data;
+    }
+
+    /**
+     * Parses the rows of an ARFF file, one at a time, and writes them to a binary copy.
+     *
+     * @param loader Loader of the ARFF file, whose structure was already read
+     * @param header Structure of the ARFF file, with the class index set
+     * @param stamp Size and modification time of the ARFF file
+     * @param hash Hash of the ARFF file
+     * @param cache Path of the binary copy
+     * @return Null if the binary copy was written; otherwise, the dataset, built from the parsed rows.
+     * @throws Exception If the ARFF file could not be read
+     */
+    private static Instances writeStreamed(ArffLoader loader, Instances header, Stamp stamp, byte[] hash, Path cache)
+            throws Exception {
+        ColumnBuilder[] columns = new ColumnBuilder[header.numAttributes()];
+        for(int j = 0; j < columns.length; j++) {
+            columns[j] = new ColumnBuilder();
+        }
+        ColumnBuilder weights = new ColumnBuilder();
+
+        Instance inst;
+        while((inst = loader.getNextInstance(header)) != null) {
+            for(int j = 0; j < columns.length; j++) {
+                columns[j].add(inst.value(j));
+            }
+            weights.add(inst.weight());
+        }
+        int n_instances = weights.size;
+
+        ColumnSource values = new ColumnSource() {
+            @Override
+            public void readColumn(int attribute, double[] column) {
+                columns[attribute].copyTo(column);
+            }
+
+            @Override
+            public void readWeights(double[] column) {
+                weights.copyTo(column);
+            }
+        };
+
+        try {
+            DatasetCache.write(header, values, n_instances, stamp, hash, cache);
+            return null;
+        } catch(IOException e) {
+            // binary copy could not be written; builds instances from columns
+            return DatasetCache.materialize(header, values, n_instances);
+        }
+    }
+
+    /**
+     * Builds instances from values of a dataset. Values are read one column at a time, in a single sequential pass
+     * over each column.
+     *
+     * @param header Dataset with the attributes and class index of the dataset
+     * @param values Values of the dataset
+     * @param n_instances Number of instances
+     * @return The dataset
+     * @throws IOException If values could not be read
+     */
+    private static Instances materialize(Instances header, ColumnSource values, int n_instances) throws IOException {
+        double[][] rows = new double[n_instances][header.numAttributes()];
+        double[] column = new double[n_instances];
+        for(int j = 0; j < header.numAttributes(); j++) {
+            values.readColumn(j, column);
+            for(int i = 0; i < n_instances; i++) {
+                rows[i][j] = column[i];
+            }
+        }
+        values.readWeights(column);
+
+        Instances data = new Instances(header, n_instances);
+        for(int i = 0; i < n_instances; i++) {
+            // Instances.add makes a shallow copy of the instance, which shares the array of values
+            data.add(new DenseInstance(column[i], rows[i]));
+        }
+        return data;
+    }
+
+    /**
+     * Whether a dataset only has attributes that can be written to the binary format.
+     */
+    private static boolean isCacheable(Instances data) {
+        for(int j = 0; j < data.numAttributes(); j++) {
+            if(!data.attribute(j).isNumeric() && !data.attribute(j).isNominal()) {
+                return false;
+            }
+            if(data.attribute(j).isDate()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the SHA-256 hash of a file.
+     */
+    private static byte[] hash(Path path) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try(InputStream stream = new BufferedInputStream(Files.newInputStream(path))) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Writes the binary copy of a dataset. The copy is written to a temporary file first, and then moved to its
+     * final path, so that concurrent readers never see a partially written file.
+     *
+     * @param header Dataset with the attributes and class index of the dataset
+     * @param values Values of the dataset
+     * @param n_instances Number of instances
+     * @param stamp Size and modification time of the ARFF file of the dataset
+     * @param hash Hash of the ARFF file of the dataset
+     * @param cache Path of the binary copy
+     * @throws IOException If the copy could not be written
+     */
+    private static void write(Instances header, ColumnSource values, int n_instances, Stamp stamp, byte[] hash,
+                              Path cache) throws IOException {
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(DatasetCache.MAGIC);
+                out.writeInt(DatasetCache.VERSION);
+                out.writeLong(stamp.size);
+                out.writeLong(stamp.lastModified);
+                out.write(hash);
+
+                DatasetCache.writeString(out, header.relationName());
+                out.writeInt(header.numAttributes());
+                out.writeInt(header.classIndex());
+                out.writeInt(n_instances);
+
+                for(int j = 0; j < header.numAttributes(); j++) {
+                    Attribute attribute = header.attribute(j);
+                    DatasetCache.writeString(out, attribute.name());
+                    if(attribute.isNominal()) {
+                        out.writeByte(DatasetCache.TYPE_NOMINAL);
+                        out.writeInt(attribute.numValues());
+                        for(int k = 0; k < attribute.numValues(); k++) {
+                            DatasetCache.writeString(out, attribute.value(k));
+                        }
+                    } else {
+                        out.writeByte(DatasetCache.TYPE_NUMERIC);
+                    }
+                }
+                double[] column = new double[n_instances];
+                values.readWeights(column);
+                for(int i = 0; i < n_instances; i++) {
+                    out.writeDouble(column[i]);
+                }
+                for(int j = 0; j < header.numAttributes(); j++) {
+                    values.readColumn(j, column);
+                    for(int i = 0; i < n_instances; i++) {
+                        out.writeDouble(column[i]);
+                    }
+                }
+            }
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the binary copy of a dataset, by memory-mapping it. Instances are built straight from the mapped file,
+     * without copying its columns to memory first.
+     *
+     * The ARFF file is only hashed if its size or modification time differ from the ones stored in the binary copy;
+     * if its hash is still the same, the stored size and modification time are updated.
+     *
+     * @param cache Path of the binary copy
+     * @param source Path of the ARFF file of the dataset
+     * @param stamp Current size and modification time of the ARFF file
+     * @return The dataset, or null if the binary copy is outdated or was written by another version of this class.
+     * @throws IOException If the copy could not be read
+     */
+    private static Instances read(Path cache, Path source, Stamp stamp) throws IOException, NoSuchAlgorithmException {
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            // the header is small; only its first bytes are mapped to read it
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, Integer.MAX_VALUE)
+            );
+
+            if(buffer.getInt() != DatasetCache.MAGIC || buffer.getInt() != DatasetCache.VERSION) {
+                return null;
+            }
+            long size = buffer.getLong(),
+                    lastModified = buffer.getLong();
+            byte[] storedHash = new byte[32];
+            buffer.get(storedHash);
+            if(!stamp.matches(size, lastModified)) {
+                if(!Arrays.equals(storedHash, DatasetCache.hash(source))) {
+                    return null;
+                }
+                DatasetCache.updateStamp(cache, stamp);
+            }
+
+            String relationName = DatasetCache.readString(buffer);
+            int n_attributes = buffer.getInt(),
+                    classIndex = buffer.getInt(),
+                    n_instances = buffer.getInt();
+
+            ArrayList<Attribute> attributes = new ArrayList<>(n_attributes);
+            for(int j = 0; j < n_attributes; j++) {
+                String name = DatasetCache.readString(buffer);
+                byte type = buffer.get();
+                if(type == DatasetCache.TYPE_NOMINAL) {
+                    int n_values = buffer.getInt();
+                    ArrayList<String> values = new ArrayList<>(n_values);
+                    for(int k = 0; k < n_values; k++) {
+                        values.add(DatasetCache.readString(buffer));
+                    }
+                    attributes.add(new Attribute(name, values));
+                } else {
+                    attributes.add(new Attribute(name));
+                }
+            }
+            Instances header = new Instances(relationName, attributes, 0);
+            header.setClassIndex(classIndex);
+
+            // weights come first, followed by one column per attribute; offsets are computed as longs, and each
+            // column is mapped on its own
+            final long start = buffer.position();
+            final long columnBytes = (long)n_instances * Double.BYTES;
+            if(fileSize - start < columnBytes * (n_attributes + 1)) {
+                throw new IOException("binary copy " + cache + " is truncated");
+            }
+            return DatasetCache.materialize(header, new ColumnSource() {
+                @Override
+                public void readColumn(int attribute, double[] column) throws IOException {
+                    this.read(start + (attribute + 1L) * columnBytes, column);
+                }
+
+                @Override
+                public void readWeights(double[] weights) throws IOException {
+                    this.read(start, weights);
+                }
+
+                private void read(long offset, double[] column) throws IOException {
+                    channel.map(FileChannel.MapMode.READ_ONLY, offset, columnBytes).asDoubleBuffer().get(column);
+                }
+            }, n_instances);
+        }
+    }
+
+    /**
+     * Updates the size and modification time of the ARFF file stored in a binary copy, once its hash is known to be
+     * the same. Failing to update them is not an error: the ARFF file will be hashed again on the next load.
+     *
+     * @param cache Path of the binary copy
+     * @param stamp Current size and modification time of the ARFF file
+     */
+    private static void updateStamp(Path cache, Stamp stamp) {
+        try(FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+            buffer.putLong(stamp.size);
+            buffer.putLong(stamp.lastModified);
+            buffer.flip();
+            channel.write(buffer, DatasetCache.STAMP_OFFSET);
+        } catch(IOException e) {
+            // the binary copy is still valid
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
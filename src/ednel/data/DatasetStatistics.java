@@ -0,0 +1,165 @@
+package ednel.data;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Per-attribute statistics of a dataset, computed incrementally (one instance at a time) in a single pass: the
+ * number of instances with each value of nominal attributes (including the class attribute), and the weighted mean
+ * of numeric attributes. Missing values are not counted.
+ *
+ * Statistics are the same given by Instances.attributeStats (nominalCounts and numericStats.mean), without sorting
+ * the values of each attribute.
+ *
+ * Statistics of a {@link ColumnarDataset} and of each {@link DatasetView} are computed once, from columns, and kept
+ * by the dataset or view they refer to (see {@link ColumnarDataset#getStatistics()}).
+ */
+public class DatasetStatistics {
+    private final int classIndex;
+
+    /** For each nominal attribute, number of instances with each value; null for numeric attributes. */
+    private final int[][] counts;
+
+    /** For each numeric attribute, sum of weights and weighted sum of non-missing values. */
+    private final double[] sumOfWeights;
+    private final double[] weightedSums;
+
+    private int n_instances;
+
+    /**
+     * Creates empty statistics for a dataset; instances are added with {@link #add(Instance)}.
+     *
+     * @param header Dataset with the attributes and class index of the instances that will be added
+     */
+    public DatasetStatistics(Instances header) {
+        this.classIndex = header.classIndex();
+        this.counts = new int[header.numAttributes()][];
+        this.sumOfWeights = new double[header.numAttributes()];
+        this.weightedSums = new double[header.numAttributes()];
+        for(int j = 0; j < header.numAttributes(); j++) {
+            if(header.attribute(j).isNominal()) {
+                this.counts[j] = new int[header.attribute(j).numValues()];
+            }
+        }
+        this.n_instances = 0;
+    }
+
+    /**
+     * Computes the statistics of a dataset in a single pass over data.
+     *
+     * @param data Dataset
+     * @return Statistics of data
+     */
+    public static DatasetStatistics of(Instances data) {
+        DatasetStatistics statistics = new DatasetStatistics(data);
+        for(int i = 0; i < data.numInstances(); i++) {
+            statistics.add(data.instance(i));
+        }
+        return statistics;
+    }
+
+    /**
+     * Computes the statistics of a subset of a dataset from its columns, one column at a time.
+     *
+     * @param dataset Dataset
+     * @param rows Index of each instance of the subset
+     * @return Statistics of the subset
+     */
+    static DatasetStatistics of(ColumnarDataset dataset, int[] rows) {
+        DatasetStatistics statistics = new DatasetStatistics(dataset.getHeader());
+        double[] weights = dataset.getWeights();
+        for(int j = 0; j < dataset.numAttributes(); j++) {
+            double[] column = dataset.getColumn(j);
+            for(int row : rows) {
+                double value = column[row];
+                if(Double.isNaN(value)) {
+                    continue;
+                }
+                if(statistics.counts[j] != null) {
+                    statistics.counts[j][(int)value] += 1;
+                } else {
+                    statistics.sumOfWeights[j] += weights[row];
+                    statistics.weightedSums[j] += weights[row] * value;
+                }
+            }
+        }
+        statistics.n_instances = rows.length;
+        return statistics;
+    }
+
+    /**
+     * Adds an instance to the statistics.
+     *
+     * @param values Value of each attribute of the instance, as in Instance.toDoubleArray
+     * @param weight Weight of the instance
+     */
+    public void add(double[] values, double weight) {
+        for(int j = 0; j < values.length; j++) {
+            if(Double.isNaN(values[j])) {
+                continue;
+            }
+            if(this.counts[j] != null) {
+                this.counts[j][(int)values[j]] += 1;
+            } else {
+                this.sumOfWeights[j] += weight;
+                this.weightedSums[j] += weight * values[j];
+            }
+        }
+        this.n_instances += 1;
+    }
+
+    public void add(Instance instance) {
+        this.add(instance.toDoubleArray(), instance.weight());
+    }
+
+    public int getNumInstances() {
+        return this.n_instances;
+    }
+
+    /**
+     * Returns the number of instances with each value of a nominal attribute.
+     */
+    public int[] getNominalCounts(int attribute) {
+        return this.counts[attribute].clone();
+    }
+
+    /**
+     * Returns the number of instances of each class.
+     */
+    public int[] getClassCounts() {
+        return this.getNominalCounts(this.classIndex);
+    }
+
+    /**
+     * Returns the weighted mean of a numeric attribute, or NaN if all of its values are missing.
+     */
+    public double getMean(int attribute) {
+        if(this.sumOfWeights[attribute] == 0) {
+            return Double.NaN;
+        }
+        return this.weightedSums[attribute] / this.sumOfWeights[attribute];
+    }
+
+    /**
+     * Returns, for each attribute, its most common value: the index of the most frequent value for nominal
+     * attributes (the first one, in case of ties), and the mean for numeric attributes.
+     */
+    public double[] getMostCommonValues() {
+        double[] mostCommon = new double[this.counts.length];
+        for(int j = 0; j < this.counts.length; j++) {
+            if(this.counts[j] != null) {
+                double index = -1, max = Double.NEGATIVE_INFINITY;
+                for(int k = 0; k < this.counts[j].length; k++) {
+                    if(this.counts[j][k] > max) {
+                        index = k;
+                        max = this.counts[j][k];
+                    }
+                }
+                mostCommon[j] = index;
+            } else {
+                mostCommon[j] = this.getMean(j);
+            }
+        }
+        return mostCommon;
+    }
+}
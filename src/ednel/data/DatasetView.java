@@ -0,0 +1,293 @@
+package ednel.data;
+
+import ednel.utils.PresortedIndex;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Random;
+
+/**
+ * A subset of a {@link ColumnarDataset}, defined by the indices of its instances.
+ *
+ * Views are cheap to create and do not copy any values. A view is only turned into Weka Instances when
+ * {@link #toInstances()} is first called; the result is kept, so that every learner trained on the same view shares
+ * the same Instances. Instances are meant to be read-only: learners that modify their training data must copy it
+ * first (as most Weka learners already do).
+ */
+public class DatasetView {
+    private final ColumnarDataset dataset;
+
+    /** Index, in the dataset, of each instance of this view. */
+    private final int[] rows;
+
+    /** This view as Weka Instances; only materialized on first request. */
+    private volatile Instances instances;
+
+    /** Statistics of the instances of this view; only computed on first request. */
+    private volatile DatasetStatistics statistics;
+
+    /**
+     * Instances that reference existing Instance objects, instead of copying them as Instances.add does. Keeps the
+     * view it was materialized from, so that learners can reach the dataset behind it (see {@link #viewOf(Instances)}).
+     *
+     * Neither the list nor its Instance objects may be modified, since they are shared by every learner, thread and
+     * fold that uses the same dataset. SharedInstances are therefore only handed to code known to leave them
+     * untouched: the base classifiers of EDNEL (J48, PART, JRip and DecisionTable copy their training data with
+     * new Instances(data) before removing instances, reweighting or filtering them; SimpleCart only reads it, and
+     * copies it before removing instances with missing class), the aggregators (which only read instances), and
+     * Evaluation. Any other consumer, such as arbitrary learners in hyper-parameter optimization, must receive a copy
+     * (see {@link #toInstancesCopy()}).
+     */
+    private static class SharedInstances extends Instances {
+        private final DatasetView view;
+
+        SharedInstances(DatasetView view, Instances header, Instance[] source) {
+            super(header, view.rows.length);
+            this.view = view;
+            for(int row : view.rows) {
+                this.m_Instances.add(source[row]);
+            }
+        }
+    }
+
+    DatasetView(ColumnarDataset dataset, int[] rows) {
+        this.dataset = dataset;
+        this.rows = rows;
+        this.instances = null;
+        this.statistics = null;
+    }
+
+    public ColumnarDataset getDataset() {
+        return this.dataset;
+    }
+
+    public int size() {
+        return this.rows.length;
+    }
+
+    /**
+     * Returns the index, in the dataset, of each instance of this view. The array is not a copy, and must not be
+     * modified.
+     */
+    public int[] getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Returns the class value of each instance of this view.
+     */
+    public double[] getClassValues() {
+        double[] column = this.dataset.getClassColumn();
+        double[] classValues = new double[this.rows.length];
+        for(int i = 0; i < this.rows.length; i++) {
+            classValues[i] = column[this.rows[i]];
+        }
+        return classValues;
+    }
+
+    /**
+     * Returns the weight of each instance of this view.
+     */
+    public double[] getWeights() {
+        double[] all = this.dataset.getWeights();
+        double[] weights = new double[this.rows.length];
+        for(int i = 0; i < this.rows.length; i++) {
+            weights[i] = all[this.rows[i]];
+        }
+        return weights;
+    }
+
+    /**
+     * Returns the statistics of the instances of this view, computing them from the columns of the dataset on first
+     * call. Every learner trained on the same view shares them.
+     */
+    public DatasetStatistics getStatistics() {
+        DatasetStatistics statistics = this.statistics;
+        if(statistics == null) {
+            synchronized(this) {
+                statistics = this.statistics;
+                if(statistics == null) {
+                    statistics = DatasetStatistics.of(this.dataset, this.rows);
+                    this.statistics = statistics;
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns a subset of this view.
+     *
+     * @param positions Position, in this view, of each instance of the subset
+     * @return A view of the subset, over the same dataset
+     */
+    public DatasetView subset(int[] positions) {
+        int[] rows = new int[positions.length];
+        for(int i = 0; i < positions.length; i++) {
+            rows[i] = this.rows[positions[i]];
+        }
+        return new DatasetView(this.dataset, rows);
+    }
+
+    /**
+     * Returns the instances of this view in the same order given by Instances.stratify: instances are sorted by
+     * class, and then dealt in turns, so that each fold of Instances.testCV has about the same number of instances of
+     * each class.
+     *
+     * @param n_folds Number of folds
+     * @return A view with the same instances, stratified
+     * @throws IllegalArgumentException If the number of folds is less than two
+     */
+    public DatasetView stratify(int n_folds) throws IllegalArgumentException {
+        if(n_folds <= 1) {
+            throw new IllegalArgumentException("Number of folds must be greater than 1");
+        }
+        if(!this.dataset.attribute(this.dataset.classIndex()).isNominal()) {
+            return this;
+        }
+
+        double[] classValues = this.getClassValues();
+        int[] positions = new int[this.rows.length];
+        for(int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+
+        // sorts by class, swapping instances as Instances.stratify does
+        int index = 1;
+        while(index < positions.length) {
+            double first = classValues[positions[index - 1]];
+            for(int j = index; j < positions.length; j++) {
+                double other = classValues[positions[j]];
+                if(first == other || (Double.isNaN(first) && Double.isNaN(other))) {
+                    int aux = positions[index];
+                    positions[index] = positions[j];
+                    positions[j] = aux;
+                    index += 1;
+                }
+            }
+            index += 1;
+        }
+
+        // deals instances in turns
+        int[] stratified = new int[positions.length];
+        int count = 0;
+        for(int start = 0; count < positions.length; start++) {
+            for(int j = start; j < positions.length; j += n_folds) {
+                stratified[count] = positions[j];
+                count += 1;
+            }
+        }
+        return this.subset(stratified);
+    }
+
+    /**
+     * Returns the instances of this view grouped by fold: instances of the first fold come first, followed by
+     * instances of the second fold, and so on. Instances of the same fold keep their order.
+     *
+     * If fold sizes differ by at most one, and larger folds come first (as when instances are assigned to folds in
+     * turns), each fold of the returned view is exactly the set given by {@link #testCV(int, int)}.
+     *
+     * @param folds Fold of each instance of this view, from 0 to n_folds - 1
+     * @param n_folds Number of folds
+     * @return A view with the same instances, grouped by fold
+     */
+    public DatasetView orderByFolds(int[] folds, int n_folds) {
+        int[] offsets = new int[n_folds + 1];
+        for(int fold : folds) {
+            offsets[fold + 1] += 1;
+        }
+        for(int f = 0; f < n_folds; f++) {
+            offsets[f + 1] += offsets[f];
+        }
+        int[] positions = new int[folds.length];
+        for(int i = 0; i < folds.length; i++) {
+            positions[offsets[folds[i]]] = i;
+            offsets[folds[i]] += 1;
+        }
+        return this.subset(positions);
+    }
+
+    /**
+     * Returns the training set of a fold of this view, with the same instances as Instances.trainCV (without
+     * randomization).
+     *
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return A view of the training set
+     */
+    public DatasetView trainCV(int n_folds, int n_fold) {
+        return this.subset(PresortedIndex.trainCVRows(this.rows.length, n_folds, n_fold));
+    }
+
+    /**
+     * Returns the test set of a fold of this view, with the same instances as Instances.testCV.
+     *
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return A view of the test set
+     */
+    public DatasetView testCV(int n_folds, int n_fold) {
+        return this.subset(PresortedIndex.testCVRows(this.rows.length, n_folds, n_fold));
+    }
+
+    /**
+     * Returns the same instances of this view, in random order.
+     *
+     * @param random Random number generator
+     * @return A view with the instances of this view, shuffled
+     */
+    public DatasetView shuffle(Random random) {
+        int[] rows = this.rows.clone();
+        for(int i = rows.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int aux = rows[i];
+            rows[i] = rows[j];
+            rows[j] = aux;
+        }
+        return new DatasetView(this.dataset, rows);
+    }
+
+    /**
+     * Returns the view some Instances were materialized from.
+     *
+     * @param data Instances
+     * @return The view data was materialized from with {@link #toInstances()}, or null if data is not a view
+     */
+    public static DatasetView viewOf(Instances data) {
+        if(data instanceof SharedInstances && data.numInstances() == ((SharedInstances)data).view.rows.length) {
+            return ((SharedInstances)data).view;
+        }
+        return null;
+    }
+
+    /**
+     * Returns this view as Weka Instances, materializing it on first call. Instance objects are shared with every
+     * other view of the same dataset (and with the Instances the dataset was created from, if any), so the result is
+     * only meant for consumers that never modify it (see {@link SharedInstances}).
+     *
+     * @return The instances of this view, in order. Must not be modified
+     */
+    public Instances toInstances() {
+        Instances instances = this.instances;
+        if(instances == null) {
+            synchronized(this) {
+                instances = this.instances;
+                if(instances == null) {
+                    instances = new SharedInstances(this, this.dataset.getHeader(), this.dataset.getRows());
+                    this.instances = instances;
+                }
+            }
+        }
+        return instances;
+    }
+
+    /**
+     * Returns a copy of this view as Weka Instances, with copies of Instance objects (as Instances.trainCV and
+     * Instances.testCV return). Meant for learners that may modify their training data.
+     *
+     * @return A copy of the instances of this view, in order
+     */
+    public Instances toInstancesCopy() {
+        return new Instances(this.toInstances());
+    }
+}
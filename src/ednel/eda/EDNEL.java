@@ -2,6 +2,8 @@ package ednel.eda;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import ednel.data.ColumnarDataset;
+import ednel.data.DatasetView;
 import ednel.eda.individual.BaselineIndividual;
 import ednel.eda.individual.Fitness;
 import ednel.eda.individual.FitnessCalculator;
@@ -12,8 +14,6 @@ import ednel.utils.PBILLogger;
 import org.apache.commons.math3.random.MersenneTwister;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instances;
-import weka.filters.Filter;
-import weka.filters.unsupervised.instance.RemovePercentage;
 
 import java.io.File;
 import java.io.FileWriter;
@@ -22,6 +22,7 @@ import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
+import java.util.Random;
 
 public class EDNEL extends AbstractClassifier {
 
@@ -134,38 +135,37 @@ public class EDNEL extends AbstractClassifier {
         LocalDateTime start = LocalDateTime.now();
         LocalDateTime t1 = LocalDateTime.now(), t2;
 
-        Instances train_data;
-        Instances learn_data;
+        // all subsets of the data are views over the same instances, stratified by index
+        DatasetView all = ColumnarDataset.of(input_data).all();
+        Random random = new Random(this.seed);
+
+        DatasetView stratified;
+        DatasetView learn;
         Instances val_data;
 
         if(this.n_internal_folds == 0) {  // holdout
-            train_data = FitnessCalculator.betterStratifier(input_data, 10);  // uses 10 as default
-            RemovePercentage rp = new RemovePercentage();
-            rp.setInputFormat(train_data);
-            rp.setPercentage(20);
-            rp.setInvertSelection(false);
-            learn_data = new Instances(Filter.useFilter(train_data, rp));
-            rp = new RemovePercentage();
-            rp.setInputFormat(train_data);
-            rp.setPercentage(20);
-            rp.setInvertSelection(true);
-            val_data = new Instances(Filter.useFilter(train_data, rp));
+            // one fold of five (20%) is used for validation, and the remaining for learning
+            stratified = FitnessCalculator.stratify(all, 5, random);
+            val_data = stratified.testCV(5, 0).toInstances();
+            learn = stratified.trainCV(5, 0);
         } else if(this.n_internal_folds == 1) {  // leave one out
             throw new Exception("not implemented yet!");
         } else {  // n-fold cross validation
-            train_data = FitnessCalculator.betterStratifier(input_data, n_internal_folds + 1);  // 5 folds of interval CV + 1 for validation
-            val_data = train_data.testCV(n_internal_folds + 1, 1);
-            learn_data = FitnessCalculator.betterStratifier(train_data.trainCV(n_internal_folds + 1, 1), n_internal_folds);
+            stratified = FitnessCalculator.stratify(all, n_internal_folds + 1, random);  // 5 folds of interval CV + 1 for validation
+            val_data = stratified.testCV(n_internal_folds + 1, 1).toInstances();
+            learn = FitnessCalculator.stratify(stratified.trainCV(n_internal_folds + 1, 1), n_internal_folds, random);
         }
+        Instances train_data = stratified.toInstances();
+        Instances learn_data = learn.toInstances();
 
         if(this.pbilLogger != null) {
             pbilLogger.setDatasets(null, learn_data, val_data, null);
         }
-        FitnessCalculator fc = new FitnessCalculator(this.n_internal_folds, learn_data, val_data, this.metric);
+        FitnessCalculator fc = new FitnessCalculator(this.n_internal_folds, learn, val_data, this.metric, random);
         this.earlyStop = new EarlyStop(this.early_stop_generations, 0);
 
         this.currentGenBest = new BaselineIndividual();
-        Fitness baselineFitness = fc.evaluateEnsemble(seed, this.currentGenBest, null, true);
+        Fitness baselineFitness = fc.evaluateEnsemble(this.currentGenBest, null, true);
         this.currentGenBest.setFitness(baselineFitness);
 
         this.earlyStop.update(-1, this.currentGenBest, this.currentGenBest.getFitness().getValQuality());
@@ -179,7 +179,7 @@ public class EDNEL extends AbstractClassifier {
 
         for(int g = 0; g < this.n_generations; g++) {
             Individual[] sampled = dn.gibbsSampleAndAssignFitness(
-                    this.currentGenBest.getCharacteristics(), to_sample, fc, this.seed, start, this.timeout
+                    this.currentGenBest.getCharacteristics(), to_sample, fc, start, this.timeout
             );
             if((sampled.length < to_sample)) {
                 break;
@@ -242,26 +242,19 @@ public class EDNEL extends AbstractClassifier {
      * @throws Exception If anything wrong happens.
      */
     protected void trainReturnIndividuals(final Instances train_data) throws Exception {
-        Thread buildCurrentGenBest = new Thread() {
-            @Override
-            public synchronized void start() {
-                try {
-                    currentGenBest.setTimeoutIndividual(null);
-                    currentGenBest.buildClassifier(train_data);
-                } catch(Exception e) {
-                    // does nothing
-                }
-
-            }
-        };
-        if(this.currentGenBest != this.overallBest) {
-            buildCurrentGenBest.start();
-        }
-
         this.overallBest.setTimeoutIndividual(null);
         this.overallBest.buildClassifier(train_data);
 
-        buildCurrentGenBest.join();
+        if(this.currentGenBest != this.overallBest) {
+            try {
+                // base classifiers configured exactly as the ones of overallBest are trained on the same data, and
+                // thus reused instead of trained again
+                this.currentGenBest.setTimeoutIndividual(null);
+                this.currentGenBest.buildClassifier(train_data, this.overallBest);
+            } catch(Exception e) {
+                // does nothing
+            }
+        }
     }
 
     public PBILLogger getPbilLogger() {
@@ -37,6 +37,9 @@ public class RunFoldOfTenFoldCrossValidation implements Runnable, Callable {
 
     protected boolean logTest = false;
 
+    /** Whether ARFF files are streamed when loaded */
+    protected boolean streamArff;
+
     /** Fold of 10-fold cross validation adopted */
     protected int n_fold;
 
@@ -61,6 +64,7 @@ public class RunFoldOfTenFoldCrossValidation implements Runnable, Callable {
 
         this.log = Boolean.parseBoolean(cmd.get("log"));
         this.logTest = Boolean.parseBoolean(cmd.get("log_test"));
+        this.streamArff = Boolean.parseBoolean(cmd.get("stream_arff"));
 
         this.datasets_path = cmd.get("datasets_path");
 
@@ -109,7 +113,8 @@ public class RunFoldOfTenFoldCrossValidation implements Runnable, Callable {
             HashMap<String, Instances> datasets = Main.loadDataset(
                     this.datasets_path,
                     this.dataset_name,
-                    this.n_fold
+                    this.n_fold,
+                    this.streamArff
             );
             this.train_data = datasets.get("train_data");
             this.test_data = datasets.get("test_data");
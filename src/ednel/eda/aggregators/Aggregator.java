@@ -1,9 +1,12 @@
 package ednel.eda.aggregators;
 
+import ednel.eda.individual.EmptyEnsembleException;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instance;
 import weka.core.Instances;
 
+import java.util.Arrays;
+
 public abstract class Aggregator {
     protected double[] competences;
 
@@ -11,6 +14,94 @@ public abstract class Aggregator {
     public abstract double[] aggregateProba(AbstractClassifier[] clfs, Instance instance) throws Exception;
     public abstract void setCompetences(AbstractClassifier[] clfs, Instances train_data) throws Exception;
 
+    /**
+     * Sets competences from predictions that base classifiers made for instances they were not trained on (e.g. the
+     * folds of a cross-validation), without making base classifiers predict anything. Only classifiers with
+     * predictions for every instance take part in the ensemble. By default, all of them are equally competent.
+     *
+     * @param predictions Out-of-fold predictions of each classifier
+     * @throws Exception If competences could not be set
+     */
+    public void setCompetences(OutOfFoldPredictions predictions) throws Exception {
+        int n_active_classifiers = 0;
+        for(int i = 0; i < predictions.getNumClassifiers(); i++) {
+            if(predictions.hasDistributions(i)) {
+                n_active_classifiers += 1;
+            }
+        }
+        this.competences = new double[n_active_classifiers];
+        Arrays.fill(this.competences, 1.0);
+    }
+
+    /**
+     * Whether this aggregator can set its competences from out-of-fold predictions.
+     */
+    public boolean usesOutOfFoldPredictions() {
+        return false;
+    }
+
+    /**
+     * Whether this aggregator can only set its competences from out-of-fold predictions, and thus can not be trained
+     * when there are none.
+     */
+    public boolean requiresOutOfFoldPredictions() {
+        return false;
+    }
+
+    /**
+     * Aggregates predictions that base classifiers already made for a batch of instances. By default, the class
+     * distributions of classifiers are averaged, weighted by the competence of each classifier.
+     *
+     * @param dists For each base classifier, in order, its predictions for each instance; null for classifiers that
+     *              are not part of the ensemble
+     * @return Probability distribution of classes for each instance
+     * @throws Exception If predictions could not be aggregated
+     */
+    public double[][] aggregateProba(double[][][] dists) throws Exception {
+        int n_active_classifiers = 0, n_instances = 0, n_classes = 0;
+        for(double[][] dist : dists) {
+            if(dist != null) {
+                n_active_classifiers += 1;
+                n_instances = dist.length;
+                n_classes = dist.length > 0? dist[0].length : 0;
+            }
+        }
+        if(n_active_classifiers == 0) {
+            throw new EmptyEnsembleException("ensemble is empty.");
+        }
+
+        double[][] finalDistribution = new double [n_instances][n_classes];
+
+        int counter = 0;
+        for(double[][] dist : dists) {
+            if(dist == null) {
+                continue;
+            }
+            double competence = competences[counter];
+            for(int j = 0; j < n_instances; j++) {
+                for(int k = 0; k < n_classes; k++) {
+                    finalDistribution[j][k] += dist[j][k] * competence;
+                }
+            }
+            counter += 1;
+        }
+
+        for(int j = 0; j < n_instances; j++) {
+            Aggregator.normalize(finalDistribution[j]);
+        }
+        return finalDistribution;
+    }
+
+    protected static void normalize(double[] distribution) {
+        double sum = 0;
+        for(int k = 0; k < distribution.length; k++) {
+            sum += distribution[k];
+        }
+        for(int k = 0; k < distribution.length; k++) {
+            distribution[k] /= sum;
+        }
+    }
+
     protected int getActiveClassifiersCount(AbstractClassifier[] clfs) {
         int n_active_classifiers = 0;
         for(AbstractClassifier clf : clfs) {
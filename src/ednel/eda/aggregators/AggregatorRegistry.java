@@ -0,0 +1,46 @@
+package ednel.eda.aggregators;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the aggregation policies available to individuals.
+ *
+ * Each aggregator is registered under its simple class name (the same name used in the Aggregator variable of the
+ * Dependency Network) together with a factory, so that individuals create their aggregators with a direct call,
+ * without scanning the classpath or resorting to reflection. New aggregators must be added to the static block below.
+ * The registry is never modified after the class is initialized, so lookups need no locking.
+ */
+public final class AggregatorRegistry {
+    private static final Map<String, Supplier<? extends Aggregator>> factories;
+
+    static {
+        LinkedHashMap<String, Supplier<? extends Aggregator>> registered = new LinkedHashMap<>();
+        registered.put("MajorityVotingAggregator", MajorityVotingAggregator::new);
+        registered.put("CompetenceBasedAggregator", CompetenceBasedAggregator::new);
+        registered.put("RuleExtractorAggregator", RuleExtractorAggregator::new);
+        registered.put("StackingAggregator", StackingAggregator::new);
+        factories = Collections.unmodifiableMap(registered);
+    }
+
+    private AggregatorRegistry() {
+    }
+
+    /**
+     * Creates a new instance of an aggregator.
+     *
+     * @param name Name of the aggregator.
+     * @return A new instance of the aggregator, or null if no aggregator is registered under that name.
+     */
+    public static Aggregator newInstance(String name) {
+        Supplier<? extends Aggregator> factory = AggregatorRegistry.factories.get(name);
+        return factory == null? null : factory.get();
+    }
+
+    /**
+     * Returns the names of all registered aggregators, in order of registration.
+     */
+    public static List<String> getNames() {
+        return new ArrayList<>(AggregatorRegistry.factories.keySet());
+    }
+}
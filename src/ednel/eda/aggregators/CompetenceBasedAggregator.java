@@ -2,7 +2,6 @@ package ednel.eda.aggregators;
 
 import ednel.eda.individual.FitnessCalculator;
 import weka.classifiers.AbstractClassifier;
-import weka.classifiers.Evaluation;
 import weka.core.Instances;
 
 import java.io.Serializable;
@@ -22,13 +21,20 @@ public class CompetenceBasedAggregator extends MajorityVotingAggregator implemen
     public void setCompetences(AbstractClassifier[] clfs, Instances train_data) throws Exception {
         int n_active_classifiers = this.getActiveClassifiersCount(clfs);
 
+        double[] classValues = new double[train_data.size()];
+        double[] weights = new double[train_data.size()];
+        for(int j = 0; j < train_data.size(); j++) {
+            classValues[j] = train_data.instance(j).classValue();
+            weights[j] = train_data.instance(j).weight();
+        }
+
         this.competences = new double[n_active_classifiers];
         int i = 0, counter = 0;
         while(counter < n_active_classifiers) {
             if(clfs[i] != null) {
-                Evaluation evaluation = new Evaluation(train_data);
-                evaluation.evaluateModel(clfs[i], train_data);
-                this.competences[counter] = FitnessCalculator.getUnweightedAreaUnderROC(evaluation);
+                this.competences[counter] = FitnessCalculator.getUnweightedAreaUnderROC(
+                        clfs[i].distributionsForInstances(train_data), classValues, weights, train_data.numClasses()
+                );
                 counter += 1;
 
             }
@@ -36,6 +42,39 @@ public class CompetenceBasedAggregator extends MajorityVotingAggregator implemen
         }
     }
 
+    /**
+     * Assign competence do classifiers based on the AUC of their out-of-fold predictions.
+     *
+     * @param predictions Out-of-fold predictions of each classifier
+     * @throws Exception
+     */
+    @Override
+    public void setCompetences(OutOfFoldPredictions predictions) throws Exception {
+        int n_active_classifiers = 0;
+        for(int i = 0; i < predictions.getNumClassifiers(); i++) {
+            if(predictions.hasDistributions(i)) {
+                n_active_classifiers += 1;
+            }
+        }
+
+        this.competences = new double[n_active_classifiers];
+        int counter = 0;
+        for(int i = 0; i < predictions.getNumClassifiers(); i++) {
+            if(predictions.hasDistributions(i)) {
+                this.competences[counter] = FitnessCalculator.getUnweightedAreaUnderROC(
+                        predictions.getDistributions(i), predictions.getClassValues(), predictions.getWeights(),
+                        predictions.getNumClasses()
+                );
+                counter += 1;
+            }
+        }
+    }
+
+    @Override
+    public boolean usesOutOfFoldPredictions() {
+        return true;
+    }
+
     @Override
     public String[] getOptions() {
         return new String[0];
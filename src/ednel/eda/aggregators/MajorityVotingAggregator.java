@@ -37,35 +37,35 @@ public class MajorityVotingAggregator extends Aggregator implements Serializable
     public double[][] aggregateProba(AbstractClassifier[] clfs, Instances batch) throws Exception {
         int n_active_classifiers = this.getActiveClassifiersCount(clfs);
 
-        double[][][] dists = new double[n_active_classifiers][][];
-        int cc = 0, counter = 0;
-        while(counter < n_active_classifiers) {
-            if(clfs[cc] != null) {
-                dists[counter] = clfs[cc].distributionsForInstances(batch);
-                counter += 1;
-            }
-            cc += 1;
+        if(n_active_classifiers == 0) {
+            throw new EmptyEnsembleException("ensemble is empty.");
         }
 
         int n_instances = batch.size(),
-                n_classes = dists[0][0].length;
+                n_classes = batch.numClasses();
 
         double[][] finalDistribution = new double [n_instances][n_classes];
 
-        for(int j = 0; j < n_instances; j++) {
-            double sum = 0;
-            for(int k = 0; k < n_classes; k++) {
-                finalDistribution[j][k] = 0;
-                for(int i = 0; i < n_active_classifiers; i++) {
-                    finalDistribution[j][k] += dists[i][j][k] * competences[i];
-                }
-                finalDistribution[j][k] /= n_active_classifiers;
-                sum += finalDistribution[j][k];
+        // streams over classifiers: distributions of each classifier are added to finalDistribution, weighted by
+        // its competence, and then discarded
+        int counter = 0;
+        for(int i = 0; i < clfs.length; i++) {
+            if(clfs[i] == null) {
+                continue;
             }
-            // normalizes
-            for(int k = 0; k < n_classes; k++) {
-                finalDistribution[j][k] /= sum;
+            double[][] dists = clfs[i].distributionsForInstances(batch);
+            double competence = competences[counter];
+            for(int j = 0; j < n_instances; j++) {
+                for(int k = 0; k < n_classes; k++) {
+                    finalDistribution[j][k] += dists[j][k] * competence;
+                }
             }
+            counter += 1;
+        }
+
+        // normalizes; dividing by the number of classifiers beforehand is not needed, since it cancels out
+        for(int j = 0; j < n_instances; j++) {
+            MajorityVotingAggregator.normalize(finalDistribution[j]);
         }
         return finalDistribution;
     }
@@ -98,33 +98,23 @@ public class MajorityVotingAggregator extends Aggregator implements Serializable
             throw new EmptyEnsembleException("ensemble is empty.");
         }
 
-        double[][] dists = new double[n_active_classifiers][];
-        int cc = 0, counter = 0;
-        while(counter < n_active_classifiers) {
-            if(clfs[cc] != null) {
-                dists[counter] = clfs[cc].distributionForInstance(instance);
-                counter += 1;
-            }
-            cc += 1;
-        }
-
         int n_classes = instance.attribute(instance.classIndex()).numValues();
 
         double[] finalDistribution = new double [n_classes];
 
-        double sum = 0;
-        for(int k = 0; k < n_classes; k++) {
-            finalDistribution[k] = 0;
-            for(int i = 0; i < n_active_classifiers; i++) {
-                finalDistribution[k] += dists[i][k] * competences[i];
+        int counter = 0;
+        for(int i = 0; i < clfs.length; i++) {
+            if(clfs[i] == null) {
+                continue;
             }
-            finalDistribution[k] /= n_active_classifiers;
-            sum += finalDistribution[k];
-        }
-        // normalizes
-        for(int k = 0; k < n_classes; k++) {
-            finalDistribution[k] /= sum;
+            double[] dist = clfs[i].distributionForInstance(instance);
+            double competence = competences[counter];
+            for(int k = 0; k < n_classes; k++) {
+                finalDistribution[k] += dist[k] * competence;
+            }
+            counter += 1;
         }
+        MajorityVotingAggregator.normalize(finalDistribution);
 
         return finalDistribution;
     }
@@ -0,0 +1,164 @@
+package ednel.eda.aggregators;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Class probabilities that each base classifier of an ensemble assigned to the instances of a dataset, when trained
+ * on data that did not contain those instances (e.g. the validation folds of a cross-validation).
+ *
+ * Predictions are aligned with the instances of the dataset they were produced for, and are indexed by the position
+ * of each base classifier in the ensemble. Aggregators may use them to set their competences without making base
+ * classifiers predict on training data, and without learning from predictions that base classifiers made for their
+ * own training data.
+ *
+ * Once all predictions are stored, instances are only read, and may be shared between threads (e.g. by copies of the
+ * same individual).
+ */
+public class OutOfFoldPredictions {
+    private final Attribute classAttribute;
+
+    private final double[] classValues;
+    private final double[] weights;
+
+    /** For each base classifier, a matrix with one row per instance and one column per class; null if absent. */
+    private final double[][][] distributions;
+
+    /**
+     * Creates an empty set of predictions for a dataset; predictions are added with
+     * {@link #setDistributions(int, int, double[][])}.
+     *
+     * @param data Dataset to which predictions refer to
+     * @param n_classifiers Number of base classifiers in the ensemble (active or not)
+     */
+    public OutOfFoldPredictions(Instances data, int n_classifiers) {
+        this.classAttribute = data.classAttribute();
+
+        this.classValues = new double[data.size()];
+        this.weights = new double[data.size()];
+        for(int i = 0; i < data.size(); i++) {
+            this.classValues[i] = data.instance(i).classValue();
+            this.weights[i] = data.instance(i).weight();
+        }
+        this.distributions = new double[n_classifiers][][];
+    }
+
+    private OutOfFoldPredictions(Attribute classAttribute, double[] classValues, double[] weights, double[][][] distributions) {
+        this.classAttribute = classAttribute;
+        this.classValues = classValues;
+        this.weights = weights;
+        this.distributions = distributions;
+    }
+
+    /**
+     * Returns the predictions for all instances except a contiguous block (e.g. all folds of a cross-validation but
+     * one). Predictions are not copied.
+     *
+     * @param offset Index of the first instance of the block
+     * @param size Number of instances in the block
+     * @return Predictions for the remaining instances, in order
+     */
+    public OutOfFoldPredictions exclude(int offset, int size) {
+        int n_instances = this.classValues.length - size;
+        double[] classValues = new double[n_instances];
+        double[] weights = new double[n_instances];
+        double[][][] distributions = new double[this.distributions.length][][];
+        for(int c = 0; c < this.distributions.length; c++) {
+            if(this.hasDistributions(c)) {
+                distributions[c] = new double[n_instances][];
+            }
+        }
+
+        int counter = 0;
+        for(int i = 0; i < this.classValues.length; i++) {
+            if(i >= offset && i < offset + size) {
+                continue;
+            }
+            classValues[counter] = this.classValues[i];
+            weights[counter] = this.weights[i];
+            for(int c = 0; c < distributions.length; c++) {
+                if(distributions[c] != null) {
+                    distributions[c][counter] = this.distributions[c][i];
+                }
+            }
+            counter += 1;
+        }
+        return new OutOfFoldPredictions(this.classAttribute, classValues, weights, distributions);
+    }
+
+    /**
+     * Returns the predictions of some base classifiers only; the remaining ones are left out of the ensemble.
+     * Predictions are not copied.
+     *
+     * @param classifiers For each base classifier, whether to keep its predictions
+     * @return Predictions of the selected classifiers, for all instances
+     */
+    public OutOfFoldPredictions retain(boolean[] classifiers) {
+        double[][][] distributions = new double[this.distributions.length][][];
+        for(int c = 0; c < distributions.length; c++) {
+            if(c < classifiers.length && classifiers[c]) {
+                distributions[c] = this.distributions[c];
+            }
+        }
+        return new OutOfFoldPredictions(this.classAttribute, this.classValues, this.weights, distributions);
+    }
+
+    /**
+     * Stores predictions of a base classifier for a contiguous block of instances.
+     *
+     * @param classifier Position of the base classifier in the ensemble
+     * @param offset Index of the first instance of the block
+     * @param dists Predictions for each instance of the block
+     */
+    public synchronized void setDistributions(int classifier, int offset, double[][] dists) {
+        if(this.distributions[classifier] == null) {
+            this.distributions[classifier] = new double[this.classValues.length][];
+        }
+        for(int i = 0; i < dists.length; i++) {
+            this.distributions[classifier][offset + i] = dists[i];
+        }
+    }
+
+    /**
+     * Whether there are predictions of a base classifier for every instance.
+     */
+    public boolean hasDistributions(int classifier) {
+        if(classifier >= this.distributions.length || this.distributions[classifier] == null) {
+            return false;
+        }
+        for(double[] dist : this.distributions[classifier]) {
+            if(dist == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public double[][] getDistributions(int classifier) {
+        return this.distributions[classifier];
+    }
+
+    public double[] getClassValues() {
+        return this.classValues;
+    }
+
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    public Attribute getClassAttribute() {
+        return this.classAttribute;
+    }
+
+    public int getNumClasses() {
+        return this.classAttribute.numValues();
+    }
+
+    public int getNumInstances() {
+        return this.classValues.length;
+    }
+
+    public int getNumClassifiers() {
+        return this.distributions.length;
+    }
+}
@@ -4,7 +4,10 @@ import ednel.Main;
 import ednel.classifiers.trees.SimpleCart;
 import ednel.eda.aggregators.rules.RuleExtractor;
 import ednel.eda.aggregators.rules.SimpleRuleClassifier;
+import ednel.eda.rules.CompiledRuleSet;
 import ednel.eda.rules.ExtractedRule;
+import ednel.eda.rules.RuleCoverage;
+import ednel.eda.rules.RuleIndex;
 import org.apache.commons.cli.*;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
@@ -17,6 +20,7 @@ import weka.core.Instances;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class RuleExtractorAggregator extends Aggregator implements Serializable {
 
@@ -30,6 +34,12 @@ public class RuleExtractorAggregator extends Aggregator implements Serializable
     private HashMap<String, ExtractedRule[]> orderedRules;
     private HashMap<String, Double[]> orderedRulesQualities;
 
+    /** All rules (ordered first, then unordered) compiled for voting on batches of instances. */
+    private CompiledRuleSet compiledRules;
+
+    /** All rules (ordered first, then unordered) indexed for voting on single instances. */
+    private RuleIndex ruleIndex;
+
     public RuleExtractorAggregator() {
         this.n_classes = 0;
         this.n_rules = 0;
@@ -40,6 +50,9 @@ public class RuleExtractorAggregator extends Aggregator implements Serializable
         this.orderedRules = new HashMap<>();
         this.orderedRulesQualities = new HashMap<>();
 
+        this.compiledRules = null;
+        this.ruleIndex = null;
+
         this.competences = new double[0];
     }
 
@@ -54,78 +67,162 @@ public class RuleExtractorAggregator extends Aggregator implements Serializable
     public void setCompetences(AbstractClassifier[] clfs, Instances train_data) throws Exception {
         this.n_classes = train_data.numClasses();
 
-        HashSet<ExtractedRule> unordered_cand_rules = new HashSet<>();
+        ArrayList<ExtractedRule> unordered_cand_rules = new ArrayList<>();
 
+        this.unorderedRules = new ArrayList<>();
+        this.unorderedRulesQualities = new ArrayList<>();
         this.orderedRules = new HashMap<>();
         this.orderedRulesQualities = new HashMap<>();
 
-        final boolean[] all_activated = new boolean[train_data.size()];
-        for(int i = 0; i < train_data.size(); i++) {
-            all_activated[i] = true;
-        }
+        RuleCoverage coverage = new RuleCoverage(train_data);
+        final long[] all_activated = coverage.allInstances();
 
-        for(int i = 0; i < clfs.length; i++) {
+        // rules of each classifier are extracted in parallel; results are then processed in the order of classifiers
+        Object[] extracted = IntStream.range(0, clfs.length).parallel().mapToObj(i -> {
             if(clfs[i] == null) {
+                return null;
+            }
+            try {
+                return RuleExtractor.fromClassifierToRules(clfs[i], train_data);
+            } catch(Exception e) {
+                return e;
+            }
+        }).toArray();
+
+        for(int i = 0; i < clfs.length; i++) {
+            if(extracted[i] == null) {
                 continue;
+            } else if(extracted[i] instanceof Exception) {
+                throw (Exception)extracted[i];
             }
+            ExtractedRule[] rules = (ExtractedRule[])extracted[i];
+
             // algorithm generates unordered rules; proceed
             if(!clfs[i].getClass().equals(JRip.class) && !clfs[i].getClass().equals(PART.class)) {
-                unordered_cand_rules.addAll(Arrays.asList(RuleExtractor.fromClassifierToRules(clfs[i], train_data)));
+                unordered_cand_rules.addAll(Arrays.asList(rules));
             } else if(clfs[i].getClass().equals(PART.class) || clfs[i].getClass().equals(JRip.class)) {
                 String clf_name = clfs[i].getClass().getSimpleName();
-                ExtractedRule[] ordered_rules = RuleExtractor.fromClassifierToRules(clfs[i], train_data);
-                orderedRules.put(clf_name, ordered_rules);
+                orderedRules.put(clf_name, rules);
 
-                boolean[] activated = all_activated.clone();
-                Double[] rule_qualities = new Double[ordered_rules.length];
+                // coverage of rules is computed in parallel; qualities depend on previous rules, so are computed in order
+                long[][] covered = coverage.covers(rules, train_data);
 
-                for(int j = 0; j < ordered_rules.length; j++) {
-                    rule_qualities[j] = ordered_rules[j].quality(train_data, activated);
+                long[] activated = all_activated.clone();
+                Double[] rule_qualities = new Double[rules.length];
 
-                    boolean[] covered = ordered_rules[j].covers(train_data, activated);
-                    for(int n = 0; n < train_data.size(); n++) {
-                        activated[n] = activated[n] && !(covered[n] && (ordered_rules[j].getConsequent() == train_data.get(n).classValue()));
-                    }
+                for(int j = 0; j < rules.length; j++) {
+                    rule_qualities[j] = coverage.quality(covered[j], rules[j].getConsequent(), activated);
+                    coverage.deactivate(activated, covered[j], rules[j].getConsequent());
                 }
                 orderedRulesQualities.put(clf_name, rule_qualities);
             }
         }
-        this.selectUnorderedRules(train_data, unordered_cand_rules, all_activated);
+        this.selectUnorderedRules(train_data, coverage, unordered_cand_rules, all_activated);
         this.n_rules = this.orderedRules.size() + this.unorderedRules.size();
+
+        this.compileRules();
     }
 
-    private void selectUnorderedRules(Instances train_data, HashSet<ExtractedRule> candidateRules, boolean[] all_activated) {
-        boolean[] activated = all_activated.clone();
+    /**
+     * Compiles all rules into a CompiledRuleSet and a RuleIndex. In both, rules vote in the same order: first ordered
+     * rules, then unordered rules.
+     */
+    private void compileRules() {
+        ArrayList<ExtractedRule> rules = new ArrayList<>();
+        ArrayList<Double> weights = new ArrayList<>();
+
+        for(String classifier : this.orderedRules.keySet()) {
+            rules.addAll(Arrays.asList(this.orderedRules.get(classifier)));
+            weights.addAll(Arrays.asList(this.orderedRulesQualities.get(classifier)));
+        }
+        rules.addAll(this.unorderedRules);
+        weights.addAll(this.unorderedRulesQualities);
+
+        this.compiledRules = new CompiledRuleSet(rules, weights);
+        this.ruleIndex = new RuleIndex(rules, weights);
+    }
+
+    /**
+     * Removes candidate rules logically identical to a previous candidate (i.e. with the same canonical key). The
+     * order of the remaining candidates is kept.
+     */
+    private static ArrayList<ExtractedRule> removeDuplicates(ArrayList<ExtractedRule> candidateRules) {
+        LinkedHashMap<String, ExtractedRule> unique = new LinkedHashMap<>();
+        for(ExtractedRule rule : candidateRules) {
+            unique.putIfAbsent(rule.getCanonicalKey(), rule);
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    /**
+     * Greedily selects unordered rules: at each step, picks the candidate rule with highest quality on the instances
+     * not yet covered and correctly classified by previously selected rules.
+     *
+     * Duplicate candidates, and candidates that could never be selected, are removed beforehand (see
+     * {@link RuleCoverage#findRedundant(long[][], double[])}). Candidates are evaluated once over the training data;
+     * afterwards, qualities are computed from their coverage bitsets, in parallel. Ties are broken by the order of
+     * candidates, so the selection is the same regardless of the number of threads.
+     */
+    private void selectUnorderedRules(
+            Instances train_data, RuleCoverage coverage, ArrayList<ExtractedRule> candidateRules, long[] all_activated) {
+
+        long[] activated = all_activated.clone();
+
+        // duplicates are dropped before their coverage is computed
+        ArrayList<ExtractedRule> uniqueRules = RuleExtractorAggregator.removeDuplicates(candidateRules);
+        long[][] uniqueCoverages = coverage.covers(uniqueRules.toArray(new ExtractedRule[0]), train_data);
+        double[] uniqueConsequents = new double[uniqueRules.size()];
+        for(int j = 0; j < uniqueRules.size(); j++) {
+            uniqueConsequents[j] = uniqueRules.get(j).getConsequent();
+        }
+
+        // rules that would never be selected are dropped as well; order of remaining candidates is kept
+        boolean[] redundant = coverage.findRedundant(uniqueCoverages, uniqueConsequents);
+        candidateRules = new ArrayList<>(uniqueRules.size());
+        ArrayList<long[]> remainingCoverages = new ArrayList<>(uniqueRules.size());
+        for(int j = 0; j < uniqueRules.size(); j++) {
+            if(!redundant[j]) {
+                candidateRules.add(uniqueRules.get(j));
+                remainingCoverages.add(uniqueCoverages[j]);
+            }
+        }
+
+        final long[][] candidateCoverages = remainingCoverages.toArray(new long[0][]);
+        final double[] consequents = new double[candidateRules.size()];
+        for(int j = 0; j < candidateRules.size(); j++) {
+            consequents[j] = candidateRules.get(j).getConsequent();
+        }
+        boolean[] selected = new boolean[candidateRules.size()];
 
         double bestQuality;
-        ExtractedRule bestRule;
+        int bestIndex;
 
-        int remaining_instances = train_data.size();
+        int remaining_instances = coverage.getNumInstances();
         while(remaining_instances > 0) {
-            bestRule = null;
+            // scores all candidates in parallel, then picks the first one with highest quality
+            double[] qualities = IntStream.range(0, candidateRules.size()).parallel().mapToDouble(
+                    j -> coverage.quality(candidateCoverages[j], consequents[j], activated)
+            ).toArray();
+
+            bestIndex = -1;
             bestQuality = 0.0;
-            for(ExtractedRule rule : candidateRules) {
-                double quality = rule.quality(train_data, activated);
-                if(quality > bestQuality) {
-                    bestQuality = quality;
-                    bestRule = rule;
+            for(int j = 0; j < candidateRules.size(); j++) {
+                if(!selected[j] && qualities[j] > bestQuality) {
+                    bestQuality = qualities[j];
+                    bestIndex = j;
                 }
             }
-            if(bestRule == null) {
+            if(bestIndex == -1) {
                 break;  // nothing else to do!
             }
+            ExtractedRule bestRule = candidateRules.get(bestIndex);
+            long[] bestCoverage = candidateCoverages[bestIndex];
 
             unorderedRules.add(bestRule);
-            unorderedRulesQualities.add(bestRule.quality(train_data, all_activated));
-
-            candidateRules.remove(bestRule);
-            remaining_instances = 0;
+            unorderedRulesQualities.add(coverage.quality(bestCoverage, bestRule.getConsequent(), all_activated));
 
-            boolean[] covered = bestRule.covers(train_data, activated);
-            for(int i = 0; i < train_data.size(); i++) {
-                activated[i] = activated[i] && !(covered[i] && (bestRule.getConsequent() == train_data.get(i).classValue()));
-                remaining_instances += activated[i]? 1 : 0;
-            }
+            selected[bestIndex] = true;
+            remaining_instances = coverage.deactivate(activated, bestCoverage, bestRule.getConsequent());
         }
     }
 
@@ -136,35 +233,12 @@ public class RuleExtractorAggregator extends Aggregator implements Serializable
 
     @Override
     public double[][] aggregateProba(AbstractClassifier[] clfs, Instances batch) throws Exception {
-        double[][] classProbs = new double[batch.size()][this.n_classes];
+        double[] votesSum = new double[batch.size()];
+        double[][] classProbs = this.compiledRules.vote(batch, this.n_classes, votesSum);
 
         for(int i = 0; i < batch.size(); i++) {
-            double votesSum = 0.0;
-            for(int c = 0; c < this.n_classes; c++) {
-                classProbs[i][c] = 0.0;
-            }
-            // ordered classifiers vote first
-            for(String classifier : this.orderedRules.keySet()) {
-                ExtractedRule[] rules = this.orderedRules.get(classifier);
-                for(int j = 0; j < rules.length; j++) {
-                    if(rules[j].covers(batch.get(i))) {
-                        double voteWeight = this.orderedRulesQualities.get(classifier)[j];
-                        classProbs[i][(int)rules[j].getConsequent()] += voteWeight;
-                        votesSum += voteWeight;
-                    }
-                }
-            }
-
-            // unordered/grouped classifiers vote next
-            for(int j = 0; j < this.unorderedRules.size(); j++) {
-                if(this.unorderedRules.get(j).covers(batch.get(i))) {
-                    double voteWeight = this.unorderedRulesQualities.get(j);
-                    classProbs[i][(int)this.unorderedRules.get(j).getConsequent()] += voteWeight;
-                    votesSum += voteWeight;
-                }
-            }
             for(int c = 0; c < this.n_classes; c++) {
-                classProbs[i][c] /= votesSum;
+                classProbs[i][c] /= votesSum[i];
             }
         }
         return classProbs;
@@ -173,30 +247,8 @@ public class RuleExtractorAggregator extends Aggregator implements Serializable
     @Override
     public double[] aggregateProba(AbstractClassifier[] clfs, Instance instance) throws Exception {
         double[] classProbs = new double[this.n_classes];
-        double votesSum = 0.0;
-        for(int c = 0; c < this.n_classes; c++) {
-            classProbs[c] = 0.0;
-        }
-        // ordered classifiers vote first
-        for(String classifier : this.orderedRules.keySet()) {
-            ExtractedRule[] rules = this.orderedRules.get(classifier);
-            for(int j = 0; j < rules.length; j++) {
-                if(rules[j].covers(instance)) {
-                    double voteWeight = this.orderedRulesQualities.get(classifier)[j];
-                    classProbs[(int)rules[j].getConsequent()] += voteWeight;
-                    votesSum += voteWeight;
-                }
-            }
-        }
+        double votesSum = this.ruleIndex.vote(instance, classProbs);
 
-        // unordered/grouped classifiers vote next
-        for(int j = 0; j < this.unorderedRules.size(); j++) {
-            if(this.unorderedRules.get(j).covers(instance)) {
-                double voteWeight = this.unorderedRulesQualities.get(j);
-                classProbs[(int)this.unorderedRules.get(j).getConsequent()] += voteWeight;
-                votesSum += voteWeight;
-            }
-        }
         for(int c = 0; c < this.n_classes; c++) {
             classProbs[c] /= votesSum;
         }
@@ -0,0 +1,268 @@
+package ednel.eda.aggregators;
+
+import ednel.eda.individual.EmptyEnsembleException;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.functions.Logistic;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * A stacking aggregator: a multinomial logistic regression (the meta-model) learns how to combine the class
+ * probabilities of base classifiers.
+ *
+ * The meta-model is only trained on out-of-fold predictions of base classifiers, never on predictions base
+ * classifiers made for their own training data. These predictions are the ones made in the folds of the internal
+ * cross-validation of EDNEL (see Individual.setOutOfFoldAggregator), so this aggregator requires it: when there are no
+ * out-of-fold predictions (e.g. in holdout evaluation), it can not be trained.
+ *
+ * A trained meta-model is only used by one thread at a time.
+ *
+ * Each base classifier contributes with one attribute per class to the meta-model, in the order of classifiers.
+ */
+public class StackingAggregator extends Aggregator implements Serializable {
+
+    /** Ridge value of the meta-model; a bit stronger than the default of Logistic, since meta-attributes are
+     * correlated. */
+    private static final double RIDGE = 1e-4;
+
+    private Logistic metaModel;
+
+    /** Header of the data the meta-model was trained on. */
+    private Instances metaHeader;
+
+    public StackingAggregator() {
+        this.metaModel = null;
+        this.metaHeader = null;
+    }
+
+    /**
+     * Creates the header of the data seen by the meta-model.
+     *
+     * @param dists Predictions of each classifier, in order; null for classifiers that are not part of the ensemble
+     * @param classAttribute Class attribute of the training data
+     * @return An empty dataset with one numeric attribute per classifier and class, plus the class attribute.
+     */
+    private static Instances createMetaHeader(double[][][] dists, Attribute classAttribute) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for(int i = 0; i < dists.length; i++) {
+            if(dists[i] != null) {
+                for(int k = 0; k < classAttribute.numValues(); k++) {
+                    attributes.add(new Attribute(String.format("clf%d_class%d", i, k)));
+                }
+            }
+        }
+        attributes.add(classAttribute.copy(classAttribute.name()));
+
+        Instances header = new Instances("stacking", attributes, 0);
+        header.setClassIndex(attributes.size() - 1);
+        return header;
+    }
+
+    /**
+     * Fills the attribute values of a meta-instance with predictions of base classifiers.
+     *
+     * @param dists Predictions of active classifiers, in order
+     * @param n_classes Number of classes
+     * @param values Array where attribute values will be written to
+     */
+    private static void fillMetaValues(double[][] dists, int n_classes, double[] values) {
+        int counter = 0;
+        for(double[] dist : dists) {
+            for(int k = 0; k < n_classes; k++) {
+                values[counter] = dist[k];
+                counter += 1;
+            }
+        }
+    }
+
+    /**
+     * Not supported: the meta-model is never trained on predictions that base classifiers made for their own training
+     * data, and base classifiers are not trained again to produce out-of-fold predictions.
+     *
+     * @throws Exception Always
+     */
+    @Override
+    public void setCompetences(AbstractClassifier[] clfs, Instances train_data) throws Exception {
+        throw new Exception("StackingAggregator can only be trained on out-of-fold predictions of base classifiers, " +
+                "which are produced by the internal cross-validation of EDNEL.");
+    }
+
+    /**
+     * Trains the meta-model on out-of-fold predictions of base classifiers.
+     *
+     * @param predictions Out-of-fold predictions of each classifier
+     * @throws Exception If no classifier has predictions, or if the meta-model could not be trained.
+     */
+    @Override
+    public void setCompetences(OutOfFoldPredictions predictions) throws Exception {
+        double[][][] dists = new double[predictions.getNumClassifiers()][][];
+        for(int i = 0; i < dists.length; i++) {
+            if(predictions.hasDistributions(i)) {
+                dists[i] = predictions.getDistributions(i);
+            }
+        }
+        this.train(dists, predictions.getClassValues(), predictions.getWeights(), predictions.getClassAttribute());
+    }
+
+    /**
+     * Trains the meta-model.
+     *
+     * @param dists Predictions of each classifier, in order; null for classifiers that are not part of the ensemble
+     * @param classValues Class value of each instance
+     * @param weights Weight of each instance
+     * @param classAttribute Class attribute of the training data
+     * @throws Exception If the ensemble is empty, or if the meta-model could not be trained.
+     */
+    private void train(double[][][] dists, double[] classValues, double[] weights, Attribute classAttribute) throws Exception {
+        int n_active_classifiers = 0;
+        for(double[][] dist : dists) {
+            if(dist != null) {
+                n_active_classifiers += 1;
+            }
+        }
+        if(n_active_classifiers == 0) {
+            throw new EmptyEnsembleException("ensemble is empty.");
+        }
+
+        int n_instances = classValues.length,
+                n_classes = classAttribute.numValues();
+
+        Instances metaData = StackingAggregator.createMetaHeader(dists, classAttribute);
+        metaData.ensureCapacity(n_instances);
+
+        double[][] instanceDists = new double[n_active_classifiers][];
+        for(int j = 0; j < n_instances; j++) {
+            int counter = 0;
+            for(double[][] dist : dists) {
+                if(dist != null) {
+                    instanceDists[counter] = dist[j];
+                    counter += 1;
+                }
+            }
+            double[] values = new double[metaData.numAttributes()];
+            StackingAggregator.fillMetaValues(instanceDists, n_classes, values);
+            values[values.length - 1] = classValues[j];
+            metaData.add(new DenseInstance(weights[j], values));
+        }
+
+        this.metaModel = new Logistic();
+        this.metaModel.setRidge(StackingAggregator.RIDGE);
+        this.metaModel.buildClassifier(metaData);
+        this.metaHeader = new Instances(metaData, 0);
+
+        // the meta-model does not assign a single weight to classifiers
+        this.competences = new double[n_active_classifiers];
+        for(int c = 0; c < n_active_classifiers; c++) {
+            this.competences[c] = 1;
+        }
+    }
+
+    @Override
+    public boolean usesOutOfFoldPredictions() {
+        return true;
+    }
+
+    @Override
+    public boolean requiresOutOfFoldPredictions() {
+        return true;
+    }
+
+    @Override
+    public double[][] aggregateProba(AbstractClassifier[] clfs, Instances batch) throws Exception {
+        double[][][] dists = new double[clfs.length][][];
+        for(int i = 0; i < clfs.length; i++) {
+            if(clfs[i] != null) {
+                dists[i] = clfs[i].distributionsForInstances(batch);
+            }
+        }
+        return this.aggregateProba(dists);
+    }
+
+    @Override
+    public double[][] aggregateProba(double[][][] dists) throws Exception {
+        int n_active_classifiers = 0, n_instances = 0;
+        for(double[][] dist : dists) {
+            if(dist != null) {
+                n_active_classifiers += 1;
+                n_instances = dist.length;
+            }
+        }
+        if(n_active_classifiers == 0) {
+            throw new EmptyEnsembleException("ensemble is empty.");
+        }
+
+        int n_classes = this.metaHeader.classAttribute().numValues();
+
+        double[][] finalDistribution = new double[n_instances][];
+        double[][] instanceDists = new double[n_active_classifiers][];
+        for(int j = 0; j < n_instances; j++) {
+            int counter = 0;
+            for(double[][] dist : dists) {
+                if(dist != null) {
+                    instanceDists[counter] = dist[j];
+                    counter += 1;
+                }
+            }
+            finalDistribution[j] = this.metaDistribution(instanceDists, n_classes);
+        }
+        return finalDistribution;
+    }
+
+    @Override
+    public double[] aggregateProba(AbstractClassifier[] clfs, Instance instance) throws Exception {
+        int n_active_classifiers = this.getActiveClassifiersCount(clfs);
+        if(n_active_classifiers == 0) {
+            throw new EmptyEnsembleException("ensemble is empty.");
+        }
+
+        int n_classes = instance.attribute(instance.classIndex()).numValues();
+
+        double[][] instanceDists = new double[n_active_classifiers][];
+        int counter = 0;
+        for(int i = 0; i < clfs.length; i++) {
+            if(clfs[i] != null) {
+                instanceDists[counter] = clfs[i].distributionForInstance(instance);
+                counter += 1;
+            }
+        }
+        return this.metaDistribution(instanceDists, n_classes);
+    }
+
+    /**
+     * Predicts the class probabilities of an instance with the meta-model.
+     *
+     * @param dists Predictions of active classifiers for the instance, in order
+     * @param n_classes Number of classes
+     * @return Probability distribution of classes
+     */
+    private double[] metaDistribution(double[][] dists, int n_classes) throws Exception {
+        if(this.metaModel == null) {
+            throw new IllegalStateException("meta-model was not trained.");
+        }
+        if(dists.length * n_classes != this.metaHeader.numAttributes() - 1) {
+            throw new IllegalStateException("base classifiers do not match the ones the meta-model was trained on.");
+        }
+
+        double[] values = new double[this.metaHeader.numAttributes()];
+        StackingAggregator.fillMetaValues(dists, n_classes, values);
+        values[values.length - 1] = Utils.missingValue();
+
+        Instance metaInstance = new DenseInstance(1.0, values);
+        metaInstance.setDataset(this.metaHeader);
+        // Logistic filters instances before predicting, and its filters are not thread-safe
+        synchronized(this.metaModel) {
+            return this.metaModel.distributionForInstance(metaInstance);
+        }
+    }
+
+    @Override
+    public String[] getOptions() {
+        return new String[0];
+    }
+}
@@ -1,397 +1,669 @@
-package ednel.eda.aggregators.rules;
-
-import ednel.classifiers.trees.SimpleCart;
-import ednel.eda.rules.ExtractedRule;
-import weka.classifiers.AbstractClassifier;
-import weka.classifiers.rules.DecisionTable;
-import weka.classifiers.rules.JRip;
-import weka.classifiers.rules.PART;
-import weka.classifiers.rules.ZeroR;
-import weka.classifiers.trees.J48;
-import weka.classifiers.trees.RandomForest;
-import weka.core.Instances;
-import weka.experiment.Stats;
-
-import java.util.ArrayList;
-import java.util.Collections;
-
-public class RuleExtractor {
-    public static ExtractedRule[] fromClassifierToRules(AbstractClassifier clf, Instances train_data) throws Exception {
-        double[] mostCommonValueIndices = new double [train_data.numAttributes()];
-
-        for(int i = 0; i < train_data.numAttributes(); i++) {
-            if(train_data.attribute(i).isNominal()) {
-                int[] nominalCounts = train_data.attributeStats(i).nominalCounts;
-                double index = -1, max = Double.NEGATIVE_INFINITY;
-                for(int j = 0; j < nominalCounts.length; j++) {
-                    if(nominalCounts[j] > max) {
-                        index = j;
-                        max = nominalCounts[j];
-                    }
-                }
-                mostCommonValueIndices[i] = index;
-            } else {
-                mostCommonValueIndices[i] = train_data.attributeStats(i).numericStats.mean;
-            }
-        }
-        if(clf instanceof J48) {
-            return RuleExtractor.fromJ48ToRules((J48)clf, train_data, mostCommonValueIndices);
-        } else if(clf instanceof DecisionTable) {
-            return RuleExtractor.fromDecisionTableToRules((DecisionTable)clf, train_data, mostCommonValueIndices);
-        } else if(clf instanceof SimpleCart) {
-            return RuleExtractor.fromSimpleCartToRules((SimpleCart)clf, train_data, mostCommonValueIndices);
-        } else if(clf instanceof JRip) {
-            return RuleExtractor.fromJRipToRules((JRip)clf, train_data, mostCommonValueIndices);
-        } else if(clf instanceof PART) {
-            return RuleExtractor.fromPARTToRules((PART)clf, train_data, mostCommonValueIndices);
-        } else if(clf instanceof RandomForest) {
-            return RuleExtractor.fromRandomForestToRules((RandomForest)clf, train_data, mostCommonValueIndices);
-        }
-
-        throw new ClassNotFoundException(
-                "clf must be one of the following classifiers: J48, SimpleCart, JRip, PART, DecisionTable"
-        );
-    }
-
-    private static ExtractedRule[] fromPARTToRules(PART clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        String str = clf.toString();
-
-        String[] lines = str.substring(
-                str.indexOf("------------------") + "------------------".length(),
-                str.indexOf("Number of Rules")
-        ).trim().split("\n\n");
-
-        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
-
-        for(int i = 0; i < lines.length; i++) {
-            rule_lines.add(lines[i].replaceAll("AND\n", "and "));
-        }
-
-        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
-        for(int i = 0; i < rule_lines.size(); i++) {
-            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
-        }
-        return rules;
-    }
-
-    private static ExtractedRule[] fromJRipToRules(JRip clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        String str = clf.toString();
-
-        String[] lines = str.substring(str.indexOf("===========") + "===========".length(), str.indexOf("Number of Rules")).trim().split("\n");
-
-        String splitStr = "=> " + train_data.attribute(train_data.classIndex()).name() + "=";
-
-        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
-        for(int i = 0; i < lines.length; i++) {
-            String priors = lines[i].substring(0, lines[i].lastIndexOf(splitStr)).trim();
-            String posteriori = lines[i].substring(lines[i].lastIndexOf(splitStr) + splitStr.length()).trim();
-            priors = priors.replaceAll("\\(", "").replaceAll("\\)", "");
-            rule_lines.add(String.format("%s: %s", priors, posteriori));
-        }
-        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
-        for(int i = 0; i < rule_lines.size(); i++) {
-            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
-        }
-        return rules;
-    }
-
-    private static ExtractedRule[] fromSimpleCartToRules(String str, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        if(str.contains("CART Decision Tree")) {
-             str = str.substring(
-                str.indexOf("CART Decision Tree") + "CART Decision Tree".length(),
-                str.indexOf("Number of Leaf Nodes")
-            );
-        }
-        String[] lines = str.trim().split("\n");
-
-        // levels has the level that each rule is within
-        ArrayList<Integer> levels = new ArrayList<>(lines.length);
-        for(int i = 0; i < lines.length; i++) {
-            int count = 0, fromIndex = 0;
-            // while there are still sub-levels within this rule
-            while ((fromIndex = lines[i].indexOf("| ", fromIndex)) != -1) {
-                count++;
-                fromIndex += "| ".length();
-            }
-            levels.add(count);
-        }
-        ArrayList<String> new_lines = new ArrayList<>(lines.length);
-        ArrayList<Integer> new_levels = new ArrayList<>(lines.length);
-        for(int i = 0; i < lines.length; i++) {
-            lines[i] = lines[i].replaceAll("\\| ", "").trim();
-            if(lines[i].contains("|")) {
-                String[] separated0 = lines[i].split(":");  // separated0[0] = priors, separated0[1] = posteriori
-                boolean hasPosteriori = separated0.length > 1;
-                String symbol = separated0[0].contains("!=")? "!=" : "=";
-                String[] separated1 = separated0[0].split("!=|="); // separated1[0] = attribute name,
-                // separated1[1] = values (if more than one)
-                String[] separated2 = separated1[1].split("\\|");  // separated2 = attribute values
-                if(separated2.length > 1) {
-
-                    for(String attrValue : separated2) {
-                        String new_line = String.format(
-                                "%s %s %s%s",
-                                separated1[0],
-                                symbol,
-                                attrValue.substring(1, attrValue.length() - 1),
-                                hasPosteriori? ":" + separated0[1] : ""
-                        );
-                        new_lines.add(new_line);
-                        new_levels.add(levels.get(i));
-                    }
-                }
-            } else {
-//                String new_line = String.format("%s=%s%s", separated1[0], separated2[0].substring(1, separated2[0].length() - 1), hasPosteriori? ":" + separated0[1] : "");
-                new_lines.add(lines[i]);
-                new_levels.add(levels.get(i));
-            }
-        }
-
-        int deepest_level = Collections.max(new_levels);
-        for(int lvl = deepest_level; lvl > 0; lvl--) {
-            int index_last_minus = -1;
-            for(int i = 0; i < new_levels.size(); i++) {
-                if(new_levels.get(i) == (lvl - 1)) {
-                    index_last_minus = i;
-                } else if(new_levels.get(i) == lvl) {
-                    new_lines.set(i, new_lines.get(index_last_minus) + " and " + new_lines.get(i));
-                    new_levels.set(i, new_levels.get(i) - 1);
-                }
-            }
-        }
-        ArrayList<String> rule_lines = new ArrayList<>(new_lines.size());
-        for(int i = 0; i < new_lines.size(); i++) {
-            if(new_lines.get(i).contains(":")) {
-                // checks if there are pre-conditions
-                if(new_lines.get(i).split(":")[0].trim().length() > 0) {
-                    rule_lines.add(new_lines.get(i));
-                }
-            }
-        }
-
-        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
-        for(int i = 0; i < rule_lines.size(); i++) {
-            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
-        }
-        return rules;
-    }
-    private static ExtractedRule[] fromSimpleCartToRules(SimpleCart clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        String str = clf.toString();
-        return fromSimpleCartToRules(str, train_data, mostCommonValueIndices);
-    }
-
-    private static ExtractedRule[] fromJ48ToRules(String str, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        String[] lines = (
-                str.substring(
-                        str.indexOf("------------------") + "------------------".length(),
-                        str.indexOf("Number of Leaves")
-                )
-        ).trim().split("\n");
-
-        // levels has the level that each rule is within
-        ArrayList<Integer> levels = new ArrayList<>(lines.length);
-        for(int i = 0; i < lines.length; i++) {
-            int count = 0, fromIndex = 0;
-            // while there are still sub-levels within this rule
-            while ((fromIndex = lines[i].indexOf("|", fromIndex)) != -1) {
-                count++;
-                fromIndex++;
-            }
-            levels.add(count);
-
-            lines[i] = lines[i].replaceAll("\\|", "").trim();
-        }
-
-        int deepest_level = Collections.max(levels);
-        for(int j = deepest_level; j > 0; j--) {
-            int index_last_minus = -1;
-            for(int i = 0; i < levels.size(); i++) {
-                if(levels.get(i) == (j - 1)) {
-                    index_last_minus = i;
-                } else if(levels.get(i) == j) {
-                    lines[i] = lines[index_last_minus] + " and " + lines[i];
-                    levels.set(i, levels.get(i) - 1);
-                }
-            }
-        }
-        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
-        for(int i = 0; i < lines.length; i++) {
-            if(lines[i].contains(":")) {
-                // checks if there are pre-conditions
-                if(lines[i].split(":")[0].trim().length() > 0) {
-                    rule_lines.add(lines[i]);
-                }
-            }
-        }
-
-        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
-        for(int i = 0; i < rule_lines.size(); i++) {
-            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
-        }
-        return rules;
-    }
-    private static ExtractedRule[] fromJ48ToRules(J48 clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        String str = clf.toString();
-        return fromJ48ToRules(str, train_data, mostCommonValueIndices);
-    }
-
-    public static String formatNumericDecisionTableCell(String pre, String column_name) throws Exception {
-        pre = pre.replaceAll("\'", "");
-
-        if(pre.toLowerCase().equals("all")) {
-            return String.format("%s = all", column_name);
-        } else if(pre.toLowerCase().equals("?")) {
-            return String.format("%s = ?", column_name);
-        }
-
-        String[] parts = pre.substring(1, pre.length() - 1).split("-");
-        if(parts.length > 2) {
-            String[] new_parts = new String[2];
-            new_parts[0] = "-" + parts[1];
-            new_parts[1] = parts[2];
-            parts = new_parts;
-        }
-
-        char opening_char = pre.charAt(0);
-        char closing_char = pre.charAt(pre.length() - 1);
-
-        String post_process = "";
-
-        if(!parts[0].equals("-inf")) {
-            if(opening_char == '(') {
-                post_process += String.format("%s > " + parts[0], column_name);
-            } else if(opening_char == '[') {
-                post_process += String.format("%s >= " + parts[0], column_name);
-            } else {
-                throw new Exception("pre must be opened either by a ( or a [ character!");
-            }
-            if(!parts[1].equals("inf")) {
-                post_process += " and ";
-            }
-        }
-        if(!parts[1].equals("inf")) {
-            if(closing_char == ')') {
-                post_process += String.format("%s < " + parts[1], column_name);
-            } else if (closing_char == ']') {
-                post_process += String.format("%s <= " + parts[1], column_name);
-            } else {
-                throw new Exception("pre must be closed either by a ) or a ] character!");
-            }
-        }
-        return post_process;
-    }
-
-    public static ExtractedRule[] fromDecisionTableToRules(DecisionTable decisionTable, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        decisionTable.setDisplayRules(true);
-        String str = decisionTable.toString();
-
-        boolean useIbk = decisionTable.getUseIBk();
-
-        String[] rules = str.split("Rules:")[1].trim().split("\n");
-
-        ArrayList<String> headerColumns = new ArrayList<>();
-        for (String header : rules[1].split(" ")) {
-            if (header.length() > 0) {
-                headerColumns.add(header);
-            }
-        }
-
-        // - 4 for toprule, midrule and bottom rule + header
-        // + 1 for default rule, that is not included in table
-        ExtractedRule[] extractedRules = new ExtractedRule[rules.length - 4 + (useIbk? 0 : 1)];
-        int counter = 0;
-
-        StringBuffer prior = new StringBuffer("");
-        if (headerColumns.size() > 1) {
-            // why start at 3 and finish at -1? because rules[0] and rules[2] are only table delimiters
-            // (i.e. ========), as well as rules[-1]. rules[1] contains the column headers of the table
-            for (int i = 3; i < rules.length - 1; i++) {
-                String[] priors = rules[i].split(" +");
-                String posterior = priors[priors.length - 1];
-                StringBuffer newline = new StringBuffer("");
-                for(int j = 0; j < priors.length - 1; j++) {
-                    String post = priors[j];
-                    if(train_data.attribute(headerColumns.get(j)).isNumeric()) {
-//                    if(priors[j].contains("\'")) {
-                        post = RuleExtractor.formatNumericDecisionTableCell(priors[j], headerColumns.get(j));
-                    } else {
-                        post = String.format("%s = %s", headerColumns.get(j), post);
-                    }
-                    newline.append(post);
-                    if(j != priors.length - 2) {
-                        newline.append(" and ");
-                    }
-                }
-                newline.append(": ").append(posterior);
-
-                extractedRules[counter] = new ExtractedRule(newline.toString(), train_data, mostCommonValueIndices);
-                counter += 1;
-            }
-        }
-        if(!useIbk) {
-            int[] dist = train_data.attributeStats(train_data.classIndex()).nominalCounts;
-            double max_index = -1, max = Double.NEGATIVE_INFINITY;
-            for(int i = 0; i < dist.length; i++) {
-                if(dist[i] > max) {
-                    max = dist[i];
-                    max_index = i;
-                }
-            }
-            ExtractedRule rule = new ExtractedRule(String.format(": %s", train_data.attribute(train_data.classIndex()).value((int)max_index)), train_data, mostCommonValueIndices);
-
-            if(counter > 0) {
-                extractedRules[counter] = rule;
-            } else {
-                extractedRules = new ExtractedRule[]{rule};
-            }
-        } else if(counter == 0) {
-            extractedRules = new ExtractedRule[0];
-        }
-        return extractedRules;
-    }
-
-    public static ExtractedRule[] fromRandomForestToRules(RandomForest rf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
-        rf.setPrintClassifiers(true);
-        String str = rf.toString();
-
-        String start = "RandomTree\n==========";
-        String end = "Size of the tree";
-
-        String trees_str = str.substring(
-                str.indexOf(start),
-                str.lastIndexOf(end) + end.length()
-        ).trim();
-
-        ArrayList<String> trees = new ArrayList<>();
-        int begin_index = trees_str.indexOf(start) + start.length();
-        int end_index = trees_str.indexOf(end);
-        while(begin_index != -1) {
-            String current = trees_str.substring(begin_index, end_index).trim();
-            trees.add(current);
-            begin_index = trees_str.indexOf(start, begin_index);
-            if(begin_index != -1) {
-                begin_index += start.length();
-            } else {
-                break;
-            }
-            end_index = trees_str.indexOf(end, begin_index);
-        }
-
-        ExtractedRule[][] unmerged_rules = new ExtractedRule[trees.size()][];
-        int count_rules = 0;
-        for(int i = 0; i < trees.size(); i++) {
-            unmerged_rules[i] = RuleExtractor.fromSimpleCartToRules(trees.get(i), train_data, mostCommonValueIndices);
-            count_rules += unmerged_rules[i].length;
-        }
-
-        ExtractedRule[] rules = new ExtractedRule[count_rules];
-        int counter = 0;
-        for(int i = 0; i < unmerged_rules.length; i++) {
-            for(int j = 0; j < unmerged_rules[i].length; j++) {
-                rules[counter] = unmerged_rules[i][j];
-                counter += 1;
-            }
-        }
-        return rules;
-    }
-}
+package ednel.eda.aggregators.rules;
+
+import ednel.classifiers.trees.SimpleCart;
+import ednel.data.DatasetStatistics;
+import ednel.data.DatasetView;
+import ednel.eda.rules.ExtractedRule;
+import ednel.utils.operators.AbstractOperator;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.rules.DecisionTable;
+import weka.classifiers.rules.JRip;
+import weka.classifiers.rules.PART;
+import weka.classifiers.rules.Rule;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.rules.part.ClassifierDecList;
+import weka.classifiers.rules.part.MakeDecList;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+import weka.classifiers.trees.j48.BinC45Split;
+import weka.classifiers.trees.j48.C45Split;
+import weka.classifiers.trees.j48.ClassifierSplitModel;
+import weka.classifiers.trees.j48.ClassifierTree;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.experiment.Stats;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RuleExtractor {
+    public static ExtractedRule[] fromClassifierToRules(AbstractClassifier clf, Instances train_data) throws Exception {
+        // mode of nominal attributes and mean of numeric attributes; views of a dataset compute them only once
+        DatasetView view = DatasetView.viewOf(train_data);
+        DatasetStatistics statistics = view != null? view.getStatistics() : DatasetStatistics.of(train_data);
+        double[] mostCommonValueIndices = statistics.getMostCommonValues();
+
+        // whenever possible, rules are extracted from the structure of models; if that fails, from their descriptions
+        try {
+            if(clf instanceof J48) {
+                return RuleExtractor.fromJ48ToRulesStructured((J48)clf, train_data, mostCommonValueIndices);
+            } else if(clf instanceof SimpleCart) {
+                return RuleExtractor.fromSimpleCartToRulesStructured((SimpleCart)clf, train_data, mostCommonValueIndices);
+            } else if(clf instanceof JRip) {
+                return RuleExtractor.fromJRipToRulesStructured((JRip)clf, train_data, mostCommonValueIndices);
+            } else if(clf instanceof PART) {
+                return RuleExtractor.fromPARTToRulesStructured((PART)clf, train_data, mostCommonValueIndices);
+            }
+        } catch(ReflectiveOperationException | UnsupportedOperationException e) {
+            // this version of Weka stores models differently; falls back to parsing their textual description
+        }
+
+        if(clf instanceof J48) {
+            return RuleExtractor.fromJ48ToRules((J48)clf, train_data, mostCommonValueIndices);
+        } else if(clf instanceof DecisionTable) {
+            return RuleExtractor.fromDecisionTableToRules((DecisionTable)clf, train_data, mostCommonValueIndices);
+        } else if(clf instanceof SimpleCart) {
+            return RuleExtractor.fromSimpleCartToRules((SimpleCart)clf, train_data, mostCommonValueIndices);
+        } else if(clf instanceof JRip) {
+            return RuleExtractor.fromJRipToRules((JRip)clf, train_data, mostCommonValueIndices);
+        } else if(clf instanceof PART) {
+            return RuleExtractor.fromPARTToRules((PART)clf, train_data, mostCommonValueIndices);
+        } else if(clf instanceof RandomForest) {
+            return RuleExtractor.fromRandomForestToRules((RandomForest)clf, train_data, mostCommonValueIndices);
+        }
+
+        throw new ClassNotFoundException(
+                "clf must be one of the following classifiers: J48, SimpleCart, JRip, PART, DecisionTable"
+        );
+    }
+
+    private static ExtractedRule[] fromPARTToRules(PART clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        String str = clf.toString();
+
+        String[] lines = str.substring(
+                str.indexOf("------------------") + "------------------".length(),
+                str.indexOf("Number of Rules")
+        ).trim().split("\n\n");
+
+        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
+
+        for(int i = 0; i < lines.length; i++) {
+            rule_lines.add(lines[i].replaceAll("AND\n", "and "));
+        }
+
+        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
+        for(int i = 0; i < rule_lines.size(); i++) {
+            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
+        }
+        return rules;
+    }
+
+    private static ExtractedRule[] fromJRipToRules(JRip clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        String str = clf.toString();
+
+        String[] lines = str.substring(str.indexOf("===========") + "===========".length(), str.indexOf("Number of Rules")).trim().split("\n");
+
+        String splitStr = "=> " + train_data.attribute(train_data.classIndex()).name() + "=";
+
+        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            String priors = lines[i].substring(0, lines[i].lastIndexOf(splitStr)).trim();
+            String posteriori = lines[i].substring(lines[i].lastIndexOf(splitStr) + splitStr.length()).trim();
+            priors = priors.replaceAll("\\(", "").replaceAll("\\)", "");
+            rule_lines.add(String.format("%s: %s", priors, posteriori));
+        }
+        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
+        for(int i = 0; i < rule_lines.size(); i++) {
+            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
+        }
+        return rules;
+    }
+
+    private static ExtractedRule[] fromSimpleCartToRules(String str, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        if(str.contains("CART Decision Tree")) {
+             str = str.substring(
+                str.indexOf("CART Decision Tree") + "CART Decision Tree".length(),
+                str.indexOf("Number of Leaf Nodes")
+            );
+        }
+        String[] lines = str.trim().split("\n");
+
+        // levels has the level that each rule is within
+        ArrayList<Integer> levels = new ArrayList<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            int count = 0, fromIndex = 0;
+            // while there are still sub-levels within this rule
+            while ((fromIndex = lines[i].indexOf("| ", fromIndex)) != -1) {
+                count++;
+                fromIndex += "| ".length();
+            }
+            levels.add(count);
+        }
+        ArrayList<String> new_lines = new ArrayList<>(lines.length);
+        ArrayList<Integer> new_levels = new ArrayList<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            lines[i] = lines[i].replaceAll("\\| ", "").trim();
+            if(lines[i].contains("|")) {
+                String[] separated0 = lines[i].split(":");  // separated0[0] = priors, separated0[1] = posteriori
+                boolean hasPosteriori = separated0.length > 1;
+                String symbol = separated0[0].contains("!=")? "!=" : "=";
+                String[] separated1 = separated0[0].split("!=|="); // separated1[0] = attribute name,
+                // separated1[1] = values (if more than one)
+                String[] separated2 = separated1[1].split("\\|");  // separated2 = attribute values
+                if(separated2.length > 1) {
+
+                    for(String attrValue : separated2) {
+                        String new_line = String.format(
+                                "%s %s %s%s",
+                                separated1[0],
+                                symbol,
+                                attrValue.substring(1, attrValue.length() - 1),
+                                hasPosteriori? ":" + separated0[1] : ""
+                        );
+                        new_lines.add(new_line);
+                        new_levels.add(levels.get(i));
+                    }
+                }
+            } else {
+//                String new_line = String.format("%s=%s%s", separated1[0], separated2[0].substring(1, separated2[0].length() - 1), hasPosteriori? ":" + separated0[1] : "");
+                new_lines.add(lines[i]);
+                new_levels.add(levels.get(i));
+            }
+        }
+
+        int deepest_level = Collections.max(new_levels);
+        for(int lvl = deepest_level; lvl > 0; lvl--) {
+            int index_last_minus = -1;
+            for(int i = 0; i < new_levels.size(); i++) {
+                if(new_levels.get(i) == (lvl - 1)) {
+                    index_last_minus = i;
+                } else if(new_levels.get(i) == lvl) {
+                    new_lines.set(i, new_lines.get(index_last_minus) + " and " + new_lines.get(i));
+                    new_levels.set(i, new_levels.get(i) - 1);
+                }
+            }
+        }
+        ArrayList<String> rule_lines = new ArrayList<>(new_lines.size());
+        for(int i = 0; i < new_lines.size(); i++) {
+            if(new_lines.get(i).contains(":")) {
+                // checks if there are pre-conditions
+                if(new_lines.get(i).split(":")[0].trim().length() > 0) {
+                    rule_lines.add(new_lines.get(i));
+                }
+            }
+        }
+
+        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
+        for(int i = 0; i < rule_lines.size(); i++) {
+            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
+        }
+        return rules;
+    }
+    private static ExtractedRule[] fromSimpleCartToRules(SimpleCart clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        String str = clf.toString();
+        return fromSimpleCartToRules(str, train_data, mostCommonValueIndices);
+    }
+
+    private static ExtractedRule[] fromJ48ToRules(String str, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        String[] lines = (
+                str.substring(
+                        str.indexOf("------------------") + "------------------".length(),
+                        str.indexOf("Number of Leaves")
+                )
+        ).trim().split("\n");
+
+        // levels has the level that each rule is within
+        ArrayList<Integer> levels = new ArrayList<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            int count = 0, fromIndex = 0;
+            // while there are still sub-levels within this rule
+            while ((fromIndex = lines[i].indexOf("|", fromIndex)) != -1) {
+                count++;
+                fromIndex++;
+            }
+            levels.add(count);
+
+            lines[i] = lines[i].replaceAll("\\|", "").trim();
+        }
+
+        int deepest_level = Collections.max(levels);
+        for(int j = deepest_level; j > 0; j--) {
+            int index_last_minus = -1;
+            for(int i = 0; i < levels.size(); i++) {
+                if(levels.get(i) == (j - 1)) {
+                    index_last_minus = i;
+                } else if(levels.get(i) == j) {
+                    lines[i] = lines[index_last_minus] + " and " + lines[i];
+                    levels.set(i, levels.get(i) - 1);
+                }
+            }
+        }
+        ArrayList<String> rule_lines = new ArrayList<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            if(lines[i].contains(":")) {
+                // checks if there are pre-conditions
+                if(lines[i].split(":")[0].trim().length() > 0) {
+                    rule_lines.add(lines[i]);
+                }
+            }
+        }
+
+        ExtractedRule[] rules = new ExtractedRule[rule_lines.size()];
+        for(int i = 0; i < rule_lines.size(); i++) {
+            rules[i] = new ExtractedRule(rule_lines.get(i), train_data, mostCommonValueIndices);
+        }
+        return rules;
+    }
+    private static ExtractedRule[] fromJ48ToRules(J48 clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        String str = clf.toString();
+        return fromJ48ToRules(str, train_data, mostCommonValueIndices);
+    }
+
+    public static String formatNumericDecisionTableCell(String pre, String column_name) throws Exception {
+        pre = pre.replaceAll("\'", "");
+
+        if(pre.toLowerCase().equals("all")) {
+            return String.format("%s = all", column_name);
+        } else if(pre.toLowerCase().equals("?")) {
+            return String.format("%s = ?", column_name);
+        }
+
+        String[] parts = pre.substring(1, pre.length() - 1).split("-");
+        if(parts.length > 2) {
+            String[] new_parts = new String[2];
+            new_parts[0] = "-" + parts[1];
+            new_parts[1] = parts[2];
+            parts = new_parts;
+        }
+
+        char opening_char = pre.charAt(0);
+        char closing_char = pre.charAt(pre.length() - 1);
+
+        String post_process = "";
+
+        if(!parts[0].equals("-inf")) {
+            if(opening_char == '(') {
+                post_process += String.format("%s > " + parts[0], column_name);
+            } else if(opening_char == '[') {
+                post_process += String.format("%s >= " + parts[0], column_name);
+            } else {
+                throw new Exception("pre must be opened either by a ( or a [ character!");
+            }
+            if(!parts[1].equals("inf")) {
+                post_process += " and ";
+            }
+        }
+        if(!parts[1].equals("inf")) {
+            if(closing_char == ')') {
+                post_process += String.format("%s < " + parts[1], column_name);
+            } else if (closing_char == ']') {
+                post_process += String.format("%s <= " + parts[1], column_name);
+            } else {
+                throw new Exception("pre must be closed either by a ) or a ] character!");
+            }
+        }
+        return post_process;
+    }
+
+    public static ExtractedRule[] fromDecisionTableToRules(DecisionTable decisionTable, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        decisionTable.setDisplayRules(true);
+        String str = decisionTable.toString();
+
+        boolean useIbk = decisionTable.getUseIBk();
+
+        String[] rules = str.split("Rules:")[1].trim().split("\n");
+
+        ArrayList<String> headerColumns = new ArrayList<>();
+        for (String header : rules[1].split(" ")) {
+            if (header.length() > 0) {
+                headerColumns.add(header);
+            }
+        }
+
+        // - 4 for toprule, midrule and bottom rule + header
+        // + 1 for default rule, that is not included in table
+        ExtractedRule[] extractedRules = new ExtractedRule[rules.length - 4 + (useIbk? 0 : 1)];
+        int counter = 0;
+
+        StringBuffer prior = new StringBuffer("");
+        if (headerColumns.size() > 1) {
+            // why start at 3 and finish at -1? because rules[0] and rules[2] are only table delimiters
+            // (i.e. ========), as well as rules[-1]. rules[1] contains the column headers of the table
+            for (int i = 3; i < rules.length - 1; i++) {
+                String[] priors = rules[i].split(" +");
+                String posterior = priors[priors.length - 1];
+                StringBuffer newline = new StringBuffer("");
+                for(int j = 0; j < priors.length - 1; j++) {
+                    String post = priors[j];
+                    if(train_data.attribute(headerColumns.get(j)).isNumeric()) {
+//                    if(priors[j].contains("\'")) {
+                        post = RuleExtractor.formatNumericDecisionTableCell(priors[j], headerColumns.get(j));
+                    } else {
+                        post = String.format("%s = %s", headerColumns.get(j), post);
+                    }
+                    newline.append(post);
+                    if(j != priors.length - 2) {
+                        newline.append(" and ");
+                    }
+                }
+                newline.append(": ").append(posterior);
+
+                extractedRules[counter] = new ExtractedRule(newline.toString(), train_data, mostCommonValueIndices);
+                counter += 1;
+            }
+        }
+        if(!useIbk) {
+            int[] dist = train_data.attributeStats(train_data.classIndex()).nominalCounts;
+            double max_index = -1, max = Double.NEGATIVE_INFINITY;
+            for(int i = 0; i < dist.length; i++) {
+                if(dist[i] > max) {
+                    max = dist[i];
+                    max_index = i;
+                }
+            }
+            ExtractedRule rule = new ExtractedRule(String.format(": %s", train_data.attribute(train_data.classIndex()).value((int)max_index)), train_data, mostCommonValueIndices);
+
+            if(counter > 0) {
+                extractedRules[counter] = rule;
+            } else {
+                extractedRules = new ExtractedRule[]{rule};
+            }
+        } else if(counter == 0) {
+            extractedRules = new ExtractedRule[0];
+        }
+        return extractedRules;
+    }
+
+    public static ExtractedRule[] fromRandomForestToRules(RandomForest rf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        rf.setPrintClassifiers(true);
+        String str = rf.toString();
+
+        String start = "RandomTree\n==========";
+        String end = "Size of the tree";
+
+        String trees_str = str.substring(
+                str.indexOf(start),
+                str.lastIndexOf(end) + end.length()
+        ).trim();
+
+        ArrayList<String> trees = new ArrayList<>();
+        int begin_index = trees_str.indexOf(start) + start.length();
+        int end_index = trees_str.indexOf(end);
+        while(begin_index != -1) {
+            String current = trees_str.substring(begin_index, end_index).trim();
+            trees.add(current);
+            begin_index = trees_str.indexOf(start, begin_index);
+            if(begin_index != -1) {
+                begin_index += start.length();
+            } else {
+                break;
+            }
+            end_index = trees_str.indexOf(end, begin_index);
+        }
+
+        ExtractedRule[][] unmerged_rules = new ExtractedRule[trees.size()][];
+        int count_rules = 0;
+        for(int i = 0; i < trees.size(); i++) {
+            unmerged_rules[i] = RuleExtractor.fromSimpleCartToRules(trees.get(i), train_data, mostCommonValueIndices);
+            count_rules += unmerged_rules[i].length;
+        }
+
+        ExtractedRule[] rules = new ExtractedRule[count_rules];
+        int counter = 0;
+        for(int i = 0; i < unmerged_rules.length; i++) {
+            for(int j = 0; j < unmerged_rules[i].length; j++) {
+                rules[counter] = unmerged_rules[i][j];
+                counter += 1;
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Conditions on the path from the root of a tree to one of its nodes.
+     */
+    private static class RulePath {
+        private final ArrayList<Integer> attrIndices = new ArrayList<>();
+        private final ArrayList<AbstractOperator> operators = new ArrayList<>();
+        private final ArrayList<Double> thresholds = new ArrayList<>();
+
+        void push(int attrIndex, AbstractOperator operator, double threshold) {
+            this.attrIndices.add(attrIndex);
+            this.operators.add(operator);
+            this.thresholds.add(threshold);
+        }
+
+        int size() {
+            return this.attrIndices.size();
+        }
+
+        /**
+         * Removes conditions from the end of the path, until it has only the given number of conditions.
+         */
+        void truncate(int size) {
+            while(this.attrIndices.size() > size) {
+                this.attrIndices.remove(this.attrIndices.size() - 1);
+                this.operators.remove(this.operators.size() - 1);
+                this.thresholds.remove(this.thresholds.size() - 1);
+            }
+        }
+
+        ExtractedRule toRule(double classIndex, Instances header, double[] mostCommonValueIndices) {
+            int[] attrIndex = new int[this.size()];
+            AbstractOperator[] operators = new AbstractOperator[this.size()];
+            double[] thresholds = new double[this.size()];
+            for(int i = 0; i < this.size(); i++) {
+                attrIndex[i] = this.attrIndices.get(i);
+                operators[i] = this.operators.get(i);
+                thresholds[i] = this.thresholds.get(i);
+            }
+            return new ExtractedRule(attrIndex, operators, thresholds, classIndex, header, mostCommonValueIndices);
+        }
+    }
+
+    /**
+     * Non-public fields of J48 and PART models, which have no public accessors. Looked up once; null if this version
+     * of Weka does not have them.
+     */
+    private static final Field J48_ROOT = RuleExtractor.findField(J48.class, "m_root");
+    private static final Field PART_ROOT = RuleExtractor.findField(PART.class, "m_root");
+    private static final Field PART_RULES = RuleExtractor.findField(MakeDecList.class, "theRules");
+    private static final Field PART_LOCAL_MODEL = RuleExtractor.findField(ClassifierDecList.class, "m_localModel");
+    private static final Field PART_SONS = RuleExtractor.findField(ClassifierDecList.class, "m_sons");
+    private static final Field PART_IS_LEAF = RuleExtractor.findField(ClassifierDecList.class, "m_isLeaf");
+    private static final Field PART_INDEX = RuleExtractor.findField(ClassifierDecList.class, "indeX");
+
+    private static Field findField(Class<?> cls, String fieldName) {
+        try {
+            Field field = cls.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field;
+        } catch(NoSuchFieldException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Object readField(Field field, Object obj) throws ReflectiveOperationException {
+        if(field == null) {
+            throw new NoSuchFieldException("field is not available in this version of Weka");
+        }
+        return field.get(obj);
+    }
+
+    /**
+     * Adds to path the conditions for reaching the son-th successor of a J48/PART split model.
+     */
+    private static void addSplitConditions(ClassifierSplitModel model, int son, Instances header, RulePath path) {
+        int attIndex;
+        double splitPoint;
+        if(model instanceof C45Split) {
+            attIndex = ((C45Split)model).attIndex();
+            splitPoint = ((C45Split)model).splitPoint();
+        } else if(model instanceof BinC45Split) {
+            attIndex = ((BinC45Split)model).attIndex();
+            splitPoint = ((BinC45Split)model).splitPoint();
+        } else {
+            throw new UnsupportedOperationException("unsupported split model: " + model.getClass().getName());
+        }
+
+        if(header.attribute(attIndex).isNominal()) {
+            if(model instanceof C45Split) {
+                path.push(attIndex, AbstractOperator.EQUAL_TO, son);
+            } else {
+                path.push(attIndex, son == 0? AbstractOperator.EQUAL_TO : AbstractOperator.NOT_EQUAL_TO, splitPoint);
+            }
+        } else {
+            path.push(attIndex, son == 0? AbstractOperator.LESS_THAN_OR_EQUAL_TO : AbstractOperator.GREATER_THAN, splitPoint);
+        }
+    }
+
+    private static void collectJ48Rules(
+            ClassifierTree node, RulePath path, Instances header, double[] mostCommonValueIndices,
+            ArrayList<ExtractedRule> rules) {
+
+        ClassifierSplitModel localModel = node.getLocalModel();
+        ClassifierTree[] sons = node.getSons();
+
+        int depth = path.size();
+        for(int i = 0; i < sons.length; i++) {
+            RuleExtractor.addSplitConditions(localModel, i, header, path);
+            if(sons[i].isLeaf()) {
+                rules.add(path.toRule(localModel.distribution().maxClass(i), header, mostCommonValueIndices));
+            } else {
+                RuleExtractor.collectJ48Rules(sons[i], path, header, mostCommonValueIndices, rules);
+            }
+            path.truncate(depth);
+        }
+    }
+
+    /**
+     * Extracts rules from the leaves of a J48 tree, walking the tree itself.
+     */
+    private static ExtractedRule[] fromJ48ToRulesStructured(J48 clf, Instances train_data, double[] mostCommonValueIndices) throws ReflectiveOperationException {
+        ClassifierTree root = (ClassifierTree)RuleExtractor.readField(J48_ROOT, clf);
+        Instances header = new Instances(train_data, 0);
+
+        ArrayList<ExtractedRule> rules = new ArrayList<>();
+        // a tree with a single leaf has no rules with pre-conditions
+        if(!root.isLeaf()) {
+            RuleExtractor.collectJ48Rules(root, new RulePath(), header, mostCommonValueIndices, rules);
+        }
+        return rules.toArray(new ExtractedRule[0]);
+    }
+
+    /**
+     * Extracts the decision list of PART, walking the partial trees of each rule.
+     */
+    private static ExtractedRule[] fromPARTToRulesStructured(PART clf, Instances train_data, double[] mostCommonValueIndices) throws ReflectiveOperationException {
+        Object root = RuleExtractor.readField(PART_ROOT, clf);
+        List<?> partRules = (List<?>)RuleExtractor.readField(PART_RULES, root);
+        Instances header = new Instances(train_data, 0);
+
+        ExtractedRule[] rules = new ExtractedRule[partRules.size()];
+        for(int r = 0; r < partRules.size(); r++) {
+            RulePath path = new RulePath();
+            Object node = partRules.get(r);
+            ClassifierSplitModel localModel = (ClassifierSplitModel)RuleExtractor.readField(PART_LOCAL_MODEL, node);
+
+            double classIndex = localModel.distribution().maxClass(0);  // default rule
+            while(!(Boolean)RuleExtractor.readField(PART_IS_LEAF, node)) {
+                localModel = (ClassifierSplitModel)RuleExtractor.readField(PART_LOCAL_MODEL, node);
+                int index = (Integer)RuleExtractor.readField(PART_INDEX, node);
+                RuleExtractor.addSplitConditions(localModel, index, header, path);
+
+                node = ((Object[])RuleExtractor.readField(PART_SONS, node))[index];
+                classIndex = localModel.distribution().maxClass(index);
+            }
+            rules[r] = path.toRule(classIndex, header, mostCommonValueIndices);
+        }
+        return rules;
+    }
+
+    /**
+     * Extracts the rule set of JRip from its antecedents.
+     */
+    private static ExtractedRule[] fromJRipToRulesStructured(JRip clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        ArrayList<Rule> ruleset = clf.getRuleset();
+        Instances header = new Instances(train_data, 0);
+
+        ExtractedRule[] rules = new ExtractedRule[ruleset.size()];
+        for(int r = 0; r < ruleset.size(); r++) {
+            JRip.RipperRule ripperRule = (JRip.RipperRule)ruleset.get(r);
+            RulePath path = new RulePath();
+            for(JRip.Antd antd : ripperRule.getAntds()) {
+                int attIndex = antd.getAttr().index();
+                if(antd instanceof JRip.NumericAntd) {
+                    path.push(
+                            attIndex,
+                            (int)antd.getAttrValue() == 0? AbstractOperator.LESS_THAN_OR_EQUAL_TO : AbstractOperator.GREATER_THAN_OR_EQUAL_TO,
+                            antd.getSplitPoint()
+                    );
+                } else {
+                    path.push(attIndex, AbstractOperator.EQUAL_TO, antd.getAttrValue());
+                }
+            }
+            rules[r] = path.toRule(ripperRule.getConsequent(), header, mostCommonValueIndices);
+        }
+        return rules;
+    }
+
+    /**
+     * Adds to path the conditions for testing whether a nominal attribute has one of the values in a subset. If the
+     * subset has a single value, a single equality is used; otherwise, inequalities to every value not in the subset.
+     */
+    private static void addSubsetConditions(int attIndex, boolean[] inSubset, RulePath path) {
+        int count = 0, last = -1;
+        for(int k = 0; k < inSubset.length; k++) {
+            if(inSubset[k]) {
+                count += 1;
+                last = k;
+            }
+        }
+        if(count == 1) {
+            path.push(attIndex, AbstractOperator.EQUAL_TO, last);
+        } else {
+            for(int k = 0; k < inSubset.length; k++) {
+                if(!inSubset[k]) {
+                    path.push(attIndex, AbstractOperator.NOT_EQUAL_TO, k);
+                }
+            }
+        }
+    }
+
+    private static void collectSimpleCartRules(
+            SimpleCart node, RulePath path, Instances header, double[] mostCommonValueIndices,
+            ArrayList<ExtractedRule> rules) {
+
+        if(node.getSplitAttribute() == null) {
+            // leaves without pre-conditions or without a class value do not make rules
+            if(path.size() > 0 && !Utils.isMissingValue(node.getClassValue())) {
+                rules.add(path.toRule(node.getClassValue(), header, mostCommonValueIndices));
+            }
+            return;
+        }
+
+        Attribute attribute = node.getSplitAttribute();
+        int depth = path.size();
+        for(int j = 0; j < 2; j++) {
+            if(attribute.isNumeric()) {
+                path.push(
+                        attribute.index(),
+                        j == 0? AbstractOperator.LESS_THAN : AbstractOperator.GREATER_THAN_OR_EQUAL_TO,
+                        node.getSplitValue()
+                );
+            } else {
+                boolean[] inSubset = new boolean[attribute.numValues()];
+                for(int k = 0; k < attribute.numValues(); k++) {
+                    inSubset[k] = node.isInSplitSubset(k) == (j == 0);
+                }
+                RuleExtractor.addSubsetConditions(attribute.index(), inSubset, path);
+            }
+            RuleExtractor.collectSimpleCartRules(node.getSuccessors()[j], path, header, mostCommonValueIndices, rules);
+            path.truncate(depth);
+        }
+    }
+
+    /**
+     * Extracts rules from the leaves of a SimpleCart tree, walking the tree itself.
+     */
+    private static ExtractedRule[] fromSimpleCartToRulesStructured(SimpleCart clf, Instances train_data, double[] mostCommonValueIndices) throws Exception {
+        Instances header = new Instances(train_data, 0);
+
+        ArrayList<ExtractedRule> rules = new ArrayList<>();
+        RuleExtractor.collectSimpleCartRules(clf, new RulePath(), header, mostCommonValueIndices, rules);
+        return rules.toArray(new ExtractedRule[0]);
+    }
+}
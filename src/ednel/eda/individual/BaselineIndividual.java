@@ -50,6 +50,7 @@ public class BaselineIndividual extends Individual {
         localChars.put("SimpleCart_usePrune", "true");
         localChars.put("SimpleCart_numFoldsPruning", "5");
         localChars.put("SimpleCart_useOneSE", "false");
+        localChars.put("SimpleCart_numBins", "0");
         localChars.put("JRip", "true");
         localChars.put("JRip_checkErrorRate", "true");
         localChars.put("JRip_minNo", "2");
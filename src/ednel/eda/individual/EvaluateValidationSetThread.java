@@ -48,4 +48,22 @@ public class EvaluateValidationSetThread extends Thread {
     public double getValQuality() {
         return this.valQuality;
     }
+
+    /**
+     * Returns the copy of the individual trained on the learning set, or null if it could not be trained (or there
+     * is no validation set).
+     */
+    public Individual getTrainedIndividual() {
+        if(this.myExcept != null || this.val_data == null) {
+            return null;
+        }
+        return this.ind;
+    }
+
+    /**
+     * Whether the validation quality was successfully measured.
+     */
+    public boolean hasSucceeded() {
+        return this.myExcept == null && this.val_data != null;
+    }
 }
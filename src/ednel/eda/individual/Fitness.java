@@ -11,10 +11,14 @@ public class Fitness {
     private Double learnQuality;
     private Double valQuality;
 
+    /** Whether valQuality was actually measured, or is just a placeholder zero. */
+    private boolean valQualityMeasured;
+
     Fitness(Integer size, Double learnQuality, Double valQuality) {
         this.size = size == null? 0 : size;
         this.learnQuality = learnQuality == null? 0 : learnQuality;
         this.valQuality = valQuality == null? 0 : valQuality;
+        this.valQualityMeasured = valQuality != null;
     }
 
     public void setSize(Integer size) {
@@ -27,6 +31,15 @@ public class Fitness {
 
     public void setValQuality(Double valQuality) {
         this.valQuality = valQuality;
+        this.valQualityMeasured = valQuality != null;
+    }
+
+    /**
+     * Whether the quality of the individual on the validation set was measured. If false, getValQuality returns a
+     * placeholder zero.
+     */
+    public boolean hasValQuality() {
+        return this.valQualityMeasured;
     }
 
     public Integer getSize() {
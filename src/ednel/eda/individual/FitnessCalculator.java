@@ -1,5 +1,9 @@
 package ednel.eda.individual;
 
+import ednel.data.ColumnarDataset;
+import ednel.data.DatasetView;
+import ednel.eda.aggregators.Aggregator;
+import ednel.eda.aggregators.OutOfFoldPredictions;
 import ednel.utils.PBILLogger;
 import ednel.utils.analysis.CompilePredictions;
 import ednel.utils.analysis.optimizers.AUTOCVEProcedure;
@@ -17,9 +21,9 @@ import weka.core.Utils;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.IntStream;
 
@@ -48,15 +52,44 @@ public class FitnessCalculator {
 
     private EvaluationMethod evaluation_method;
 
+    /**
+     * Training and validation sets of each fold of the internal cross-validation, as views over the learning data.
+     * Folds are created once, and shared by all evaluated individuals.
+     */
+    private DatasetView[] trainFolds;
+    private DatasetView[] valFolds;
+
     private Integer[] sortedIndices_learn;
     private Integer[] sortedIndices_val;
 
-    public FitnessCalculator(int n_folds, Instances learn_data, EvaluationMetric metric) throws Exception {
-        this(n_folds, learn_data, null, metric);
+    /** Validation fitness of configurations already evaluated, indexed by Individual.getConfigurationKey(). */
+    private final ConcurrentHashMap<String, Double> validationCache;
+
+    public FitnessCalculator(int n_folds, Instances learn_data, EvaluationMetric metric, Random random) throws Exception {
+        this(n_folds, learn_data, null, metric, random);
+    }
+
+    public FitnessCalculator(
+            int n_folds, Instances learn_data, Instances val_data, EvaluationMetric metric, Random random
+    ) throws Exception {
+        this(n_folds, ColumnarDataset.of(learn_data).all(), val_data, metric, random);
     }
 
-    public FitnessCalculator(int n_folds, Instances learn_data, Instances val_data, EvaluationMetric metric) throws Exception {
-        this.learn_data = learn_data;
+    /**
+     * Creates a fitness calculator over a view of the learning data; folds of the internal cross-validation are
+     * views over the same dataset.
+     *
+     * @param n_folds Number of internal folds: 0 for holdout, 1 for leave-one-out, or more for cross-validation
+     * @param learn Learning data. If using cross-validation, its folds must be contiguous, as in Instances.testCV
+     * @param val_data Data to measure validation fitness
+     * @param metric Metric used as fitness
+     * @param random Random number generator used to shuffle the training sets of the internal cross-validation
+     * @throws Exception If the number of folds is negative
+     */
+    public FitnessCalculator(
+            int n_folds, DatasetView learn, Instances val_data, EvaluationMetric metric, Random random
+    ) throws Exception {
+        this.learn_data = learn.toInstances();
         this.val_data = val_data;
 
         this.n_folds = n_folds;
@@ -64,6 +97,8 @@ public class FitnessCalculator {
         this.sortedIndices_learn = new Integer[0];
         this.sortedIndices_val = new Integer[0];
 
+        this.validationCache = new ConcurrentHashMap<>();
+
         if(n_folds < 0) {
             throw new Exception("Number of folds cannot be less than zero!");
         }
@@ -79,12 +114,36 @@ public class FitnessCalculator {
                 this.evaluation_method = EvaluationMethod.CROSSVALIDATION;
         }
 
+        if(this.evaluation_method == EvaluationMethod.CROSSVALIDATION) {
+            this.createFolds(learn, random);
+        }
+
         this.metric = metric;
     }
 
+    /**
+     * Creates the folds of the internal cross-validation over the learning data. Validation sets are the same as
+     * Instances.testCV; training sets are the same as Instances.trainCV(n_folds, n_fold, random). Folds are created
+     * only once, so that every individual is trained on the same data, in the same order.
+     *
+     * @param learn Learning data
+     * @param random Random number generator used to shuffle training sets
+     */
+    private void createFolds(DatasetView learn, Random random) {
+        this.trainFolds = new DatasetView[this.n_folds];
+        this.valFolds = new DatasetView[this.n_folds];
+        for(int f = 0; f < this.n_folds; f++) {
+            this.trainFolds[f] = learn.trainCV(this.n_folds, f).shuffle(random);
+            this.valFolds[f] = learn.testCV(this.n_folds, f);
+        }
+    }
+
     /**
      * Stratifies data for posterior use of a cross-validation procedure.
      *
+     * Instances are stratified as in {@link #stratify(DatasetView, int, Random)}, and copied, so that the returned
+     * dataset can be modified without affecting data.
+     *
      * @param data Data to be stratified
      * @param n_folds Number of folds that will be used in cross-validation
      * @return Same dataset as data, but now stratified
@@ -94,74 +153,101 @@ public class FitnessCalculator {
      */
     public static Instances betterStratifier(Instances data, int n_folds)
             throws IllegalArgumentException, UnassignedClassException, ValueException {
+        if (data.classIndex() < 0) {
+            throw new UnassignedClassException("Class index is negative (not set)!");
+        }
+        return FitnessCalculator.stratify(ColumnarDataset.of(data).all(), n_folds, new Random()).toInstancesCopy();
+    }
+
+    /**
+     * Assigns each instance of a dataset to a fold of a stratified cross-validation, without moving instances.
+     *
+     * Instances are grouped by class (instances with missing class form a group of their own) with a counting sort,
+     * and shuffled within their group. Instances are then dealt to folds in turns, group after group, so that each
+     * fold has about the same number of instances of each class, and fold sizes differ by at most one instance
+     * (larger folds first). Takes linear time.
+     *
+     * @param data Data to be stratified
+     * @param n_folds Number of folds that will be used in cross-validation
+     * @param random Random number generator used to shuffle instances
+     * @return The fold of each instance of data, from 0 to n_folds - 1
+     * @throws IllegalArgumentException Invalid number of folds
+     * @throws ValueException Is not a classification dataset, or some class has too few instances
+     */
+    public static int[] stratifiedFolds(DatasetView data, int n_folds, Random random)
+            throws IllegalArgumentException, ValueException {
         if (n_folds <= 1) {
             throw new IllegalArgumentException(
                     "Number of folds must be greater than 1");
         }
-        if (data.classIndex() < 0) {
-            throw new UnassignedClassException("Class index is negative (not set)!");
-        }
-        if (!data.attribute(data.classIndex()).isNominal()) {
+        Attribute classAttribute = data.getDataset().attribute(data.getDataset().classIndex());
+        if (!classAttribute.isNominal()) {
             throw new ValueException("only stratifies classification datasets!");
         }
 
-        HashMap<Double, ArrayList<Integer>> mapping = new HashMap<>();
+        int n_instances = data.size(),
+                n_classes = classAttribute.numValues();
+        double[] classValues = data.getClassValues();
 
-        // collects indices of instances for classes
-        for(int i = 0; i < data.size(); i++) {
-            ArrayList<Integer> indices;
-            double index = data.instance(i).classValue();
-            if(mapping.getOrDefault(index, null) == null) {
-                indices = new ArrayList<>();
-            } else {
-                indices = mapping.get(index);
-            }
-            indices.add(i);
-            mapping.put(index, indices);
+        // group of each instance: its class, or n_classes if class is missing
+        int[] groups = new int[n_instances];
+        int[] offsets = new int[n_classes + 2];
+        for(int i = 0; i < n_instances; i++) {
+            groups[i] = Double.isNaN(classValues[i])? n_classes : (int)classValues[i];
+            offsets[groups[i] + 1] += 1;
         }
-
-        HashMap<Double, ArrayList<Integer>> copy = new HashMap<>();
-        // how many instances from each class to put at a given time in each fold
-        HashMap<Double, Integer> howManies = new HashMap<>();
-        // shuffles arrays
-        for(Double key : mapping.keySet()) {
-            Collections.shuffle(mapping.get(key));
-            copy.put(key, mapping.get(key));
-
-            int howMany = Math.round(copy.get(key).size() / (float)n_folds);
-            if(howMany <= 0) {
+        for(int c = 0; c <= n_classes; c++) {
+            int count = offsets[c + 1];
+            if(count > 0 && Math.round(count / (float)n_folds) <= 0) {
                 throw new ValueException(String.format(
                         "class %s has %d instances, but number of folds is %d",
-                        data.classAttribute().value(key.intValue()),
-                        copy.get(key).size(),
+                        c < n_classes? classAttribute.value(c) : "?",
+                        count,
                         n_folds
                 ));
             }
-            howManies.put(key, howMany);
-
+            offsets[c + 1] += offsets[c];
         }
 
-        // get attribute info
-        ArrayList<Attribute> attrInfo = new ArrayList<>();
-        for(int j = 0; j < data.numAttributes(); j++) {
-            attrInfo.add(data.attribute(j));
+        int[] order = new int[n_instances];
+        int[] next = offsets.clone();
+        for(int i = 0; i < n_instances; i++) {
+            order[next[groups[i]]] = i;
+            next[groups[i]] += 1;
         }
-        Instances container = new Instances(data.relationName(), attrInfo, data.size());
-        for(int f = 0; f < n_folds; f++) {
-            for(Double key : howManies.keySet()) {
-                for(int h = 0; h < howManies.get(key); h++) {
-                    try {
-                        int index = mapping.get(key).remove(0);
-                        container.add(data.get(index));
-                    } catch(IndexOutOfBoundsException iobe) {
-                        // Math.round can generate a number of instances above the available quantity; just ignore
-                        // and proceed, this exception happens at the last fold
-                    }
-                }
+
+        // shuffles instances within each group
+        for(int c = 0; c <= n_classes; c++) {
+            for(int i = offsets[c + 1] - 1; i > offsets[c]; i--) {
+                int j = offsets[c] + random.nextInt(i - offsets[c] + 1);
+                int aux = order[i];
+                order[i] = order[j];
+                order[j] = aux;
             }
         }
-        container.setClassIndex(data.classIndex());
-        return container;
+
+        int[] folds = new int[n_instances];
+        for(int k = 0; k < n_instances; k++) {
+            folds[order[k]] = k % n_folds;
+        }
+        return folds;
+    }
+
+    /**
+     * Stratifies data for posterior use of a cross-validation procedure: instances are assigned to folds with
+     * {@link #stratifiedFolds(DatasetView, int, Random)}, and grouped by fold, so that each fold given by
+     * Instances.testCV (or DatasetView.testCV) of the returned data is a stratified fold.
+     *
+     * @param data Data to be stratified
+     * @param n_folds Number of folds that will be used in cross-validation
+     * @param random Random number generator used to shuffle instances
+     * @return A view with the same instances of data, grouped by fold
+     * @throws IllegalArgumentException Invalid number of folds
+     * @throws ValueException Is not a classification dataset, or some class has too few instances
+     */
+    public static DatasetView stratify(DatasetView data, int n_folds, Random random)
+            throws IllegalArgumentException, ValueException {
+        return data.orderByFolds(FitnessCalculator.stratifiedFolds(data, n_folds, random), n_folds);
     }
 
     public static double getUnweightedAreaUnderROC(
@@ -185,6 +271,77 @@ public class FitnessCalculator {
         return unweighted / n_classes;
     }
 
+    /**
+     * Computes the unweighted (i.e. averaged over classes) area under the ROC curve from class probabilities, without
+     * resorting to Weka's Evaluation. Gives the same result as {@link #getUnweightedAreaUnderROC(Evaluation)} for
+     * the same predictions.
+     *
+     * @param dists Class probabilities of each instance
+     * @param classValues Actual class value of each instance. Instances with missing class values are ignored
+     * @param weights Weight of each instance
+     * @param n_classes Number of classes
+     * @return The unweighted AUC
+     * @throws Exception If some class has no positive or no negative instances
+     */
+    public static double getUnweightedAreaUnderROC(
+            double[][] dists, double[] classValues, double[] weights, int n_classes) throws Exception {
+        double unweighted = 0;
+        for(int c = 0; c < n_classes; c++) {
+            double auc = FitnessCalculator.getAreaUnderROC(dists, classValues, weights, c);
+            if(Utils.isMissingValue(auc)) {
+                throw new Exception("un-stratified code!");
+            } else {
+                unweighted += auc;
+            }
+        }
+        return unweighted / n_classes;
+    }
+
+    /**
+     * Computes the area under the ROC curve of a class (one against all others), from the ranks of the probabilities
+     * of that class. Instances with the same probability are counted as half right, as in the trapezoidal rule.
+     *
+     * @return The AUC, or NaN if there are no positive or no negative instances.
+     */
+    private static double getAreaUnderROC(double[][] dists, double[] classValues, double[] weights, int classIndex) {
+        int n_instances = dists.length;
+
+        double[] scores = new double[n_instances];
+        for(int i = 0; i < n_instances; i++) {
+            scores[i] = dists[i][classIndex];
+        }
+        int[] order = Utils.sort(scores);
+
+        double area = 0, negativesBelow = 0, totalPositives = 0, totalNegatives = 0;
+
+        int start = 0;
+        while(start < n_instances) {
+            // group of instances with the same score
+            int end = start;
+            double groupPositives = 0, groupNegatives = 0;
+            while(end < n_instances && scores[order[end]] == scores[order[start]]) {
+                int i = order[end];
+                if(!Utils.isMissingValue(classValues[i])) {
+                    if((int)classValues[i] == classIndex) {
+                        groupPositives += weights[i];
+                    } else {
+                        groupNegatives += weights[i];
+                    }
+                }
+                end += 1;
+            }
+            area += groupPositives * (negativesBelow + 0.5 * groupNegatives);
+            negativesBelow += groupNegatives;
+            totalPositives += groupPositives;
+            totalNegatives += groupNegatives;
+            start = end;
+        }
+        if(totalPositives == 0 || totalNegatives == 0) {
+            return Double.NaN;
+        }
+        return area / (totalPositives * totalNegatives);
+    }
+
     public static double getBalancedAccuracy(
             Instances train_data, Instances val_data, AbstractClassifier clf) throws Exception {
         Evaluation evaluation = new Evaluation(train_data);
@@ -229,50 +386,39 @@ public class FitnessCalculator {
     /**
      * Evaluates ensemble -- that is, returns the fitness function for this individual.
      *
-     * @param seed
-     * @param ind
-     * @return
-     * @throws Exception
-     */
-    public Fitness evaluateEnsemble(int seed, Individual ind, Integer timeout_individual, boolean get_validation_fitness) throws
-            EmptyEnsembleException, NoAggregationPolicyException, TimeoutException, UnknownException, InterruptedException {
-        Random random = new Random(seed);
-        return this.evaluateEnsemble(random, ind, timeout_individual, get_validation_fitness);
-    }
-
-    /**
-     * Evaluates ensemble -- that is, returns the fitness function for this individual.
-     *
-     * @param random
      * @param ind
      * @return
      * @throws Exception
      */
     public Fitness evaluateEnsemble(
-            Random random, Individual ind, Integer timeout_individual, boolean get_validation_fitness
+            Individual ind, Integer timeout_individual, boolean get_validation_fitness
     ) throws EmptyEnsembleException, NoAggregationPolicyException, TimeoutException, UnknownException, InterruptedException {
 
         switch(this.evaluation_method) {
             case HOLDOUT:
-                return holdoutEvaluateEnsemble(random, ind, timeout_individual);
+                return holdoutEvaluateEnsemble(ind, timeout_individual);
             case LEAVEONEOUT:
-                return leaveOneOutEvaluateEnsemble(random, ind, timeout_individual, get_validation_fitness);
+                return leaveOneOutEvaluateEnsemble(ind, timeout_individual, get_validation_fitness);
             case CROSSVALIDATION:
-                return crossValidationEvaluateEnsemble(random, ind, timeout_individual, get_validation_fitness);
+                return crossValidationEvaluateEnsemble(ind, timeout_individual, get_validation_fitness);
             default:
                 throw new UnknownException(new Exception("unknown evaluation methodology"));
         }
     }
 
     private Fitness leaveOneOutEvaluateEnsemble(
-            Random random, Individual ind, Integer timeout_individual, boolean get_validation_fitness
+            Individual ind, Integer timeout_individual, boolean get_validation_fitness
     ) throws EmptyEnsembleException, NoAggregationPolicyException, TimeoutException, UnknownException, InterruptedException {
         throw new UnknownException(new Exception("not implemented yet!"));
     }
 
     private Fitness holdoutEvaluateEnsemble(
-            Random random, Individual ind, Integer timeout_individual
-    ) throws UnknownException {
+            Individual ind, Integer timeout_individual
+    ) throws NoAggregationPolicyException, UnknownException {
+        // there are no out-of-fold predictions in holdout: such individuals are invalid, and are sampled again
+        if(ind.requiresOutOfFoldPredictions()) {
+            throw new NoAggregationPolicyException("aggregator requires out-of-fold predictions, which holdout does not produce.");
+        }
         try {
             Individual copy = new Individual(ind, timeout_individual);
             Evaluation eval = new Evaluation(this.learn_data);
@@ -298,30 +444,31 @@ public class FitnessCalculator {
     }
 
     private Fitness crossValidationEvaluateEnsemble(
-            Random random, Individual ind, Integer timeout_individual, boolean get_validation_fitness
+            Individual ind, Integer timeout_individual, boolean get_validation_fitness
     ) throws EmptyEnsembleException, NoAggregationPolicyException, TimeoutException, UnknownException, InterruptedException {
         EvaluateValidationSetThread t = null;
 
-        if(get_validation_fitness) {
+        // aggregators that use out-of-fold predictions are set after all folds are evaluated; the individual is only
+        // evaluated on the validation set afterwards, with that aggregator
+        boolean outOfFold = ind.usesOutOfFoldPredictions();
+
+        if(get_validation_fitness && !outOfFold) {
             t = new EvaluateValidationSetThread(this.learn_data, this.val_data, ind, timeout_individual, this.metric);
             t.start();
         }
 
         Object[] trainEvaluations = IntStream.range(0, this.n_folds).parallel().mapToObj(
-                i -> FitnessCalculator.parallelFoldEvaluation(ind, learn_data, i, this.n_folds, random, timeout_individual)
+                i -> FitnessCalculator.parallelFoldEvaluation(ind, this.trainFolds[i], this.valFolds[i], timeout_individual)
         ).toArray();
 
-        // waits for evaluation of validation set to finish
-        if(get_validation_fitness) {
-            t.join();
-        }
-
         ArrayList<String> all_lines = new ArrayList<>();
         int size = 0;
 
         for(Object val : trainEvaluations) {
             if(val instanceof PredictionsSizeContainer) {
-                all_lines.addAll(((PredictionsSizeContainer)val).getLines());
+                if(!outOfFold) {
+                    all_lines.addAll(((PredictionsSizeContainer)val).getLines());
+                }
                 size += ((PredictionsSizeContainer)val).getNumberOfRules();
             } else if(val instanceof EmptyEnsembleException) {
                 throw (EmptyEnsembleException)val;
@@ -334,6 +481,39 @@ public class FitnessCalculator {
             }
         }
         size /= n_folds;
+
+        if(outOfFold) {
+            OutOfFoldPredictions predictions = new OutOfFoldPredictions(this.learn_data, ind.getNumberOfClassifierSlots());
+            for(int f = 0; f < trainEvaluations.length; f++) {
+                double[][][] baseDists = ((PredictionsSizeContainer)trainEvaluations[f]).getBaseDistributions();
+                int offset = FitnessCalculator.getTestFoldOffset(this.learn_data.size(), this.n_folds, f);
+                for(int c = 0; c < baseDists.length; c++) {
+                    if(baseDists[c] != null) {
+                        predictions.setDistributions(c, offset, baseDists[c]);
+                    }
+                }
+            }
+            all_lines.addAll(this.crossFitPredictions(ind, predictions, trainEvaluations));
+
+            Aggregator aggregator = ind.newAggregator();
+            try {
+                aggregator.setCompetences(predictions);
+            } catch(Exception e) {
+                throw new NoAggregationPolicyException("Error while setting competences for aggregator: " + e.getMessage());
+            }
+            ind.setOutOfFoldAggregator(aggregator, predictions);
+
+            if(get_validation_fitness) {
+                t = new EvaluateValidationSetThread(this.learn_data, this.val_data, ind, timeout_individual, this.metric);
+                t.start();
+            }
+        }
+
+        // waits for evaluation of validation set to finish
+        if(get_validation_fitness) {
+            t.join();
+        }
+
         double learnQuality;
         try {
             CompilePredictions fj = new CompilePredictions(all_lines);
@@ -352,51 +532,163 @@ public class FitnessCalculator {
         }
 
         if(get_validation_fitness) {
+            this.keepValidationResults(ind, t);
             return new Fitness(size, learnQuality, t.getValQuality());
         } else {
             return new Fitness(size, learnQuality, null);
         }
     }
 
+    /**
+     * Aggregates the predictions of base classifiers on each validation fold with an aggregator set from the
+     * out-of-fold predictions of the remaining folds, so that neither base classifiers nor the aggregator have seen
+     * the instances they predict.
+     *
+     * @param ind Individual being evaluated
+     * @param predictions Out-of-fold predictions of base classifiers on the learning set
+     * @param trainEvaluations Result of parallelFoldEvaluation for each fold
+     * @return Predictions of the ensemble for each validation fold, as lines of a CompilePredictions file
+     * @throws NoAggregationPolicyException If predictions of any fold could not be aggregated
+     */
+    private ArrayList<String> crossFitPredictions(Individual ind, OutOfFoldPredictions predictions, Object[] trainEvaluations)
+            throws NoAggregationPolicyException {
+
+        ArrayList<String> lines = new ArrayList<>();
+        for(int f = 0; f < this.n_folds; f++) {
+            int offset = FitnessCalculator.getTestFoldOffset(this.learn_data.size(), this.n_folds, f);
+            OutOfFoldPredictions others = predictions.exclude(offset, this.valFolds[f].size());
+
+            // only classifiers that the aggregator knows of are aggregated
+            double[][][] baseDists = ((PredictionsSizeContainer)trainEvaluations[f]).getBaseDistributions();
+            double[][][] foldDists = new double[baseDists.length][][];
+            for(int c = 0; c < baseDists.length; c++) {
+                if(others.hasDistributions(c)) {
+                    if(baseDists[c] == null) {
+                        throw new NoAggregationPolicyException("base classifier failed to train in fold " + f);
+                    }
+                    foldDists[c] = baseDists[c];
+                }
+            }
+
+            try {
+                Aggregator aggregator = ind.newAggregator();
+                aggregator.setCompetences(others);
+                lines.addAll(FitnessCalculator.toLines(this.valFolds[f].getClassValues(), aggregator.aggregateProba(foldDists)));
+            } catch(Exception e) {
+                throw new NoAggregationPolicyException("Error while setting competences for aggregator: " + e.getMessage());
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes predictions of an ensemble in the format read by CompilePredictions.
+     *
+     * @param classValues Class value of each instance
+     * @param dists Probability distribution of classes for each instance
+     * @return A header line, followed by one line per instance
+     */
+    private static ArrayList<String> toLines(double[] classValues, double[][] dists) {
+        ArrayList<String> lines = new ArrayList<>(dists.length + 1);
+        lines.add("classValue;ensemble\n");
+        for(int i = 0; i < classValues.length; i++) {
+            lines.add(classValues[i] + ";" + PBILLogger.writeDistributionOfProbabilities(dists[i]) + "\n");
+        }
+        return lines;
+    }
+
+    /**
+     * Index of the first instance of a test fold, as split by Instances.testCV.
+     *
+     * @param n_instances Number of instances in the dataset
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return Index, in the dataset, of the first instance of the fold
+     */
+    public static int getTestFoldOffset(int n_instances, int n_folds, int n_fold) {
+        int remainder = n_instances % n_folds;
+        return n_fold * (n_instances / n_folds) + Math.min(n_fold, remainder);
+    }
+
+    /**
+     * Trains a copy of an individual on the training set of a fold, and predicts its validation set.
+     *
+     * If the aggregator of the individual uses out-of-fold predictions, only base classifiers are trained, and only
+     * their predictions are returned: the aggregator is set afterwards, from the predictions of all folds.
+     *
+     * @param ind Individual to be evaluated
+     * @param train Training set of the fold
+     * @param val Validation set of the fold
+     * @param timeout_individual Maximum time for training the individual, or null for no limit
+     * @return A PredictionsSizeContainer with predictions for the validation set, or the exception that was thrown.
+     */
     public static Object parallelFoldEvaluation(
-            Individual ind, Instances train_data,
-            int n_fold, int n_folds, Random random, Integer timeout_individual) {
+            Individual ind, DatasetView train, DatasetView val, Integer timeout_individual) {
         try {
-            // LocalDateTime start = LocalDateTime.now();
-
             Individual copy = new Individual(ind, timeout_individual);
-            // Evaluation eval = new Evaluation(train_data);
 
-            Instances local_train = train_data.trainCV(n_folds, n_fold, random);
-            Instances local_val = train_data.testCV(n_folds, n_fold);
+            Instances local_train = train.toInstances();
+            Instances local_val = val.toInstances();
 
-            copy.buildClassifier(local_train);
-
-            double[][] dists = copy.distributionsForInstances(local_val);
-            ArrayList<String> lines = new ArrayList<>(dists.length);
-            lines.add("classValue;ensemble\n");
-            for(int i = 0; i < local_val.size(); i++) {
-                lines.add(local_val.instance(i).classValue() + ";" + PBILLogger.writeDistributionOfProbabilities(dists[i]) + "\n");
+            if(copy.usesOutOfFoldPredictions()) {
+                copy.buildBaseClassifiers(local_train);
+                return new PredictionsSizeContainer(
+                        copy.getNumberOfRules(), null, copy.baseDistributionsForInstances(local_val)
+                );
             }
-            return new PredictionsSizeContainer(copy.getNumberOfRules(), lines);
-            // eval.evaluateModel(copy, local_val);
-            // return new Fitness(copy.getNumberOfRules(), getUnweightedAreaUnderROC(eval));
+
+            copy.buildClassifier(local_train);
+            return new PredictionsSizeContainer(
+                    copy.getNumberOfRules(),
+                    FitnessCalculator.toLines(val.getClassValues(), copy.distributionsForInstances(local_val))
+            );
         } catch(Exception e) {
             return e;
         }
     }
 
+    /**
+     * Returns the fitness of an individual, with its quality on the validation set.
+     *
+     * The validation quality is only measured once for each configuration: individuals that already have it (e.g.
+     * the elite carried over from the previous generation) are returned as-is, and configurations already evaluated
+     * are fetched from a cache. When the individual is actually trained on the learning set, the trained copy is kept
+     * in the individual (see Individual.getLearnSetModel).
+     *
+     * @param ind Individual to be evaluated
+     * @return Fitness of the individual, with validation quality
+     */
     public Fitness getEnsembleValidationFitness(Individual ind)
             throws EmptyEnsembleException, NoAggregationPolicyException {
 
-        if(ind.getFitness().getValQuality() == null) {
+        if(ind.getFitness().hasValQuality()) {
+            return ind.getFitness();
+        }
+
+        Double valQuality = this.validationCache.get(ind.getConfigurationKey());
+        if(valQuality == null) {
             EvaluateValidationSetThread t = new EvaluateValidationSetThread(
                     this.learn_data, this.val_data, ind, null, this.metric
             );
             t.run();
-            return new Fitness(ind.getFitness().getSize(), ind.getFitness().getLearnQuality(), t.getValQuality());
+            this.keepValidationResults(ind, t);
+            valQuality = t.getValQuality();
+        }
+        return new Fitness(ind.getFitness().getSize(), ind.getFitness().getLearnQuality(), valQuality);
+    }
+
+    /**
+     * Stores the results of an evaluation on the validation set, so that they are not computed again for the same
+     * configuration.
+     *
+     * @param ind Individual that was evaluated
+     * @param t Thread that evaluated the individual. Must have already finished.
+     */
+    private void keepValidationResults(Individual ind, EvaluateValidationSetThread t) {
+        if(t.hasSucceeded()) {
+            this.validationCache.put(ind.getConfigurationKey(), t.getValQuality());
+            ind.setLearnSetModel(t.getTrainedIndividual());
         }
-        return ind.getFitness();
     }
 
     public Integer[] getSortedIndices(Individual[] population)
@@ -2,10 +2,11 @@ package ednel.eda.individual;
 
 import ednel.classifiers.trees.SimpleCart;
 import ednel.eda.aggregators.Aggregator;
+import ednel.eda.aggregators.AggregatorRegistry;
+import ednel.eda.aggregators.OutOfFoldPredictions;
 import ednel.eda.aggregators.RuleExtractorAggregator;
 import guru.nidi.graphviz.engine.Format;
 import guru.nidi.graphviz.engine.Graphviz;
-import org.reflections.Reflections;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.rules.DecisionTable;
 import weka.classifiers.rules.JRip;
@@ -14,7 +15,6 @@ import weka.classifiers.trees.J48;
 import weka.core.*;
 
 import java.io.File;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.InvalidParameterException;
 import java.time.LocalDateTime;
@@ -46,6 +46,7 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
 
     /** Number of classifiers currently being used by this ensemble. */
     protected int n_active_classifiers;
+    /** Data this individual was trained on. A reference, never a copy: it may be shared with other individuals. */
     protected Instances train_data;
 
     /** Array of characteristics of this individual. May contain null values. */
@@ -59,15 +60,49 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
 
     protected Integer timeout_individual;
 
-    private static HashMap<String, Class<? extends Aggregator>> aggregatorClasses;
+    /** A copy of this individual trained on the learning set, kept after its validation fitness is measured. */
+    protected Individual learnSetModel = null;
 
-    static {
-        aggregatorClasses = Individual.getAggregatorClasses();
-    }
+    /**
+     * Out-of-fold predictions of base classifiers (see FitnessCalculator), used for setting competences of the
+     * aggregator whenever this individual is trained; null if none. Never modified once set, and thus shared with
+     * copies of this individual.
+     */
+    protected OutOfFoldPredictions outOfFoldPredictions = null;
+
+    /**
+     * An aggregator whose competences were set from outOfFoldPredictions, for the base classifiers in
+     * outOfFoldClassifiers. Owned by this individual only: copies set their own.
+     */
+    protected Aggregator outOfFoldAggregator = null;
+
+    /** Base classifiers whose predictions were used for setting outOfFoldAggregator. */
+    protected boolean[] outOfFoldClassifiers = null;
+
+    /** Whether the trained models of this individual were borrowed from another individual. */
+    protected boolean sharesModels = false;
+
+    /** Whether base classifiers are configured from characteristics, instead of from the option table. */
+    protected boolean fromCharacteristics;
 
     public Individual(HashMap<String, String> optionTable, HashMap<String, String> characteristics) throws
             EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException
     {
+        this(optionTable, characteristics, false);
+    }
+
+    /**
+     * Creates a new individual.
+     *
+     * @param optionTable Options of each algorithm in this individual, as option strings.
+     * @param characteristics Values of each variable of the Dependency Network for this individual.
+     * @param fromCharacteristics Whether to configure base classifiers directly from characteristics (through
+     *                            setters), or by parsing the option table. Option table is still kept for logging.
+     */
+    private Individual(HashMap<String, String> optionTable, HashMap<String, String> characteristics, boolean fromCharacteristics) throws
+            EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException
+    {
+        this.fromCharacteristics = fromCharacteristics;
         this.setOptionString(optionTable);
 
         this.classifiers = new HashMap<>(6);
@@ -83,21 +118,25 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
 
         this.timeout_individual = null;
 
-        String[] options = new String [optionTable.size() * 2];
-        HashSet<String> algNames = new HashSet<>(optionTable.keySet());
-
-        int counter = 0;
-        for(String algName : algNames) {
-            options[counter] = "-" + algName;
-            String curVal = optionTable.get(algName);
-            options[counter + 1] =  String.valueOf(curVal).equals("null")? "" : curVal;
-            counter += 2;
-        }
-
 //        this.orderedClassifiers = new AbstractClassifier[]{j48, simpleCart, part, jrip, decisionTable};
         this.orderedClassifiersNames = new String[]{"JRip", "DecisionTable", "J48", "PART", "SimpleCart"};
         this.orderedClassifiers = new AbstractClassifier[]{jrip, decisionTable, j48, part, simpleCart};
-        this.setOptions(options);
+        this.configure();
+    }
+
+    /**
+     * Creates a new individual from a state sampled by the Dependency Network. Base classifiers are configured directly
+     * from the sampled values, through setters, without parsing option strings. Copies of this individual (e.g. for
+     * evaluating it in each fold) are configured the same way.
+     *
+     * @param optionTable Options of each algorithm in this individual, as generated by the Dependency Network. Only
+     *                    used for logging.
+     * @param characteristics Values sampled by the Dependency Network for each variable.
+     * @return A new individual
+     */
+    public static Individual fromSampledState(HashMap<String, String> optionTable, HashMap<String, String> characteristics) throws
+            EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException {
+        return new Individual(optionTable, characteristics, true);
     }
 
     public Individual(HashMap<String, String> optionTable, HashMap<String, String> characteristics, Integer timeout_individual) throws
@@ -108,12 +147,89 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
 
     public Individual(Individual other) throws
             EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException {
-        this(other.getOptionTable(), other.getCharacteristics());
+        this(other.getOptionTable(), other.getCharacteristics(), other.fromCharacteristics);
+        this.outOfFoldPredictions = other.outOfFoldPredictions;
     }
 
     public Individual(Individual other, Integer timeout_individual) throws
             EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException {
-        this(other.getOptionTable(), other.getCharacteristics(), timeout_individual);
+        this(other);
+        this.timeout_individual = timeout_individual;
+    }
+
+    /**
+     * Creates base classifiers and aggregator of this individual, either from its characteristics or its option table.
+     */
+    private void configure() throws EmptyEnsembleException, InvalidParameterException, NoAggregationPolicyException {
+        if(this.fromCharacteristics) {
+            this.setCharacteristics(this.characteristics);
+        } else {
+            this.setOptions(Individual.optionTableToOptions(this.optionTable));
+        }
+    }
+
+    /**
+     * Creates base classifiers and aggregator of this individual from the values sampled for each variable of the
+     * Dependency Network. Hyper-parameters are set directly through setters (see LearnerFactory).
+     *
+     * @param characteristics Values of each variable of the Dependency Network.
+     */
+    protected void setCharacteristics(HashMap<String, String> characteristics) throws EmptyEnsembleException,
+            InvalidParameterException, NoAggregationPolicyException {
+
+        this.aggregatorName = String.valueOf(characteristics.get("Aggregator"));
+        this.aggregator = AggregatorRegistry.newInstance(this.aggregatorName);
+        if(this.aggregator == null) {
+            throw new InvalidParameterException("Aggregator " + this.aggregatorName + " not currently supported!");
+        }
+
+        int n_queried_classifiers = 0;
+
+        j48 = null;
+        if(LearnerFactory.isPresent(characteristics, "J48")) {
+            j48 = LearnerFactory.newJ48(characteristics);
+            n_queried_classifiers += 1;
+        }
+        simpleCart = null;
+        if(LearnerFactory.isPresent(characteristics, "SimpleCart")) {
+            simpleCart = LearnerFactory.newSimpleCart(characteristics);
+            n_queried_classifiers += 1;
+        }
+        part = null;
+        if(LearnerFactory.isPresent(characteristics, "PART")) {
+            part = LearnerFactory.newPART(characteristics);
+            n_queried_classifiers += 1;
+        }
+        jrip = null;
+        if(LearnerFactory.isPresent(characteristics, "JRip")) {
+            jrip = LearnerFactory.newJRip(characteristics);
+            n_queried_classifiers += 1;
+        }
+        decisionTable = null;
+        if(LearnerFactory.isPresent(characteristics, "DecisionTable")) {
+            decisionTable = LearnerFactory.newDecisionTable(characteristics);
+            n_queried_classifiers += 1;
+        }
+
+        this.registerClassifiers(n_queried_classifiers);
+    }
+
+    /**
+     * Converts an option table (where keys are algorithm names and values their options) to an array of options,
+     * as expected by setOptions.
+     */
+    private static String[] optionTableToOptions(HashMap<String, String> optionTable) {
+        String[] options = new String [optionTable.size() * 2];
+        HashSet<String> algNames = new HashSet<>(optionTable.keySet());
+
+        int counter = 0;
+        for(String algName : algNames) {
+            options[counter] = "-" + algName;
+            String curVal = optionTable.get(algName);
+            options[counter + 1] =  String.valueOf(curVal).equals("null")? "" : curVal;
+            counter += 2;
+        }
+        return options;
     }
 
     @Override
@@ -146,18 +262,9 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         int n_queried_classifiers = 0;
 
         this.aggregatorName = aggregatorParameters[0];
-        Class<? extends Aggregator> cls = Individual.aggregatorClasses.getOrDefault(aggregatorName, null);
-
-        try {
-            if(cls != null) {
-                this.aggregator = (Aggregator)cls.getConstructor().newInstance();
-            } else {
-                throw new InvalidParameterException("Aggregator " + aggregatorParameters[0] + " not currently supported!");
-            }
-        } catch(NoSuchMethodException e) {
-            throw new NoAggregationPolicyException("Aggregator " + aggregatorParameters[0] + " not currently supported!");
-        } catch (IllegalAccessException | InstantiationException | InvocationTargetException e){
-            throw new InvalidParameterException("An error occurred while trying to instantiate an aggregator for this ensemble.");
+        this.aggregator = AggregatorRegistry.newInstance(this.aggregatorName);
+        if(this.aggregator == null) {
+            throw new InvalidParameterException("Aggregator " + aggregatorParameters[0] + " not currently supported!");
         }
 
         if(j48Parameters.length > 1) {
@@ -245,6 +352,16 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         }
 
 
+        this.registerClassifiers(n_queried_classifiers);
+    }
+
+    /**
+     * Fills the collections of classifiers of this individual, once they are created.
+     *
+     * @param n_queried_classifiers Number of classifiers requested for this individual.
+     * @throws EmptyEnsembleException If no classifier was requested.
+     */
+    private void registerClassifiers(int n_queried_classifiers) throws EmptyEnsembleException {
         if(n_queried_classifiers == 0) {
             throw new EmptyEnsembleException("no classifier present in this ensemble!");
         }
@@ -262,13 +379,88 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
 
     @Override
     public void buildClassifier(Instances data) throws EmptyEnsembleException, NoAggregationPolicyException, TimeoutException {
-        this.train_data = data;
+        this.buildClassifier(data, null);
+    }
+
+    /**
+     * Trains this individual, reusing the base classifiers of another individual already trained on the same data.
+     * Base classifiers configured exactly as the ones of the other individual are not trained again, but shared
+     * (read-only) between both individuals; if all of them match, the aggregator is shared as well.
+     *
+     * @param data Training data
+     * @param trained An individual already trained on data, or null to train every base classifier
+     * @throws EmptyEnsembleException If no base classifier could be trained
+     * @throws NoAggregationPolicyException If the ensemble has no aggregation policy
+     * @throws TimeoutException If training takes more time than allowed for the individual
+     */
+    public void buildClassifier(Instances data, Individual trained) throws EmptyEnsembleException,
+            NoAggregationPolicyException, TimeoutException {
+
+        if(trained != null && trained != this && trained.train_data == data &&
+                this.getConfigurationKey().equals(trained.getConfigurationKey())) {
+            this.copyTrainedModelsFrom(trained);
+            return;
+        }
 
         LocalDateTime start = LocalDateTime.now();
 
+        this.trainBaseClassifiers(data, start, trained);
+        if(this.aggregator == null) {
+            throw new NoAggregationPolicyException("Ensemble must have an aggregation policy!");
+        }
+        if(this.outOfFoldPredictions != null) {
+            this.useOutOfFoldAggregator();
+        } else {
+            try {
+                this.aggregator.setCompetences(this.orderedClassifiers, data);
+            } catch(Exception e) {
+                throw new NoAggregationPolicyException("Error while setting competences for aggregator: " + e.getMessage());
+            }
+        }
+
+        this.timeToTrain = (int)start.until(LocalDateTime.now(), ChronoUnit.SECONDS);
+        this.countRules();
+    }
+
+    /**
+     * Trains the base classifiers of this individual, but not its aggregator. Used for collecting out-of-fold
+     * predictions of base classifiers; the individual can not predict anything afterwards.
+     *
+     * @param data Training data
+     * @throws EmptyEnsembleException If no base classifier could be trained
+     * @throws NoAggregationPolicyException If the ensemble has no aggregation policy
+     * @throws TimeoutException If training takes more time than allowed for the individual
+     */
+    public void buildBaseClassifiers(Instances data) throws EmptyEnsembleException, NoAggregationPolicyException, TimeoutException {
+        LocalDateTime start = LocalDateTime.now();
+
+        this.trainBaseClassifiers(data, start, null);
+
+        this.timeToTrain = (int)start.until(LocalDateTime.now(), ChronoUnit.SECONDS);
+        this.countRules();
+    }
+
+    private void trainBaseClassifiers(Instances data, LocalDateTime start, Individual trained) throws EmptyEnsembleException,
+            NoAggregationPolicyException, TimeoutException {
+        if(this.sharesModels) {
+            // models are also referenced by another individual; creates fresh ones instead of re-training them
+            this.configure();
+            this.sharesModels = false;
+        }
+
+        this.train_data = data;
+
         this.n_active_classifiers = 0;
         for(int i = 0; i < this.orderedClassifiers.length; i++) {
             if(this.orderedClassifiers[i] != null) {
+                AbstractClassifier reusable = trained == null? null : trained.getTrainedClassifier(i, data, this.orderedClassifiers[i]);
+                if(reusable != null) {
+                    this.setClassifier(i, reusable);
+                    this.sharesModels = true;
+                    trained.sharesModels = true;
+                    n_active_classifiers += 1;
+                    continue;
+                }
                 try {
                     this.orderedClassifiers[i].buildClassifier(data);
                     n_active_classifiers += 1;
@@ -283,16 +475,90 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         if(this.n_active_classifiers <= 0) {
             throw new EmptyEnsembleException("Ensemble must contain at least one classifier!");
         }
-        if(this.aggregator == null) {
-            throw new NoAggregationPolicyException("Ensemble must have an aggregation policy!");
+    }
+
+    /**
+     * Returns the base classifier of this individual at a given position, if it was trained on the given data and is
+     * configured exactly as another classifier.
+     *
+     * @param index Position of the classifier, in the order used by the aggregator
+     * @param data Data the classifier must have been trained on
+     * @param untrained A classifier not trained yet, whose configuration must match
+     * @return The trained classifier, or null if there is none that matches
+     */
+    private AbstractClassifier getTrainedClassifier(int index, Instances data, AbstractClassifier untrained) {
+        AbstractClassifier clf = this.orderedClassifiers[index];
+        if(this.train_data != data || clf == null || clf.getClass() != untrained.getClass()) {
+            return null;
         }
-        try {
-            this.aggregator.setCompetences(this.orderedClassifiers, data);
-        } catch(Exception e) {
-            throw new NoAggregationPolicyException("Error while setting competences for aggregator.");
+        return Arrays.equals(clf.getOptions(), untrained.getOptions())? clf : null;
+    }
+
+    /**
+     * Replaces the base classifier at a given position, keeping every reference to it in this individual in sync.
+     */
+    private void setClassifier(int index, AbstractClassifier clf) {
+        this.orderedClassifiers[index] = clf;
+        this.classifiers.put(this.orderedClassifiersNames[index], clf);
+        switch(this.orderedClassifiersNames[index]) {
+            case "JRip":
+                this.jrip = (JRip)clf;
+                break;
+            case "DecisionTable":
+                this.decisionTable = (DecisionTable)clf;
+                break;
+            case "J48":
+                this.j48 = (J48)clf;
+                break;
+            case "PART":
+                this.part = (PART)clf;
+                break;
+            case "SimpleCart":
+                this.simpleCart = (SimpleCart)clf;
+                break;
         }
+    }
 
-        this.timeToTrain = (int)start.until(LocalDateTime.now(), ChronoUnit.SECONDS);
+    /**
+     * Uses an aggregator set from out-of-fold predictions. Base classifiers without out-of-fold predictions (i.e.
+     * that failed to train in some fold) can not be aggregated, and are left out of the ensemble. If a base classifier
+     * with out-of-fold predictions failed to train now, it is left out as well, and competences are set again from
+     * the predictions of the remaining classifiers.
+     *
+     * @throws EmptyEnsembleException If no trained base classifier has out-of-fold predictions
+     * @throws NoAggregationPolicyException If competences could not be set
+     */
+    private void useOutOfFoldAggregator() throws EmptyEnsembleException, NoAggregationPolicyException {
+        boolean[] classifiers = new boolean[this.orderedClassifiers.length];
+        for(int i = 0; i < this.orderedClassifiers.length; i++) {
+            if(this.orderedClassifiers[i] == null) {
+                continue;
+            }
+            if(this.outOfFoldPredictions.hasDistributions(i)) {
+                classifiers[i] = true;
+            } else {
+                this.orderedClassifiers[i] = null;
+                this.n_active_classifiers -= 1;
+            }
+        }
+        if(this.n_active_classifiers <= 0) {
+            throw new EmptyEnsembleException("Ensemble must contain at least one classifier!");
+        }
+
+        if(this.outOfFoldAggregator == null || !Arrays.equals(classifiers, this.outOfFoldClassifiers)) {
+            Aggregator aggregator = this.newAggregator();
+            try {
+                aggregator.setCompetences(this.outOfFoldPredictions.retain(classifiers));
+            } catch(Exception e) {
+                throw new NoAggregationPolicyException("Error while setting competences for aggregator: " + e.getMessage());
+            }
+            this.outOfFoldAggregator = aggregator;
+            this.outOfFoldClassifiers = classifiers;
+        }
+        this.aggregator = this.outOfFoldAggregator;
+    }
+
+    private void countRules() {
         if(this.aggregator instanceof RuleExtractorAggregator) {
             this.n_rules = ((RuleExtractorAggregator)this.aggregator).getNumberOfRules();
         } else {
@@ -319,6 +585,38 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         }
     }
 
+    /**
+     * Makes this individual use the models of another individual, already trained, with the same configuration.
+     * Both individuals will share the same (read-only) models; if any of them is re-trained afterwards, it will
+     * create new models instead of modifying the shared ones.
+     *
+     * @param other An individual with the same configuration as this one, already trained.
+     * @throws InvalidParameterException If the other individual has a different configuration.
+     */
+    private void copyTrainedModelsFrom(Individual other) throws InvalidParameterException {
+        if(!this.getConfigurationKey().equals(other.getConfigurationKey())) {
+            throw new InvalidParameterException("can only copy models from an individual with the same configuration!");
+        }
+
+        this.j48 = other.j48;
+        this.simpleCart = other.simpleCart;
+        this.part = other.part;
+        this.jrip = other.jrip;
+        this.decisionTable = other.decisionTable;
+        this.aggregator = other.aggregator;
+
+        this.orderedClassifiers = other.orderedClassifiers.clone();
+        this.classifiers = new HashMap<>(other.classifiers);
+
+        this.train_data = other.train_data;
+        this.n_active_classifiers = other.n_active_classifiers;
+        this.n_rules = other.n_rules;
+        this.timeToTrain = other.timeToTrain;
+
+        this.sharesModels = true;
+        other.sharesModels = true;
+    }
+
     /**
      * Defines how many seconds an individual has to train all its base classifiers, or set to NULL to allow infinite
      * time.
@@ -347,23 +645,6 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         return false;
     }
 
-    public static HashMap<String, Class<? extends Aggregator>> getAggregatorClasses() {
-        if(Individual.aggregatorClasses == null) {
-            Individual.aggregatorClasses = new HashMap<>();
-
-            Reflections reflections = new Reflections("ednel.eda.aggregators");
-            Set<Class<? extends Aggregator>> allClasses = reflections.getSubTypesOf(Aggregator.class);
-            for (Iterator<Class<? extends Aggregator>> it = allClasses.iterator(); it.hasNext(); ) {
-                Class<? extends Aggregator> agg = it.next();
-                String[] splitted = agg.getName().split("\\.");
-                String agg_name = splitted[splitted.length - 1];
-                Individual.aggregatorClasses.put(agg_name, agg);
-            }
-        }
-        return Individual.aggregatorClasses;
-
-    }
-
     /**
      * Returns a copy of this individual's characteristics.
      */
@@ -398,6 +679,37 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
         return this.aggregator.aggregateProba(this.orderedClassifiers, batch);
     }
 
+    /**
+     * Returns the predictions of each base classifier for a batch of instances.
+     *
+     * @param batch Instances to be classified
+     * @return An array with the predictions of each base classifier, in the same order of classifiers used by the
+     * aggregator; entries of inactive classifiers are null.
+     */
+    public double[][][] baseDistributionsForInstances(Instances batch) throws Exception {
+        double[][][] dists = new double[this.orderedClassifiers.length][][];
+        for(int i = 0; i < this.orderedClassifiers.length; i++) {
+            if(this.orderedClassifiers[i] != null) {
+                dists[i] = this.orderedClassifiers[i].distributionsForInstances(batch);
+            }
+        }
+        return dists;
+    }
+
+    /**
+     * Whether the aggregator of this individual makes use of out-of-fold predictions of base classifiers.
+     */
+    public boolean usesOutOfFoldPredictions() {
+        return this.aggregator != null && this.aggregator.usesOutOfFoldPredictions();
+    }
+
+    /**
+     * Whether the aggregator of this individual can only be trained from out-of-fold predictions of base classifiers.
+     */
+    public boolean requiresOutOfFoldPredictions() {
+        return this.aggregator != null && this.aggregator.requiresOutOfFoldPredictions();
+    }
+
     @Override
     public String[] getOptions() {
         ArrayList<String> options = new ArrayList<>();
@@ -671,5 +983,55 @@ public class Individual extends AbstractClassifier implements OptionHandler, Sum
     public String getOptionString() {
         return option_string;
     }
+
+    /**
+     * Returns a key that uniquely identifies the configuration of this individual, regardless of the order in
+     * which its options were sampled. Two individuals with the same key train the exact same models.
+     */
+    public String getConfigurationKey() {
+        return new TreeMap<>(this.optionTable).toString();
+    }
+
+    /**
+     * Returns a copy of this individual already trained on the learning set, or null if this individual was
+     * never evaluated on the validation set.
+     */
+    public Individual getLearnSetModel() {
+        return this.learnSetModel;
+    }
+
+    public void setLearnSetModel(Individual learnSetModel) {
+        this.learnSetModel = learnSetModel;
+    }
+
+    /**
+     * Sets the out-of-fold predictions used for setting competences of the aggregator whenever this individual is
+     * trained, instead of setting them from the training data.
+     *
+     * @param aggregator An aggregator with competences set from predictions, used by this individual (but not by its
+     *                   copies) as long as the same base classifiers are trained
+     * @param predictions Out-of-fold predictions the competences of aggregator were set from. Must not be modified
+     *                    afterwards
+     */
+    public void setOutOfFoldAggregator(Aggregator aggregator, OutOfFoldPredictions predictions) {
+        boolean[] classifiers = new boolean[this.orderedClassifiers.length];
+        for(int i = 0; i < classifiers.length; i++) {
+            classifiers[i] = predictions.hasDistributions(i);
+        }
+        this.outOfFoldPredictions = predictions;
+        this.outOfFoldClassifiers = classifiers;
+        this.outOfFoldAggregator = aggregator;
+    }
+
+    /**
+     * Creates a new, untrained instance of the aggregator of this individual.
+     */
+    public Aggregator newAggregator() {
+        return AggregatorRegistry.newInstance(this.aggregatorName);
+    }
+
+    public int getNumberOfClassifierSlots() {
+        return this.orderedClassifiers.length;
+    }
 }
 
@@ -0,0 +1,243 @@
+package ednel.eda.individual;
+
+import ednel.classifiers.trees.SimpleCart;
+import weka.attributeSelection.ASSearch;
+import weka.attributeSelection.BestFirst;
+import weka.attributeSelection.GreedyStepwise;
+import weka.classifiers.rules.DecisionTable;
+import weka.classifiers.rules.JRip;
+import weka.classifiers.rules.PART;
+import weka.classifiers.trees.J48;
+import weka.core.SelectedTag;
+
+import java.security.InvalidParameterException;
+import java.util.HashMap;
+
+/**
+ * Creates base classifiers directly from the characteristics of an individual (i.e. the values sampled by the
+ * Dependency Network for each variable), setting hyper-parameters through setters instead of building and parsing
+ * option strings.
+ *
+ * The semantics of each variable follow resources/options.json, and invalid combinations of hyper-parameters are
+ * rejected with the same checks performed by each classifier's setOptions method, so that an individual is valid
+ * under this path if and only if it is valid when built from its option table.
+ */
+public class LearnerFactory {
+
+    /**
+     * Whether a variable was sampled (i.e. has a value other than null).
+     */
+    private static boolean isSet(HashMap<String, String> characteristics, String variableName) {
+        return !String.valueOf(characteristics.get(variableName)).equals("null");
+    }
+
+    private static boolean getBoolean(HashMap<String, String> characteristics, String variableName, boolean defaultValue) {
+        if(!isSet(characteristics, variableName)) {
+            return defaultValue;
+        }
+        String value = characteristics.get(variableName).toLowerCase();
+        if(value.equals("true")) {
+            return true;
+        } else if(value.equals("false")) {
+            return false;
+        }
+        throw new InvalidParameterException(String.format("invalid value for %s: %s", variableName, value));
+    }
+
+    private static int getInteger(HashMap<String, String> characteristics, String variableName, int defaultValue) {
+        if(!isSet(characteristics, variableName)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(characteristics.get(variableName));
+        } catch(NumberFormatException e) {
+            throw new InvalidParameterException(String.format(
+                    "invalid value for %s: %s", variableName, characteristics.get(variableName)
+            ));
+        }
+    }
+
+    private static double getDouble(HashMap<String, String> characteristics, String variableName, double defaultValue) {
+        if(!isSet(characteristics, variableName)) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(characteristics.get(variableName));
+        } catch(NumberFormatException e) {
+            throw new InvalidParameterException(String.format(
+                    "invalid value for %s: %s", variableName, characteristics.get(variableName)
+            ));
+        }
+    }
+
+    /**
+     * Whether an algorithm is part of the ensemble described by characteristics.
+     */
+    public static boolean isPresent(HashMap<String, String> characteristics, String algorithmName) {
+        return getBoolean(characteristics, algorithmName, false);
+    }
+
+    /**
+     * Returns the pruning strategy of J48 or PART: either unpruned, reducedErrorPruning, confidenceFactor or null.
+     */
+    private static String getPruning(HashMap<String, String> characteristics, String algorithmName) {
+        String pruning = String.valueOf(characteristics.get(algorithmName + "_pruning"));
+        switch(pruning) {
+            case "unpruned":
+            case "reducedErrorPruning":
+            case "confidenceFactor":
+            case "null":
+                return pruning;
+            default:
+                throw new InvalidParameterException(String.format("invalid pruning for %s: %s", algorithmName, pruning));
+        }
+    }
+
+    /**
+     * Returns the confidence factor of J48 or PART, mimicking the checks in their setOptions methods.
+     */
+    private static float getConfidenceFactor(HashMap<String, String> characteristics, String algorithmName) {
+        if(!getPruning(characteristics, algorithmName).equals("confidenceFactor")) {
+            return 0.25f;
+        }
+        float confidenceFactor = (float)getDouble(characteristics, algorithmName + "_confidenceFactorValue", Double.NaN);
+        if(!(confidenceFactor > 0 && confidenceFactor < 1)) {
+            throw new InvalidParameterException("CF has to be greater than zero and smaller than one!");
+        }
+        return confidenceFactor;
+    }
+
+    /**
+     * Returns the number of folds for reduced error pruning of J48 or PART, mimicking the checks in their setOptions
+     * methods.
+     */
+    private static int getNumFolds(HashMap<String, String> characteristics, String algorithmName) {
+        if(!isSet(characteristics, algorithmName + "_numFolds")) {
+            return 3;
+        }
+        if(!getPruning(characteristics, algorithmName).equals("reducedErrorPruning")) {
+            throw new InvalidParameterException(
+                    "Setting the number of folds only makes sense for reduced error pruning."
+            );
+        }
+        return getInteger(characteristics, algorithmName + "_numFolds", 3);
+    }
+
+    public static J48 newJ48(HashMap<String, String> characteristics) {
+        String pruning = getPruning(characteristics, "J48");
+
+        boolean unpruned = pruning.equals("unpruned");
+        boolean subtreeRaising = getBoolean(characteristics, "J48_subtreeRaising", true);
+        if(unpruned && !subtreeRaising) {
+            throw new InvalidParameterException("Subtree raising doesn't need to be unset for unpruned tree!");
+        }
+
+        J48 j48 = new J48();
+        j48.setUnpruned(unpruned);
+        j48.setReducedErrorPruning(pruning.equals("reducedErrorPruning"));
+        j48.setConfidenceFactor(getConfidenceFactor(characteristics, "J48"));
+        j48.setNumFolds(getNumFolds(characteristics, "J48"));
+        j48.setSeed(1);
+        j48.setSubtreeRaising(subtreeRaising);
+        j48.setBinarySplits(getBoolean(characteristics, "J48_binarySplits", false));
+        j48.setUseMDLcorrection(getBoolean(characteristics, "J48_useMDLcorrection", true));
+        j48.setUseLaplace(getBoolean(characteristics, "J48_useLaplace", false));
+        j48.setDoNotMakeSplitPointActualValue(getBoolean(characteristics, "J48_doNotMakeSplitPointActualValue", false));
+        j48.setCollapseTree(getBoolean(characteristics, "J48_collapseTree", true));
+        j48.setMinNumObj(getInteger(characteristics, "J48_minNumObj", 2));
+        return j48;
+    }
+
+    public static PART newPART(HashMap<String, String> characteristics) {
+        String pruning = getPruning(characteristics, "PART");
+
+        PART part = new PART();
+        part.setUnpruned(pruning.equals("unpruned"));
+        part.setReducedErrorPruning(pruning.equals("reducedErrorPruning"));
+        part.setConfidenceFactor(getConfidenceFactor(characteristics, "PART"));
+        part.setNumFolds(getNumFolds(characteristics, "PART"));
+        part.setSeed(1);
+        part.setBinarySplits(getBoolean(characteristics, "PART_binarySplits", false));
+        part.setUseMDLcorrection(getBoolean(characteristics, "PART_useMDLcorrection", true));
+        part.setDoNotMakeSplitPointActualValue(getBoolean(characteristics, "PART_doNotMakeSplitPointActualValue", false));
+        part.setMinNumObj(getInteger(characteristics, "PART_minNumObj", 2));
+        return part;
+    }
+
+    public static JRip newJRip(HashMap<String, String> characteristics) {
+        JRip jrip = new JRip();
+        jrip.setFolds(getInteger(characteristics, "JRip_folds", 3));
+        jrip.setOptimizations(getInteger(characteristics, "JRip_optimizations", 2));
+        jrip.setUsePruning(getBoolean(characteristics, "JRip_usePruning", true));
+        jrip.setCheckErrorRate(getBoolean(characteristics, "JRip_checkErrorRate", true));
+        jrip.setMinNo(getDouble(characteristics, "JRip_minNo", 2.0));
+        return jrip;
+    }
+
+    public static SimpleCart newSimpleCart(HashMap<String, String> characteristics) {
+        SimpleCart simpleCart = new SimpleCart();
+        simpleCart.setUsePrune(getBoolean(characteristics, "SimpleCart_usePrune", true));
+        simpleCart.setHeuristic(getBoolean(characteristics, "SimpleCart_heuristic", true));
+        simpleCart.setUseOneSE(getBoolean(characteristics, "SimpleCart_useOneSE", false));
+        simpleCart.setMinNumObj(getDouble(characteristics, "SimpleCart_minNumObj", 2));
+        simpleCart.setNumFoldsPruning(getInteger(characteristics, "SimpleCart_numFoldsPruning", 5));
+        simpleCart.setNumBins(getInteger(characteristics, "SimpleCart_numBins", 0));
+        simpleCart.setSizePer(1);
+        simpleCart.setSeed(1);
+        return simpleCart;
+    }
+
+    public static DecisionTable newDecisionTable(HashMap<String, String> characteristics) {
+        DecisionTable decisionTable = new DecisionTable();
+
+        if(isSet(characteristics, "DecisionTable_evaluationMeasure")) {
+            int measure;
+            switch(characteristics.get("DecisionTable_evaluationMeasure")) {
+                case "acc":
+                    measure = DecisionTable.EVAL_ACCURACY;
+                    break;
+                case "rmse":
+                    measure = DecisionTable.EVAL_RMSE;
+                    break;
+                case "mae":
+                    measure = DecisionTable.EVAL_MAE;
+                    break;
+                case "auc":
+                    measure = DecisionTable.EVAL_AUC;
+                    break;
+                default:
+                    throw new InvalidParameterException("Invalid evaluation measure for DecisionTable");
+            }
+            decisionTable.setEvaluationMeasure(new SelectedTag(measure, DecisionTable.TAGS_EVALUATION));
+        }
+        decisionTable.setUseIBk(getBoolean(characteristics, "DecisionTable_useIBk", false));
+        decisionTable.setCrossVal(getInteger(characteristics, "DecisionTable_crossVal", 1));
+
+        String searchName = String.valueOf(characteristics.get("DecisionTable_search"));
+        ASSearch search;
+        if(searchName.equals(BestFirst.class.getName())) {
+            BestFirst bestFirst = new BestFirst();
+            bestFirst.setDirection(new SelectedTag(
+                    getInteger(characteristics, "BestFirst_direction", 1), BestFirst.TAGS_SELECTION
+            ));
+            try {
+                bestFirst.setSearchTermination(getInteger(characteristics, "BestFirst_searchTermination", 5));
+            } catch(Exception e) {
+                throw new InvalidParameterException("Exception found in search procedure BestFirst: " + e.getMessage());
+            }
+            search = bestFirst;
+        } else if(searchName.equals(GreedyStepwise.class.getName())) {
+            GreedyStepwise greedyStepwise = new GreedyStepwise();
+            greedyStepwise.setSearchBackwards(getBoolean(characteristics, "GreedyStepwise_searchBackwards", false));
+            greedyStepwise.setConservativeForwardSelection(getBoolean(
+                    characteristics, "GreedyStepwise_conservativeForwardSelection", false
+            ));
+            search = greedyStepwise;
+        } else {
+            throw new InvalidParameterException("Search procedure for DecisionTable not found!");
+        }
+        decisionTable.setSearch(search);
+
+        return decisionTable;
+    }
+}
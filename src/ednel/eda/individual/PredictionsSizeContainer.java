@@ -5,9 +5,17 @@ import java.util.ArrayList;
 public class PredictionsSizeContainer {
     protected int numberOfRules;
     protected ArrayList<String> lines;
+    /** Predictions of each base classifier on the same instances, or null if not collected. */
+    protected double[][][] baseDistributions;
+
     public PredictionsSizeContainer(int numberOfRules, ArrayList<String> lines) {
+        this(numberOfRules, lines, null);
+    }
+
+    public PredictionsSizeContainer(int numberOfRules, ArrayList<String> lines, double[][][] baseDistributions) {
         this.numberOfRules = numberOfRules;
         this.lines = lines;
+        this.baseDistributions = baseDistributions;
     }
 
     public int getNumberOfRules() {
@@ -17,4 +25,8 @@ public class PredictionsSizeContainer {
     public ArrayList<String> getLines() {
         return lines;
     }
+
+    public double[][][] getBaseDistributions() {
+        return baseDistributions;
+    }
 }
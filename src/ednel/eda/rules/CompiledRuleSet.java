@@ -0,0 +1,164 @@
+package ednel.eda.rules;
+
+import ednel.utils.operators.AbstractOperator;
+import weka.core.Instances;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A set of weighted rules compiled into parallel primitive arrays, for voting on batches of instances.
+ *
+ * Conditions of all rules are laid out contiguously (attribute index, opcode, threshold); the conditions of the r-th
+ * rule are those in the range [ruleStart[r], ruleStart[r + 1]). At prediction time, the attributes tested by any rule
+ * are extracted once from the batch into columns, and each rule is evaluated over the whole batch one condition at a
+ * time, switching on operator opcodes, which avoids both virtual calls to operators and repeated calls to
+ * Instance.value.
+ *
+ * Voting yields exactly the same results as evaluating {@link ExtractedRule#covers(weka.core.Instance)} for every
+ * rule and instance, including the treatment of missing values.
+ */
+public class CompiledRuleSet implements Serializable {
+    private final int n_rules;
+
+    /** Index of the first condition of each rule; has n_rules + 1 entries. */
+    private final int[] ruleStart;
+    /** Class value predicted by each rule. */
+    private final int[] ruleClass;
+    /** Weight of the vote of each rule. */
+    private final double[] ruleWeight;
+
+    /** Column (in the array of extracted columns) of the attribute tested by each condition. */
+    private final int[] condColumn;
+    private final byte[] condOpcode;
+    private final double[] condThreshold;
+    /** Value used in place of missing values for each condition. */
+    private final double[] condMissingValue;
+
+    /** Index of the attribute extracted into each column. */
+    private final int[] columnAttribute;
+
+    /**
+     * Compiles a set of rules.
+     *
+     * @param rules Rules, in the order in which they vote.
+     * @param weights Weight of the vote of each rule.
+     */
+    public CompiledRuleSet(List<ExtractedRule> rules, List<Double> weights) {
+        this.n_rules = rules.size();
+
+        this.ruleStart = new int[this.n_rules + 1];
+        this.ruleClass = new int[this.n_rules];
+        this.ruleWeight = new double[this.n_rules];
+
+        int n_conditions = 0;
+        for(int r = 0; r < this.n_rules; r++) {
+            this.ruleStart[r] = n_conditions;
+            n_conditions += rules.get(r).getAttrIndices().length;
+        }
+        this.ruleStart[this.n_rules] = n_conditions;
+
+        this.condColumn = new int[n_conditions];
+        this.condOpcode = new byte[n_conditions];
+        this.condThreshold = new double[n_conditions];
+        this.condMissingValue = new double[n_conditions];
+
+        HashMap<Integer, Integer> columnOfAttribute = new HashMap<>();
+
+        for(int r = 0; r < this.n_rules; r++) {
+            ExtractedRule rule = rules.get(r);
+            this.ruleClass[r] = (int)rule.getConsequent();
+            this.ruleWeight[r] = weights.get(r);
+
+            int[] attrIndices = rule.getAttrIndices();
+            double[] thresholds = rule.getThresholds();
+            byte[] opcodes = rule.getOpcodes();
+
+            for(int j = 0; j < attrIndices.length; j++) {
+                int c = this.ruleStart[r] + j;
+                if(!columnOfAttribute.containsKey(attrIndices[j])) {
+                    columnOfAttribute.put(attrIndices[j], columnOfAttribute.size());
+                }
+                this.condColumn[c] = columnOfAttribute.get(attrIndices[j]);
+                this.condOpcode[c] = opcodes[j];
+                this.condThreshold[c] = thresholds[j];
+                this.condMissingValue[c] = rule.getMostCommonValueIndices()[attrIndices[j]];
+            }
+        }
+
+        this.columnAttribute = new int[columnOfAttribute.size()];
+        for(Integer attrIndex : columnOfAttribute.keySet()) {
+            this.columnAttribute[columnOfAttribute.get(attrIndex)] = attrIndex;
+        }
+    }
+
+    public int getNumRules() {
+        return this.n_rules;
+    }
+
+    /**
+     * Extracts, from a batch, the columns of attributes tested by the rules. Missing values are NaN.
+     */
+    private double[][] extractColumns(Instances batch) {
+        double[][] columns = new double[this.columnAttribute.length][batch.size()];
+        for(int i = 0; i < batch.size(); i++) {
+            for(int k = 0; k < this.columnAttribute.length; k++) {
+                columns[k][i] = batch.instance(i).value(this.columnAttribute[k]);
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Sums the weighted votes of rules for each instance in a batch.
+     *
+     * @param batch Instances to be classified
+     * @param n_classes Number of classes
+     * @param votesSum Array with batch.size() entries, where the sum of votes (of all classes) of each instance will
+     *                 be written to.
+     * @return A matrix with the sum of votes of each class (columns) for each instance (rows).
+     */
+    public double[][] vote(Instances batch, int n_classes, double[] votesSum) {
+        int n_instances = batch.size();
+        double[][] votes = new double[n_instances][n_classes];
+        double[][] columns = this.extractColumns(batch);
+
+        boolean[] covered = new boolean[n_instances];
+
+        for(int r = 0; r < this.n_rules; r++) {
+            for(int i = 0; i < n_instances; i++) {
+                covered[i] = true;
+            }
+            for(int c = this.ruleStart[r]; c < this.ruleStart[r + 1]; c++) {
+                double[] column = columns[this.condColumn[c]];
+                byte opcode = this.condOpcode[c];
+                double threshold = this.condThreshold[c];
+                boolean thresholdIsMissing = Double.isNaN(threshold);
+                double missingValue = this.condMissingValue[c];
+
+                for(int i = 0; i < n_instances; i++) {
+                    if(covered[i]) {
+                        double value = column[i];
+                        if(Double.isNaN(value)) {
+                            if(thresholdIsMissing) {
+                                continue;  // passes
+                            }
+                            value = missingValue;
+                        }
+                        covered[i] = AbstractOperator.evaluate(opcode, value, threshold);
+                    }
+                }
+            }
+            int ruleClass = this.ruleClass[r];
+            double weight = this.ruleWeight[r];
+            for(int i = 0; i < n_instances; i++) {
+                if(covered[i]) {
+                    votes[i][ruleClass] += weight;
+                    votesSum[i] += weight;
+                }
+            }
+        }
+        return votes;
+    }
+}
@@ -2,7 +2,6 @@ package ednel.eda.rules;
 
 import com.sun.org.apache.xpath.internal.operations.Bool;
 import ednel.utils.operators.AbstractOperator;
-import ednel.utils.operators.EqualsAny;
 import org.apache.commons.math3.analysis.function.Exp;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Evaluation;
@@ -11,6 +10,8 @@ import weka.core.Instance;
 import weka.core.Instances;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class ExtractedRule extends Rule {
     private double classIndex;
@@ -20,6 +21,8 @@ public class ExtractedRule extends Rule {
     private int[] attrIndex;
     private double[] thresholds;
     private AbstractOperator[] operators;
+    /** Opcodes of operators, evaluated with {@link AbstractOperator#evaluate(byte, double, double)}. */
+    private byte[] opcodes;
 
     /** Number of classes. */
     private int numClasses;
@@ -38,6 +41,9 @@ public class ExtractedRule extends Rule {
      * instances in case that instance does not have that attribute value */
     private double[] mostCommonValueIndices;
 
+    /** Header of the training data, for describing rules built from conditions. Null for rules parsed from text. */
+    private Instances header;
+
     public ExtractedRule(String line, Instances train_data, double[] mostCommonValueIndices) throws Exception {
         this.mostCommonValueIndices = mostCommonValueIndices;
 
@@ -60,6 +66,84 @@ public class ExtractedRule extends Rule {
         this.grow(train_data);
     }
 
+    /**
+     * Builds a rule directly from its conditions, without parsing any text. The textual description of the rule is
+     * only built if requested.
+     *
+     * @param attrIndex Index of the attribute tested by each condition
+     * @param operators Operator of each condition
+     * @param thresholds Threshold of each condition (index of value, for nominal attributes)
+     * @param classIndex Index of the class value predicted by this rule
+     * @param header Header of the training data. Shared among rules; should not be modified afterwards
+     * @param mostCommonValueIndices Most common values in the training data
+     */
+    public ExtractedRule(int[] attrIndex, AbstractOperator[] operators, double[] thresholds, double classIndex,
+                         Instances header, double[] mostCommonValueIndices) {
+        this.mostCommonValueIndices = mostCommonValueIndices;
+        this.header = header;
+
+        this.attrIndex = attrIndex;
+        this.operators = operators;
+        this.thresholds = thresholds;
+        this.opcodes = new byte[operators.length];
+        for(int i = 0; i < operators.length; i++) {
+            this.opcodes[i] = operators[i].getOpcode();
+        }
+
+        this.classIndex = classIndex;
+        this.classValue = header.classAttribute().value((int)classIndex);
+        this.numClasses = header.classAttribute().numValues();
+
+        this.originalCoverage = Double.NaN;
+        this.originalErrors = Double.NaN;
+
+        this.antecedentsValue = null;
+        this.string = null;
+    }
+
+    /**
+     * Builds the textual description of a rule that was built from its conditions.
+     */
+    private void describe() {
+        StringBuilder antecedents = new StringBuilder();
+        for(int i = 0; i < this.attrIndex.length; i++) {
+            if(i > 0) {
+                antecedents.append(" and ");
+            }
+            String threshold;
+            if(this.header.attribute(this.attrIndex[i]).isNominal()) {
+                threshold = this.header.attribute(this.attrIndex[i]).value((int)this.thresholds[i]);
+            } else {
+                threshold = String.valueOf(this.thresholds[i]);
+            }
+            antecedents.append(String.format(
+                    "%s %s %s",
+                    this.header.attribute(this.attrIndex[i]).name(),
+                    ExtractedRule.getSymbol(this.opcodes[i]),
+                    this.opcodes[i] == AbstractOperator.OP_EQUALS_ANY? "all" : threshold
+            ));
+        }
+        this.antecedentsValue = antecedents.toString();
+        this.string = this.antecedentsValue + ": " + this.classValue;
+    }
+
+    private static String getSymbol(byte opcode) {
+        switch(opcode) {
+            case AbstractOperator.OP_GREATER_THAN:
+                return ">";
+            case AbstractOperator.OP_GREATER_THAN_OR_EQUAL_TO:
+                return ">=";
+            case AbstractOperator.OP_LESS_THAN:
+                return "<";
+            case AbstractOperator.OP_LESS_THAN_OR_EQUAL_TO:
+                return "<=";
+            case AbstractOperator.OP_NOT_EQUAL_TO:
+                return "!=";
+            default:
+                return "=";
+        }
+    }
+
     @Override
     public void grow(Instances data) throws Exception {
 //        String[] parts = this.string.split(":");
@@ -78,6 +162,7 @@ public class ExtractedRule extends Rule {
             this.attrIndex = new int [conditions.length];
             this.thresholds = new double [conditions.length];
             this.operators = new AbstractOperator [conditions.length];
+            this.opcodes = new byte [conditions.length];
 
             for(int i = 0; i < conditions.length; i++) {
                 String[] parted = new String[]{conditions[i].trim()};
@@ -96,10 +181,11 @@ public class ExtractedRule extends Rule {
                 this.attrIndex[i] = attr_index;
 
                 if(!isNominal && parted[1].trim().toLowerCase().equals("all")) {
-                    this.operators[i] = new EqualsAny();
+                    this.operators[i] = AbstractOperator.EQUALS_ANY;
                 } else {
                     this.operators[i] = AbstractOperator.valueOf(op);
                 }
+                this.opcodes[i] = this.operators[i].getOpcode();
                 try {
                     this.thresholds[i] = isNominal? data.attribute(attr_index).indexOfValue(parted[1].trim()) : Double.valueOf(parted[1].trim());
                 } catch(NumberFormatException nfe) {
@@ -111,6 +197,7 @@ public class ExtractedRule extends Rule {
             this.attrIndex = new int[0];
             this.thresholds = new double[0];
             this.operators = new AbstractOperator[0];
+            this.opcodes = new byte[0];
         }
     }
 
@@ -132,8 +219,7 @@ public class ExtractedRule extends Rule {
                 inst_val = datum.value(this.attrIndex[i]);
             }
 
-            AbstractOperator operator = this.operators[i];
-            pass = operator.operate(inst_val, this.thresholds[i]);
+            pass = AbstractOperator.evaluate(this.opcodes[i], inst_val, this.thresholds[i]);
             i += 1;
         }
         return pass;
@@ -155,6 +241,88 @@ public class ExtractedRule extends Rule {
         return covered;
     }
 
+    /**
+     * Returns a canonical description of this rule: conditions are grouped by attribute (in ascending order of
+     * attribute index), inequalities on the same attribute are merged into a single interval, and conditions that
+     * always pass are dropped.
+     *
+     * Two rules extracted from the same training data with the same canonical key cover exactly the same instances
+     * and predict the same class, even if their conditions were written in a different order or with redundant
+     * bounds.
+     *
+     * @return The canonical key of this rule
+     */
+    public String getCanonicalKey() {
+        TreeMap<Integer, ArrayList<Integer>> conditionsPerAttribute = new TreeMap<>();
+        for(int i = 0; i < this.attrIndex.length; i++) {
+            if(!conditionsPerAttribute.containsKey(this.attrIndex[i])) {
+                conditionsPerAttribute.put(this.attrIndex[i], new ArrayList<>());
+            }
+            conditionsPerAttribute.get(this.attrIndex[i]).add(i);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for(Integer attribute : conditionsPerAttribute.keySet()) {
+            double lower = Double.NEGATIVE_INFINITY, upper = Double.POSITIVE_INFINITY;
+            boolean lowerStrict = false, upperStrict = false;
+            TreeSet<Double> equalTo = new TreeSet<>(), notEqualTo = new TreeSet<>();
+            TreeSet<String> others = new TreeSet<>();
+
+            for(int i : conditionsPerAttribute.get(attribute)) {
+                double threshold = this.thresholds[i];
+                byte opcode = this.opcodes[i];
+
+                if(opcode == AbstractOperator.OP_EQUALS_ANY) {
+                    continue;  // always passes
+                }
+                if(Double.isNaN(threshold)) {
+                    // conditions with missing thresholds pass on missing values; they are kept as they are
+                    others.add(String.valueOf(opcode));
+                    continue;
+                }
+                switch(opcode) {
+                    case AbstractOperator.OP_GREATER_THAN:
+                        if(threshold > lower || (threshold == lower && !lowerStrict)) {
+                            lower = threshold;
+                            lowerStrict = true;
+                        }
+                        break;
+                    case AbstractOperator.OP_GREATER_THAN_OR_EQUAL_TO:
+                        if(threshold > lower) {
+                            lower = threshold;
+                            lowerStrict = false;
+                        }
+                        break;
+                    case AbstractOperator.OP_LESS_THAN:
+                        if(threshold < upper || (threshold == upper && !upperStrict)) {
+                            upper = threshold;
+                            upperStrict = true;
+                        }
+                        break;
+                    case AbstractOperator.OP_LESS_THAN_OR_EQUAL_TO:
+                        if(threshold < upper) {
+                            upper = threshold;
+                            upperStrict = false;
+                        }
+                        break;
+                    case AbstractOperator.OP_EQUAL_TO:
+                        equalTo.add(threshold);
+                        break;
+                    case AbstractOperator.OP_NOT_EQUAL_TO:
+                        notEqualTo.add(threshold);
+                        break;
+                    default:
+                        others.add(opcode + ":" + threshold);
+                }
+            }
+            key.append(attribute).append(lowerStrict? "(" : "[").append(lower).append(",").append(upper)
+                    .append(upperStrict? ")" : "]").append("=").append(equalTo).append("!=").append(notEqualTo)
+                    .append(others).append(";");
+        }
+        key.append("->").append(this.classIndex);
+        return key.toString();
+    }
+
     @Override
     public boolean hasAntds() {
         return this.attrIndex.length > 0;
@@ -170,6 +338,9 @@ public class ExtractedRule extends Rule {
     }
 
     public String getAntecedents() {
+        if(this.antecedentsValue == null) {
+            this.describe();
+        }
         return this.antecedentsValue;
     }
 
@@ -178,6 +349,24 @@ public class ExtractedRule extends Rule {
         return this.attrIndex.length;
     }
 
+    /** Indices of the attributes tested by each condition of this rule. */
+    int[] getAttrIndices() {
+        return this.attrIndex;
+    }
+
+    /** Thresholds (or nominal value indices) of each condition of this rule. */
+    double[] getThresholds() {
+        return this.thresholds;
+    }
+
+    byte[] getOpcodes() {
+        return this.opcodes;
+    }
+
+    double[] getMostCommonValueIndices() {
+        return this.mostCommonValueIndices;
+    }
+
 
     /**
      * The quality of a rule is given by its precision * recall over a set of instances for a given class.
@@ -212,6 +401,9 @@ public class ExtractedRule extends Rule {
 
     @Override
     public String toString() {
+        if(this.string == null) {
+            this.describe();
+        }
         return this.string;
     }
 
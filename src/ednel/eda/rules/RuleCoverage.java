@@ -0,0 +1,191 @@
+package ednel.eda.rules;
+
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Computes coverage and quality of rules over a fixed set of instances using bitsets.
+ *
+ * Each rule is evaluated only once over all instances, yielding a long[] where bit i is set if the rule covers the
+ * i-th instance. Sets of instances still to be analyzed (i.e. activated instances) are bitsets as well, so that the
+ * quality of a rule given a set of activated instances is computed with a few popcounts, instead of evaluating the
+ * rule again for every instance.
+ */
+public class RuleCoverage {
+    /** Number of instances. */
+    private final int n_instances;
+
+    /** Number of longs in each bitset. */
+    private final int n_words;
+
+    /** For each class value, bitset of instances with that class value. */
+    private final long[][] classMasks;
+
+    /** Bitset used for rules that predict a class value not present in the data. */
+    private final long[] emptyMask;
+
+    public RuleCoverage(Instances data) {
+        this.n_instances = data.size();
+        this.n_words = (this.n_instances + 63) >>> 6;
+
+        this.classMasks = new long[data.numClasses()][this.n_words];
+        this.emptyMask = new long[this.n_words];
+
+        for(int i = 0; i < this.n_instances; i++) {
+            if(!data.get(i).classIsMissing()) {
+                int classValue = (int)data.get(i).classValue();
+                this.classMasks[classValue][i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    public int getNumInstances() {
+        return this.n_instances;
+    }
+
+    /**
+     * Returns a bitset with all instances set.
+     */
+    public long[] allInstances() {
+        long[] mask = new long[this.n_words];
+        for(int w = 0; w < this.n_words; w++) {
+            mask[w] = -1L;
+        }
+        if((this.n_instances & 63) != 0) {
+            mask[this.n_words - 1] = (1L << this.n_instances) - 1;
+        }
+        return mask;
+    }
+
+    /**
+     * Evaluates a rule over all instances.
+     *
+     * @param rule Rule to be evaluated
+     * @param data The same instances used to build this object
+     * @return A bitset where the i-th bit is set if the rule covers the i-th instance of data.
+     */
+    public long[] covers(ExtractedRule rule, Instances data) {
+        long[] covered = new long[this.n_words];
+        for(int i = 0; i < this.n_instances; i++) {
+            if(rule.covers(data.get(i))) {
+                covered[i >>> 6] |= 1L << i;
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Evaluates several rules over all instances, in parallel.
+     *
+     * @param rules Rules to be evaluated
+     * @param data The same instances used to build this object
+     * @return The coverage of each rule, in the same order of rules.
+     */
+    public long[][] covers(ExtractedRule[] rules, Instances data) {
+        return IntStream.range(0, rules.length).parallel().mapToObj(
+                j -> this.covers(rules[j], data)
+        ).toArray(long[][]::new);
+    }
+
+    private long[] getClassMask(double classValue) {
+        if(classValue < 0 || classValue >= this.classMasks.length || Double.isNaN(classValue)) {
+            return this.emptyMask;
+        }
+        return this.classMasks[(int)classValue];
+    }
+
+    /**
+     * Computes the quality of a rule from its coverage, with the same counts as
+     * {@link ExtractedRule#quality(Instances, boolean[])}.
+     *
+     * @param covered Coverage of the rule, as returned by {@link #covers(ExtractedRule, Instances)}
+     * @param consequent Class value predicted by the rule
+     * @param activated Bitset of instances that must be analyzed by this rule
+     * @return precision * recall of this rule (on the class that it predicts)
+     */
+    public double quality(long[] covered, double consequent, long[] activated) {
+        long[] classMask = this.getClassMask(consequent);
+
+        int truePositives = 0, falsePositives = 0, notCoveredNegatives = 0;
+        for(int w = 0; w < this.n_words; w++) {
+            long coveredActivated = covered[w] & activated[w];
+            long notCoveredActivated = ~covered[w] & activated[w];
+
+            truePositives += Long.bitCount(coveredActivated & classMask[w]);
+            falsePositives += Long.bitCount(coveredActivated & ~classMask[w]);
+            notCoveredNegatives += Long.bitCount(notCoveredActivated & ~classMask[w]);
+        }
+
+        double precision = (double)truePositives / (double)(truePositives + falsePositives);
+        double recall = (double)truePositives / (double)(truePositives + notCoveredNegatives);
+        return precision * recall;
+    }
+
+    /**
+     * Finds rules that can never be picked by a greedy selection based on {@link #quality(long[], double, long[])}:
+     * rules that do not correctly classify any instance, and rules that predict the same class and cover the same
+     * instances as a rule that comes before them.
+     *
+     * Rules are indexed by their consequent and coverage, so that each rule is compared only to the rules in the
+     * same bucket.
+     *
+     * @param coverages Coverage of each rule
+     * @param consequents Class value predicted by each rule
+     * @return An array where the j-th entry is true if the j-th rule is redundant.
+     */
+    public boolean[] findRedundant(long[][] coverages, double[] consequents) {
+        boolean[] redundant = new boolean[coverages.length];
+        HashMap<Integer, ArrayList<Integer>> index = new HashMap<>();
+
+        for(int j = 0; j < coverages.length; j++) {
+            long[] classMask = this.getClassMask(consequents[j]);
+
+            int truePositives = 0;
+            for(int w = 0; w < this.n_words; w++) {
+                truePositives += Long.bitCount(coverages[j][w] & classMask[w]);
+            }
+            if(truePositives == 0) {
+                redundant[j] = true;
+                continue;
+            }
+
+            int hash = 31 * Arrays.hashCode(coverages[j]) + Double.hashCode(consequents[j]);
+            if(!index.containsKey(hash)) {
+                index.put(hash, new ArrayList<>());
+            }
+            for(int k : index.get(hash)) {
+                if(consequents[k] == consequents[j] && Arrays.equals(coverages[k], coverages[j])) {
+                    redundant[j] = true;
+                    break;
+                }
+            }
+            if(!redundant[j]) {
+                index.get(hash).add(j);
+            }
+        }
+        return redundant;
+    }
+
+    /**
+     * Removes from activated all instances covered and correctly classified by a rule.
+     *
+     * @param activated Bitset of activated instances. Will be modified
+     * @param covered Coverage of the rule
+     * @param consequent Class value predicted by the rule
+     * @return Number of instances that remain activated
+     */
+    public int deactivate(long[] activated, long[] covered, double consequent) {
+        long[] classMask = this.getClassMask(consequent);
+
+        int remaining = 0;
+        for(int w = 0; w < this.n_words; w++) {
+            activated[w] &= ~(covered[w] & classMask[w]);
+            remaining += Long.bitCount(activated[w]);
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,276 @@
+package ednel.eda.rules;
+
+import ednel.utils.operators.AbstractOperator;
+import weka.core.Instance;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * An index over a set of weighted rules, for voting on single instances without checking every rule.
+ *
+ * Each rule is indexed by one of its conditions (its anchor): preferably an equality, otherwise an inequality with a
+ * known threshold. For each attribute, rules anchored on it are kept in a hash table (equalities) and in arrays
+ * sorted by threshold (inequalities), so that a lookup by the value of an instance returns, with a binary search,
+ * the rules whose anchor may pass. This set of candidates is conservative: candidates are then checked with
+ * {@link ExtractedRule#covers(Instance)}. Rules without any indexable condition are always candidates.
+ *
+ * The cost of voting is then proportional to the number of candidate rules, instead of the number of rules.
+ */
+public class RuleIndex implements Serializable {
+
+    /**
+     * Rules anchored on a single attribute.
+     */
+    private static class AttributeIndex implements Serializable {
+        private final int attrIndex;
+
+        /** Rules anchored on an equality, by the value they test. */
+        private final HashMap<Double, int[]> equalTo;
+
+        /** Thresholds of rules anchored on > or >=, in ascending order, and their rules. */
+        private final double[] lowerThresholds;
+        private final int[] lowerRules;
+
+        /** Thresholds of rules anchored on < or <=, in ascending order, and their rules. */
+        private final double[] upperThresholds;
+        private final int[] upperRules;
+
+        /** All rules anchored on this attribute; candidates for instances with a missing value. */
+        private final int[] allRules;
+
+        AttributeIndex(int attrIndex, HashMap<Double, ArrayList<Integer>> equalTo,
+                       ArrayList<double[]> lower, ArrayList<double[]> upper, ArrayList<Integer> allRules) {
+            this.attrIndex = attrIndex;
+
+            this.equalTo = new HashMap<>();
+            for(Double value : equalTo.keySet()) {
+                this.equalTo.put(value, RuleIndex.toArray(equalTo.get(value)));
+            }
+
+            Comparator<double[]> byThreshold = Comparator.comparingDouble(entry -> entry[0]);
+            lower.sort(byThreshold);
+            upper.sort(byThreshold);
+
+            this.lowerThresholds = new double[lower.size()];
+            this.lowerRules = new int[lower.size()];
+            for(int i = 0; i < lower.size(); i++) {
+                this.lowerThresholds[i] = lower.get(i)[0];
+                this.lowerRules[i] = (int)lower.get(i)[1];
+            }
+            this.upperThresholds = new double[upper.size()];
+            this.upperRules = new int[upper.size()];
+            for(int i = 0; i < upper.size(); i++) {
+                this.upperThresholds[i] = upper.get(i)[0];
+                this.upperRules[i] = (int)upper.get(i)[1];
+            }
+            this.allRules = RuleIndex.toArray(allRules);
+        }
+
+        /**
+         * Adds to candidates the rules whose anchor may pass for a given instance.
+         */
+        void lookup(Instance instance, ArrayList<Integer> candidates) {
+            if(instance.isMissing(this.attrIndex)) {
+                // missing values are replaced by each rule; anything may pass
+                for(int r : this.allRules) {
+                    candidates.add(r);
+                }
+                return;
+            }
+            double value = instance.value(this.attrIndex);
+
+            int[] equal = this.equalTo.get(value + 0.0);  // + 0.0 turns -0.0 into 0.0
+            if(equal != null) {
+                for(int r : equal) {
+                    candidates.add(r);
+                }
+            }
+            // value > threshold or value >= threshold: thresholds up to value
+            int end = RuleIndex.upperBound(this.lowerThresholds, value);
+            for(int i = 0; i < end; i++) {
+                candidates.add(this.lowerRules[i]);
+            }
+            // value < threshold or value <= threshold: thresholds from value on
+            int start = RuleIndex.lowerBound(this.upperThresholds, value);
+            for(int i = start; i < this.upperThresholds.length; i++) {
+                candidates.add(this.upperRules[i]);
+            }
+        }
+    }
+
+    private final ExtractedRule[] rules;
+    private final double[] weights;
+
+    private final AttributeIndex[] attributeIndices;
+
+    /** Rules without any indexable condition. */
+    private final int[] unindexed;
+
+    /**
+     * Builds an index over a set of rules.
+     *
+     * @param rules Rules, in the order in which they vote.
+     * @param weights Weight of the vote of each rule.
+     */
+    public RuleIndex(List<ExtractedRule> rules, List<Double> weights) {
+        this.rules = rules.toArray(new ExtractedRule[0]);
+        this.weights = new double[rules.size()];
+        for(int r = 0; r < rules.size(); r++) {
+            this.weights[r] = weights.get(r);
+        }
+
+        TreeMap<Integer, HashMap<Double, ArrayList<Integer>>> equalTo = new TreeMap<>();
+        TreeMap<Integer, ArrayList<double[]>> lower = new TreeMap<>();
+        TreeMap<Integer, ArrayList<double[]>> upper = new TreeMap<>();
+        TreeMap<Integer, ArrayList<Integer>> all = new TreeMap<>();
+        ArrayList<Integer> unindexed = new ArrayList<>();
+
+        for(int r = 0; r < this.rules.length; r++) {
+            int anchor = RuleIndex.findAnchor(this.rules[r]);
+            if(anchor == -1) {
+                unindexed.add(r);
+                continue;
+            }
+            int attrIndex = this.rules[r].getAttrIndices()[anchor];
+            double threshold = this.rules[r].getThresholds()[anchor];
+
+            if(!all.containsKey(attrIndex)) {
+                all.put(attrIndex, new ArrayList<>());
+                equalTo.put(attrIndex, new HashMap<>());
+                lower.put(attrIndex, new ArrayList<>());
+                upper.put(attrIndex, new ArrayList<>());
+            }
+            all.get(attrIndex).add(r);
+
+            switch(this.rules[r].getOpcodes()[anchor]) {
+                case AbstractOperator.OP_EQUAL_TO:
+                    if(!equalTo.get(attrIndex).containsKey(threshold + 0.0)) {
+                        equalTo.get(attrIndex).put(threshold + 0.0, new ArrayList<>());
+                    }
+                    equalTo.get(attrIndex).get(threshold + 0.0).add(r);
+                    break;
+                case AbstractOperator.OP_GREATER_THAN:
+                case AbstractOperator.OP_GREATER_THAN_OR_EQUAL_TO:
+                    lower.get(attrIndex).add(new double[]{threshold, r});
+                    break;
+                default:
+                    upper.get(attrIndex).add(new double[]{threshold, r});
+            }
+        }
+
+        this.attributeIndices = new AttributeIndex[all.size()];
+        int counter = 0;
+        for(Integer attrIndex : all.keySet()) {
+            this.attributeIndices[counter] = new AttributeIndex(
+                    attrIndex, equalTo.get(attrIndex), lower.get(attrIndex), upper.get(attrIndex), all.get(attrIndex)
+            );
+            counter += 1;
+        }
+        this.unindexed = RuleIndex.toArray(unindexed);
+    }
+
+    /**
+     * Chooses the condition by which a rule is indexed: the first equality, or else the first inequality, with a
+     * known threshold.
+     *
+     * @return Index of the condition, or -1 if the rule has no indexable condition.
+     */
+    private static int findAnchor(ExtractedRule rule) {
+        byte[] opcodes = rule.getOpcodes();
+        double[] thresholds = rule.getThresholds();
+
+        int inequality = -1;
+        for(int i = 0; i < opcodes.length; i++) {
+            if(Double.isNaN(thresholds[i])) {
+                continue;
+            }
+            switch(opcodes[i]) {
+                case AbstractOperator.OP_EQUAL_TO:
+                    return i;
+                case AbstractOperator.OP_GREATER_THAN:
+                case AbstractOperator.OP_GREATER_THAN_OR_EQUAL_TO:
+                case AbstractOperator.OP_LESS_THAN:
+                case AbstractOperator.OP_LESS_THAN_OR_EQUAL_TO:
+                    if(inequality == -1) {
+                        inequality = i;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return inequality;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for(int i = 0; i < list.size(); i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Index of the first element of a sorted array greater than value.
+     */
+    private static int upperBound(double[] sorted, double value) {
+        int low = 0, high = sorted.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first element of a sorted array greater than or equal to value.
+     */
+    private static int lowerBound(double[] sorted, double value) {
+        int low = 0, high = sorted.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int getNumRules() {
+        return this.rules.length;
+    }
+
+    /**
+     * Sums the weighted votes of rules that cover an instance. Rules vote in the order they were given to the index.
+     *
+     * @param instance Instance to be classified
+     * @param votes Array where the sum of votes of each class will be added to
+     * @return The sum of votes of all classes
+     */
+    public double vote(Instance instance, double[] votes) {
+        ArrayList<Integer> candidates = new ArrayList<>();
+        for(AttributeIndex attributeIndex : this.attributeIndices) {
+            attributeIndex.lookup(instance, candidates);
+        }
+        for(int r : this.unindexed) {
+            candidates.add(r);
+        }
+        Collections.sort(candidates);
+
+        double votesSum = 0.0;
+        for(int r : candidates) {
+            if(this.rules[r].covers(instance)) {
+                votes[(int)this.rules[r].getConsequent()] += this.weights[r];
+                votesSum += this.weights[r];
+            }
+        }
+        return votesSum;
+    }
+}
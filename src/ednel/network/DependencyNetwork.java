@@ -2,6 +2,7 @@ package ednel.network;
 
 import ednel.eda.individual.*;
 import ednel.network.variables.AbstractVariable;
+import ednel.network.variables.VariableSnapshot;
 import org.apache.commons.math3.random.MersenneTwister;
 import org.reflections.Reflections;
 import org.reflections.scanners.ResourcesScanner;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static ednel.utils.MyMathUtils.lfactorial;
 import static java.lang.Math.exp;
@@ -52,6 +54,9 @@ public class DependencyNetwork {
     private OptionHandler optionHandler;
     private final int timeout_individual;
 
+    /** Last published snapshot of this network. Replaced atomically after each update. */
+    private final AtomicReference<NetworkSnapshot> snapshot;
+
     public DependencyNetwork(
             MersenneTwister mt, int burn_in, int thinning_factor, boolean no_cycles,
             double learningRate, int max_parents, int delay_structure_learning, int timeout_individual
@@ -84,6 +89,28 @@ public class DependencyNetwork {
         this.readVariablesFromFiles();
         this.graph = DependencyNetwork.generateDeterministicGraph(this.variables);
         this.samplingOrder = DependencyNetwork.inferSamplingOrder(this.graph);
+
+        this.snapshot = new AtomicReference<>();
+        this.publishSnapshot();
+    }
+
+    /**
+     * Takes a snapshot of the current state of this network and publishes it, replacing the previous one.
+     * Readers that already hold the previous snapshot keep using it undisturbed.
+     */
+    private void publishSnapshot() {
+        NetworkSnapshot last = this.snapshot.get();
+        this.snapshot.set(new NetworkSnapshot(
+                last == null? 0 : last.getVersion() + 1, this.samplingOrder, this.variables
+        ));
+    }
+
+    /**
+     * Returns the last published snapshot of this network. The snapshot is immutable, so it can be read by any number
+     * of threads without locking, even while this network is being updated.
+     */
+    public NetworkSnapshot getSnapshot() {
+        return this.snapshot.get();
     }
 
     /**
@@ -344,12 +371,15 @@ public class DependencyNetwork {
     private HashMap<String, HashMap<String, String>> sampleIndividual(HashMap<String, String> lastStart) throws Exception {
         HashMap<String, String> optionTable = new HashMap<>();
 
-        for(String variableName : this.samplingOrder) {
-            String sampledValue = this.variables.get(variableName).conditionalSampling(lastStart);
+        NetworkSnapshot current = this.snapshot.get();
+
+        for(String variableName : current.getSamplingOrder()) {
+            VariableSnapshot variable = current.getVariable(variableName);
+            String sampledValue = variable.conditionalSampling(lastStart, this.mt);
             lastStart.put(variableName, sampledValue);
 
             if(!String.valueOf(sampledValue).equals("null")) {
-                String algorithmName = this.variables.get(variableName).getAlgorithmName();
+                String algorithmName = variable.getAlgorithmName();
                 optionTable = this.optionHandler.handle(optionTable, variableName, algorithmName, sampledValue);
             }
         }
@@ -361,7 +391,7 @@ public class DependencyNetwork {
     }
 
     public Individual[] gibbsSampleAndAssignFitness(
-            HashMap<String, String> lastStart, int sampleSize, FitnessCalculator fc, int seed,
+            HashMap<String, String> lastStart, int sampleSize, FitnessCalculator fc,
             LocalDateTime start, Integer timeout
     ) throws Exception {
         Individual[] individuals = new Individual[sampleSize];
@@ -399,9 +429,9 @@ public class DependencyNetwork {
             // discards because thinning_factor is larger than zero
             if(thinning_counter >= this.thinning_factor) {
                 try {
-                    Individual individual = new Individual(optionTable, lastStart);
+                    Individual individual = Individual.fromSampledState(optionTable, lastStart);
                     individual.setFitness(
-                            fc.evaluateEnsemble(seed, individual, this.timeout_individual, false)
+                            fc.evaluateEnsemble(individual, this.timeout_individual, false)
                     );
 
                     individuals[individual_counter] = individual;
@@ -538,6 +568,8 @@ public class DependencyNetwork {
         this.updateProbabilities(currFittestValues, this.lastFittestValues);
 
         this.samplingOrder = DependencyNetwork.inferSamplingOrder(this.graph);
+
+        this.publishSnapshot();
     }
 
     /**
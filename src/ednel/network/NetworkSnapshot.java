@@ -0,0 +1,50 @@
+package ednel.network;
+
+import ednel.network.variables.AbstractVariable;
+import ednel.network.variables.VariableSnapshot;
+
+import java.util.*;
+
+/**
+ * An immutable, versioned view of a {@link DependencyNetwork}: the sampling order, plus the structure and probability
+ * table of every variable, as they were at the moment the snapshot was published.
+ *
+ * A DependencyNetwork publishes a new snapshot after it is created and after each update; readers (samplers,
+ * loggers) grab the current one with {@link DependencyNetwork#getSnapshot()} and may keep using it for as long as
+ * they want, without locks, while the network is being updated.
+ */
+public final class NetworkSnapshot {
+    /** Number of updates the network went through before this snapshot was taken. */
+    private final long version;
+
+    private final List<String> samplingOrder;
+
+    private final Map<String, VariableSnapshot> variables;
+
+    NetworkSnapshot(long version, ArrayList<String> samplingOrder, HashMap<String, AbstractVariable> variables) {
+        this.version = version;
+        this.samplingOrder = Collections.unmodifiableList(new ArrayList<>(samplingOrder));
+
+        HashMap<String, VariableSnapshot> variablesCopy = new HashMap<>(variables.size());
+        for(String variableName : variables.keySet()) {
+            variablesCopy.put(variableName, variables.get(variableName).snapshot());
+        }
+        this.variables = Collections.unmodifiableMap(variablesCopy);
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public List<String> getSamplingOrder() {
+        return this.samplingOrder;
+    }
+
+    public Map<String, VariableSnapshot> getVariables() {
+        return this.variables;
+    }
+
+    public VariableSnapshot getVariable(String variableName) {
+        return this.variables.get(variableName);
+    }
+}
@@ -4,8 +4,6 @@ import ednel.network.variables.statistics.StatisticsHandler;
 import ednel.utils.Combination;
 import ednel.utils.CombinationNotPresentException;
 import org.apache.commons.math3.distribution.EnumeratedIntegerDistribution;
-import org.apache.commons.math3.exception.MathArithmeticException;
-import org.apache.commons.math3.exception.NotANumberException;
 import org.apache.commons.math3.random.MersenneTwister;
 
 import java.io.BufferedReader;
@@ -109,52 +107,15 @@ public class AbstractVariable {
     }
 
     /**
-     * Samples a new value for this variable, based on conditions.
+     * Samples a new value for this variable, based on conditions. Sampling is implemented once, in
+     * {@link VariableSnapshot#conditionalSampling(HashMap, org.apache.commons.math3.random.RandomGenerator)}; this
+     * method samples from a snapshot of the current state of this variable.
      *
      * @param lastStart Last values from Dependency Network.
      * @return A new value for this variable.
      */
     public String conditionalSampling(HashMap<String, String> lastStart) throws CombinationNotPresentException {
-        // tries to sample a value given probabilistic parent values.
-        // if probabilistic parents are absents from current sample, samples an unconditional value
-
-        // killer move: checks first for deterministic parents. if any is null, then automatically returns null
-        for(String detParent : this.getDeterministicParents()) {
-            if(String.valueOf(lastStart.get(detParent)).equals("null")) {
-                return null;
-            }
-        }
-
-        // otherwise, samples value from probabilistic variables
-        int[] indices = this.getArrayOfIndices(
-                this.table, lastStart,null,false, this.getAllParents()
-        );
-
-        double[] localProbs = new double [indices.length];
-        for(int i = 0; i < localProbs.length; i++) {
-            localProbs[i] = this.probabilities.get(indices[i]);
-        }
-        // samples values based on probabilities
-        try {
-            EnumeratedIntegerDistribution localDist = new EnumeratedIntegerDistribution(mt, indices, localProbs);
-            String value = this.uniqueValues.get(this.indices.get(localDist.sample()));
-            if(!String.valueOf(value).equals("null")) {
-                return value;
-            }
-        } catch(MathArithmeticException | NotANumberException mae) {
-            System.err.println("Variable: " + this.name + " value: " + lastStart.get(this.name));
-            System.err.println("probabilistic parents: ");
-            for(String parent : this.prob_parents) {
-                System.err.println("\t" + parent + " value: " + lastStart.get(parent));
-            }
-            System.err.println("Indices in probability table:");
-            for(int index : indices) {
-                System.err.println(index);
-            }
-            System.err.println(this.toString());
-            throw mae;
-        }
-        return null;
+        return this.snapshot().conditionalSampling(lastStart, this.mt);
     }
 
     /**
@@ -639,6 +600,18 @@ public class AbstractVariable {
         return pairwise;
     }
 
+    /**
+     * Takes an immutable snapshot of the current structure and probabilities of this variable.
+     *
+     * @return A VariableSnapshot that is not affected by subsequent updates of this variable.
+     */
+    public VariableSnapshot snapshot() {
+        return new VariableSnapshot(
+                this.name, this.det_parents, this.prob_parents, this.all_parents,
+                this.uniqueValues, this.indices, this.probabilities, this.table
+        );
+    }
+
     public String getName() {
         return this.name;
     }
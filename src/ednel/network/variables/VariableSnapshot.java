@@ -0,0 +1,215 @@
+package ednel.network.variables;
+
+import ednel.utils.CombinationNotPresentException;
+import org.apache.commons.math3.distribution.EnumeratedIntegerDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the structure and probability table of an {@link AbstractVariable}.
+ *
+ * Snapshots are taken by {@link AbstractVariable#snapshot()} after each update of the Dependency Network, and are
+ * never modified afterwards. As such, they can be read (and sampled from) by any number of threads without locking,
+ * while the variable they were taken from is being updated.
+ */
+public final class VariableSnapshot {
+    private final String name;
+
+    private final Set<String> det_parents;
+    private final Set<String> prob_parents;
+    private final Set<String> all_parents;
+
+    private final List<String> uniqueValues;
+
+    /** Indices that point to uniqueValues, one for each entry in the probability table. */
+    private final int[] indices;
+
+    /** Probabilities associated with each entry in the probability table. */
+    private final double[] probabilities;
+
+    /** Probability table. Each key is a variable name, and each value a dictionary from values to table entries. */
+    private final Map<String, Map<String, int[]>> table;
+
+    VariableSnapshot(
+            String name, HashSet<String> det_parents, HashSet<String> prob_parents, HashSet<String> all_parents,
+            ArrayList<String> uniqueValues, ArrayList<Integer> indices, ArrayList<Double> probabilities,
+            HashMap<String, HashMap<String, ArrayList<Integer>>> table) {
+
+        this.name = name;
+        this.det_parents = Collections.unmodifiableSet(new HashSet<>(det_parents));
+        this.prob_parents = Collections.unmodifiableSet(new HashSet<>(prob_parents));
+        this.all_parents = Collections.unmodifiableSet(new HashSet<>(all_parents));
+        this.uniqueValues = Collections.unmodifiableList(new ArrayList<>(uniqueValues));
+
+        this.indices = new int [indices.size()];
+        for(int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = indices.get(i);
+        }
+        this.probabilities = new double [probabilities.size()];
+        for(int i = 0; i < this.probabilities.length; i++) {
+            this.probabilities[i] = probabilities.get(i);
+        }
+
+        HashMap<String, Map<String, int[]>> tableCopy = new HashMap<>(table.size());
+        for(String variableName : table.keySet()) {
+            HashMap<String, ArrayList<Integer>> variableValues = table.get(variableName);
+            HashMap<String, int[]> valuesCopy = new HashMap<>(variableValues.size());
+            for(String value : variableValues.keySet()) {
+                ArrayList<Integer> entries = variableValues.get(value);
+                int[] entriesCopy = new int [entries.size()];
+                for(int i = 0; i < entriesCopy.length; i++) {
+                    entriesCopy[i] = entries.get(i);
+                }
+                valuesCopy.put(value, entriesCopy);
+            }
+            tableCopy.put(variableName, Collections.unmodifiableMap(valuesCopy));
+        }
+        this.table = Collections.unmodifiableMap(tableCopy);
+    }
+
+    /**
+     * Samples a new value for this variable, based on conditions. Reads only from this snapshot.
+     *
+     * @param lastStart Last values from Dependency Network.
+     * @param rng Random number generator used for sampling. Must not be shared between threads.
+     * @return A new value for this variable.
+     * @throws CombinationNotPresentException If the combination of parent values is not present in the probability
+     * table.
+     */
+    public String conditionalSampling(HashMap<String, String> lastStart, RandomGenerator rng) throws CombinationNotPresentException {
+        // killer move: checks first for deterministic parents. if any is null, then automatically returns null
+        for(String detParent : this.det_parents) {
+            if(String.valueOf(lastStart.get(detParent)).equals("null")) {
+                return null;
+            }
+        }
+
+        int[] localIndices = this.getArrayOfIndices(lastStart);
+
+        double[] localProbs = new double [localIndices.length];
+        for(int i = 0; i < localProbs.length; i++) {
+            localProbs[i] = this.probabilities[localIndices[i]];
+        }
+        // samples values based on probabilities
+        EnumeratedIntegerDistribution localDist = new EnumeratedIntegerDistribution(rng, localIndices, localProbs);
+        String value = this.uniqueValues.get(this.indices[localDist.sample()]);
+        if(!String.valueOf(value).equals("null")) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Given values for parent variables of this variable, gets the entries of the probability table that correspond
+     * to those values, in ascending order.
+     *
+     * @param conditions A HashMap where each entry is a parent name, and each value its value in the Gibbs sampling
+     *                   process.
+     * @return An array of indices
+     * @throws CombinationNotPresentException If the combination of values is not present in the probability table.
+     */
+    private int[] getArrayOfIndices(HashMap<String, String> conditions) throws CombinationNotPresentException {
+        // counts, for each entry in the table, how many parents agree with it
+        int[] votes = new int [this.probabilities.length];
+        for(String parentName : this.all_parents) {
+            int[] entries = this.table.get(parentName).get(String.valueOf(conditions.get(parentName)));
+            if(entries == null) {
+                votes = null;
+                break;
+            }
+            for(int entry : entries) {
+                votes[entry] += 1;
+            }
+        }
+
+        int n_matches = 0;
+        if(votes != null) {
+            for(int vote : votes) {
+                if(vote == this.all_parents.size()) {
+                    n_matches += 1;
+                }
+            }
+        }
+        if(n_matches == 0) {
+            StringBuilder concatenated = new StringBuilder("");
+            for(String key : conditions.keySet()) {
+                concatenated.append(String.format("%s=%s ", key, conditions.get(key)));
+            }
+            throw new CombinationNotPresentException(
+                    "combination of values not present in probability table: " + concatenated.toString()
+            );
+        }
+
+        int[] localIndices = new int [n_matches];
+        int counter = 0;
+        for(int i = 0; i < votes.length; i++) {
+            if(votes[i] == this.all_parents.size()) {
+                localIndices[counter] = i;
+                counter += 1;
+            }
+        }
+        return localIndices;
+    }
+
+    /**
+     * Same as {@link AbstractVariable#getTablePrettyPrint()}, but computed from this snapshot.
+     *
+     * @return A dictionary where each key is a combination of values (e.g. "PART=true,PART_pruning=false") and
+     * each value the probability of that combination.
+     */
+    public HashMap<String, Double> getTablePrettyPrint() {
+        String[] lines = new String[this.indices.length];
+        Arrays.fill(lines, "");
+
+        Object[][] toProcess = {det_parents.toArray(), prob_parents.toArray(), new String[]{name}};
+
+        for(Object[] current : toProcess) {  // iterates over groups of variables
+            for(Object variableName : current) {  // iterates over variables of that group
+                Map<String, int[]> variableValues = this.table.get((String)variableName);
+                for(String variableVal : variableValues.keySet()) {  // iterate over variable values
+                    for(int index : variableValues.get(variableVal)) {
+                        String candidate = String.format(Locale.US, "%s=%s", (String)variableName, variableVal);
+                        lines[index] = lines[index] + (lines[index].length() > 0? "," : "") + candidate;
+                    }
+                }
+            }
+        }
+        HashMap<String, Double> pairwise = new HashMap<>(lines.length);
+        for(int i = 0; i < lines.length; i++) {
+            pairwise.put(lines[i], this.probabilities[i]);
+        }
+        return pairwise;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public String getAlgorithmName() {
+        return AbstractVariable.getAlgorithmName(this.name);
+    }
+
+    public Set<String> getDeterministicParents() {
+        return this.det_parents;
+    }
+
+    public Set<String> getProbabilisticParents() {
+        return this.prob_parents;
+    }
+
+    public Set<String> getAllParents() {
+        return this.all_parents;
+    }
+
+    public List<String> getUniqueValues() {
+        return this.uniqueValues;
+    }
+
+    /**
+     * Returns a copy of the probabilities of this snapshot.
+     */
+    public double[] getProbabilities() {
+        return this.probabilities.clone();
+    }
+}
@@ -5,7 +5,7 @@ import com.google.gson.GsonBuilder;
 import ednel.eda.individual.FitnessCalculator;
 import ednel.eda.individual.Individual;
 import ednel.network.DependencyNetwork;
-import ednel.network.variables.AbstractVariable;
+import ednel.network.variables.VariableSnapshot;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
 import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
 import weka.classifiers.AbstractClassifier;
@@ -21,7 +21,9 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -214,8 +216,11 @@ public class PBILLogger {
         this.currentGenBestValFitness.add(last.getFitness().getValQuality());
 
         if(this.logTest) {
-            Individual copy = new Individual(this.last);
-            copy.buildClassifier(this.learn_data);
+            Individual copy = this.last.getLearnSetModel();
+            if(copy == null) {
+                copy = new Individual(this.last);
+                copy.buildClassifier(this.learn_data);
+            }
             Evaluation tEv = new Evaluation(this.learn_data);
             tEv.evaluateModel(copy, this.test_data);
             this.testFitness.add(FitnessCalculator.getUnweightedAreaUnderROC(tEv));
@@ -225,7 +230,7 @@ public class PBILLogger {
         this.logPopulation(sortedIndices, population);
         this.logDependencyNetworkStructureAndProbabilities(dn);
 
-        ArrayList<String> samplingOrder = dn.getSamplingOrder();
+        List<String> samplingOrder = dn.getSnapshot().getSamplingOrder();
         StringBuilder sb = new StringBuilder("");
         for(String var : samplingOrder) {
             sb.append(var).append(",");
@@ -285,14 +290,13 @@ public class PBILLogger {
 
     private void logDependencyNetworkStructureAndProbabilities(DependencyNetwork dn) {
         if(this.log) {
-            HashMap<String, AbstractVariable> variables = dn.getVariables();
-            Object[] variableNames = variables.keySet().toArray();
+            Map<String, VariableSnapshot> variables = dn.getSnapshot().getVariables();
 
             HashMap<String, HashMap<String, Double>> thisGeneration = new HashMap<>();
 
-            for(Object variableName : variableNames) {
+            for(String variableName : variables.keySet()) {
                 thisGeneration.put(
-                    (String)variableName,
+                    variableName,
                     variables.get(variableName).getTablePrettyPrint()
                 );
             }
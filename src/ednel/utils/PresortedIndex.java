@@ -0,0 +1,148 @@
+package ednel.utils;
+
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Order of the instances of a dataset, sorted by the values of each attribute, for use by tree learners.
+ *
+ * For numeric attributes, instances are sorted in ascending order of values (as in {@link Utils#sort(double[])});
+ * for nominal attributes, instances keep their order in the dataset. In both cases, instances with missing values
+ * are put at the end.
+ *
+ * Sorting is done only once per dataset: the sorted order of any subset of the dataset (e.g. the folds of a
+ * cross-validation) is obtained by filtering the order of the whole dataset with {@link #getSortedIndices(int[])},
+ * which takes linear time, instead of sorting the subset again. Each {@link ednel.data.ColumnarDataset} keeps the
+ * index of its instances, so that learners trained on any view of the same dataset share the same index.
+ */
+public class PresortedIndex {
+    private final int n_instances;
+
+    /** For each attribute, indices of instances in sorted order; empty for the class attribute. */
+    private final int[][] sortedIndices;
+
+    /**
+     * Sorts the instances of a dataset stored by columns.
+     *
+     * @param header Dataset with the attributes and class index of the dataset
+     * @param columns Values of each attribute, in instance order. Arrays are not modified
+     */
+    public PresortedIndex(Instances header, double[][] columns) {
+        this.n_instances = columns.length > 0? columns[0].length : 0;
+        this.sortedIndices = new int[columns.length][];
+
+        for(int j = 0; j < columns.length; j++) {
+            if(j == header.classIndex()) {
+                this.sortedIndices[j] = new int[0];
+            } else if(header.attribute(j).isNominal()) {
+                this.sortedIndices[j] = new int[this.n_instances];
+                int count = 0;
+                for(int i = 0; i < this.n_instances; i++) {
+                    if(!Utils.isMissingValue(columns[j][i])) {
+                        this.sortedIndices[j][count] = i;
+                        count += 1;
+                    }
+                }
+                for(int i = 0; i < this.n_instances; i++) {
+                    if(Utils.isMissingValue(columns[j][i])) {
+                        this.sortedIndices[j][count] = i;
+                        count += 1;
+                    }
+                }
+            } else {
+                this.sortedIndices[j] = Utils.sort(columns[j]);
+            }
+        }
+    }
+
+    public int getNumInstances() {
+        return this.n_instances;
+    }
+
+    /**
+     * Returns, for each attribute, the indices of the instances of a subset in sorted order.
+     *
+     * @param rows Index, in the whole dataset, of each instance of the subset. Instances must not repeat.
+     * @return For each attribute, indices (relative to the subset) of instances of the subset in sorted order.
+     */
+    public int[][] getSortedIndices(int[] rows) {
+        // position of each instance of the dataset in the subset, or -1 if not in the subset
+        int[] positions = new int[this.n_instances];
+        Arrays.fill(positions, -1);
+        for(int i = 0; i < rows.length; i++) {
+            positions[rows[i]] = i;
+        }
+
+        int[][] subset = new int[this.sortedIndices.length][];
+        for(int j = 0; j < this.sortedIndices.length; j++) {
+            if(this.sortedIndices[j].length == 0) {
+                subset[j] = new int[0];
+                continue;
+            }
+            subset[j] = new int[rows.length];
+            int count = 0;
+            for(int row : this.sortedIndices[j]) {
+                if(positions[row] != -1) {
+                    subset[j][count] = positions[row];
+                    count += 1;
+                }
+            }
+        }
+        return subset;
+    }
+
+    /**
+     * Index, in a dataset, of each instance of the training set of a fold, as split by Instances.trainCV (without
+     * randomization).
+     *
+     * @param n_instances Number of instances in the dataset
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return The index of each instance of the training set, in order.
+     */
+    public static int[] trainCVRows(int n_instances, int n_folds, int n_fold) {
+        int first = PresortedIndex.getFoldOffset(n_instances, n_folds, n_fold);
+        int size = PresortedIndex.getFoldSize(n_instances, n_folds, n_fold);
+
+        int[] rows = new int[n_instances - size];
+        int count = 0;
+        for(int i = 0; i < first; i++) {
+            rows[count] = i;
+            count += 1;
+        }
+        for(int i = first + size; i < n_instances; i++) {
+            rows[count] = i;
+            count += 1;
+        }
+        return rows;
+    }
+
+    /**
+     * Index, in a dataset, of each instance of the test set of a fold, as split by Instances.testCV.
+     *
+     * @param n_instances Number of instances in the dataset
+     * @param n_folds Number of folds
+     * @param n_fold Index of the fold
+     * @return The index of each instance of the test set, in order.
+     */
+    public static int[] testCVRows(int n_instances, int n_folds, int n_fold) {
+        int first = PresortedIndex.getFoldOffset(n_instances, n_folds, n_fold);
+        int size = PresortedIndex.getFoldSize(n_instances, n_folds, n_fold);
+
+        int[] rows = new int[size];
+        for(int i = 0; i < size; i++) {
+            rows[i] = first + i;
+        }
+        return rows;
+    }
+
+    private static int getFoldOffset(int n_instances, int n_folds, int n_fold) {
+        return n_fold * (n_instances / n_folds) + Math.min(n_fold, n_instances % n_folds);
+    }
+
+    private static int getFoldSize(int n_instances, int n_folds, int n_fold) {
+        return n_instances / n_folds + (n_fold < n_instances % n_folds? 1 : 0);
+    }
+}
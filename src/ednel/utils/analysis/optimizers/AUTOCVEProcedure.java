@@ -1,5 +1,6 @@
 package ednel.utils.analysis.optimizers;
 
+import ednel.data.DatasetCache;
 import ednel.eda.EDNEL;
 import ednel.eda.individual.FitnessCalculator;
 import ednel.eda.individual.Individual;
@@ -8,7 +9,6 @@ import org.apache.commons.cli.*;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.trees.RandomForest;
 import weka.core.Instances;
-import weka.core.converters.ConverterUtils;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -85,14 +85,12 @@ public class AUTOCVEProcedure {
     public static HashMap<String, Instances> loadHoldoutDataset(String datasets_path, String dataset_name, int id_trial) throws Exception {
         HashMap<String, Instances> datasets = new HashMap<>();
 
-        ConverterUtils.DataSource train_set = new ConverterUtils.DataSource(
+        Instances train_data = DatasetCache.load(
                 datasets_path + File.separator + String.format("dataset_%s_trial_%02d_train.arff", dataset_name, id_trial)
         );
-        ConverterUtils.DataSource test_set = new ConverterUtils.DataSource(
+        Instances test_data = DatasetCache.load(
                 datasets_path + File.separator + String.format("dataset_%s_trial_%02d_test.arff", dataset_name, id_trial)
         );
-
-        Instances train_data = train_set.getDataSet(), test_data = test_set.getDataSet();
         train_data.setClassIndex(train_data.numAttributes() - 1);
         test_data.setClassIndex(test_data.numAttributes() - 1);
 
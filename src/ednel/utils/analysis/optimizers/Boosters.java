@@ -2,6 +2,8 @@ package ednel.utils.analysis.optimizers;
 
 import ednel.Main;
 import ednel.classifiers.trees.SimpleCart;
+import ednel.data.ColumnarDataset;
+import ednel.data.DatasetView;
 import ednel.eda.individual.FitnessCalculator;
 import ednel.utils.PBILLogger;
 import org.apache.commons.cli.*;
@@ -19,6 +21,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 public class Boosters {
@@ -154,8 +157,19 @@ public class Boosters {
             Instances external_train_data = datasets.get("train_data");  // 9/10 of external cv folds
             Instances external_test_data = datasets.get("test_data");  // 1/10 of external cv folds
 
-            // prepares data for future internal cross validation
-            external_train_data = FitnessCalculator.betterStratifier(external_train_data, n_internal_folds);
+            // prepares data for future internal cross validation: folds are assigned by index, and each fold is
+            // a view over the same instances. learners of each combination of hyper-parameters may modify their
+            // data, so each one receives a copy
+            DatasetView stratified = FitnessCalculator.stratify(
+                    ColumnarDataset.of(external_train_data).all(), n_internal_folds, new Random(n_external_fold)
+            );
+            external_train_data = stratified.toInstancesCopy();
+            DatasetView[] internal_train_views = new DatasetView[n_internal_folds];
+            DatasetView[] internal_test_views = new DatasetView[n_internal_folds];
+            for(int i = 0; i < n_internal_folds; i++) {
+                internal_train_views[i] = stratified.trainCV(n_internal_folds, i);
+                internal_test_views[i] = stratified.testCV(n_internal_folds, i);
+            }
 
             ArrayList<NCVMatrixHandler> combinationsHandlers = new ArrayList<>();
 
@@ -198,8 +212,8 @@ public class Boosters {
             for(HashMap<String, Object> comb : combinations) {
                 NCVMatrixHandler combinationMatrixHandler = new NCVMatrixHandler(external_train_data, converted);
                 for(int i = 0; i < n_internal_folds; i++) {
-                    Instances internal_train_data = external_train_data.trainCV(n_internal_folds, i);
-                    Instances internal_test_data = external_train_data.testCV(n_internal_folds, i);
+                    Instances internal_train_data = internal_train_views[i].toInstancesCopy();
+                    Instances internal_test_data = internal_test_views[i].toInstancesCopy();
 
                     AbstractClassifier abstractClassifier = Boosters.getInternalCrossValidationAbstractClassifier(
                             comb, internal_train_data
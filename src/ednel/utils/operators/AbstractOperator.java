@@ -1,23 +1,74 @@
 package ednel.utils.operators;
 
 public abstract class AbstractOperator {
+    public static final byte OP_GREATER_THAN = 0;
+    public static final byte OP_GREATER_THAN_OR_EQUAL_TO = 1;
+    public static final byte OP_LESS_THAN = 2;
+    public static final byte OP_LESS_THAN_OR_EQUAL_TO = 3;
+    public static final byte OP_EQUAL_TO = 4;
+    public static final byte OP_NOT_EQUAL_TO = 5;
+    public static final byte OP_EQUALS_ANY = 6;
+    public static final byte OP_NONE = 7;
+
+    /** Operators are stateless; these instances are shared by everyone that needs an operator. */
+    public static final AbstractOperator GREATER_THAN = new GreaterThan();
+    public static final AbstractOperator GREATER_THAN_OR_EQUAL_TO = new GreaterThanOrEqualTo();
+    public static final AbstractOperator LESS_THAN = new LessThan();
+    public static final AbstractOperator LESS_THAN_OR_EQUAL_TO = new LessThanOrEqualTo();
+    public static final AbstractOperator EQUAL_TO = new EqualTo();
+    public static final AbstractOperator NOT_EQUAL_TO = new NotEqualTo();
+    public static final AbstractOperator EQUALS_ANY = new EqualsAny();
+
     public boolean operate(double a, double b) {
         return false;
     }
+
+    /**
+     * Returns the opcode of this operator, to be used with {@link #evaluate(byte, double, double)}.
+     */
+    public byte getOpcode() {
+        return OP_NONE;
+    }
+
+    /**
+     * Applies the operator with the given opcode. Gives the same result as calling operate on the operator itself,
+     * without the cost of a virtual call; meant for tight loops, such as the evaluation of rules.
+     */
+    public static boolean evaluate(byte opcode, double a, double b) {
+        switch(opcode) {
+            case OP_GREATER_THAN:
+                return a > b;
+            case OP_GREATER_THAN_OR_EQUAL_TO:
+                return a >= b;
+            case OP_LESS_THAN:
+                return a < b;
+            case OP_LESS_THAN_OR_EQUAL_TO:
+                return a <= b;
+            case OP_EQUAL_TO:
+                return a == b;
+            case OP_NOT_EQUAL_TO:
+                return a != b;
+            case OP_EQUALS_ANY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     static public AbstractOperator valueOf(String operation) throws Exception {
         operation = operation.trim();
         if(operation.equals(">=")) {
-            return new GreaterThanOrEqualTo();
+            return GREATER_THAN_OR_EQUAL_TO;
         } else if(operation.equals("<=")) {
-            return new LessThanOrEqualTo();
+            return LESS_THAN_OR_EQUAL_TO;
         } else  if(operation.equals("<")){
-            return new LessThan();
+            return LESS_THAN;
         } else if(operation.equals(">")) {
-            return new GreaterThan();
+            return GREATER_THAN;
         } else if(operation.equals("=") || operation.equals("==")) {
-            return new EqualTo();
+            return EQUAL_TO;
         } else if(operation.equals("!=")) {
-            return new NotEqualTo();
+            return NOT_EQUAL_TO;
         } else {
             throw new Exception("Unrecognized operator: " + operation);
         }
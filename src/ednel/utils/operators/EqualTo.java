@@ -6,6 +6,11 @@ public class EqualTo extends AbstractOperator {
         return a == b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_EQUAL_TO;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new EqualTo().operate(3, 3));
         System.out.println(new EqualTo().operate(1, 2));
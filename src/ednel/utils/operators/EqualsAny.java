@@ -6,6 +6,11 @@ public class EqualsAny extends AbstractOperator {
         return true;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_EQUALS_ANY;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new EqualTo().operate(3, 3));
         System.out.println(new EqualTo().operate(1, 2));
@@ -5,6 +5,11 @@ public class GreaterThan extends AbstractOperator  {
         return a > b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_GREATER_THAN;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new GreaterThan().operate(3, 3));
         System.out.println(new GreaterThan().operate(1.0, 2.0));
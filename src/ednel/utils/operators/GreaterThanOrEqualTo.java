@@ -5,6 +5,11 @@ public class GreaterThanOrEqualTo extends AbstractOperator {
         return a >= b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_GREATER_THAN_OR_EQUAL_TO;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new GreaterThanOrEqualTo().operate(3, 3));
         System.out.println(new GreaterThanOrEqualTo().operate(1, 2));
@@ -5,6 +5,11 @@ public class LessThan extends AbstractOperator {
         return a < b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_LESS_THAN;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new LessThan().operate(3, 3));
         System.out.println(new LessThan().operate(1, 2));
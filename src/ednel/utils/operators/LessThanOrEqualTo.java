@@ -5,6 +5,11 @@ public class LessThanOrEqualTo extends AbstractOperator {
         return a <= b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_LESS_THAN_OR_EQUAL_TO;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new LessThanOrEqualTo().operate(3, 3));
         System.out.println(new LessThanOrEqualTo().operate(1, 2));
@@ -5,6 +5,11 @@ public class NotEqualTo extends AbstractOperator {
         return a != b;
     }
 
+    @Override
+    public byte getOpcode() {
+        return OP_NOT_EQUAL_TO;
+    }
+
     public static void main(String[] args) throws Exception {
         System.out.println(new NotEqualTo().operate(3, 3));
         System.out.println(new NotEqualTo().operate(1, 2));
@@ -0,0 +1,85 @@
+package ednel;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Small random datasets for tests, with numeric and nominal attributes and a nominal class that depends on some of
+ * them, so that learners build non-trivial models.
+ */
+public class SyntheticData {
+    /**
+     * Generates a dataset.
+     *
+     * @param seed Seed of the random number generator
+     * @param n_instances Number of instances
+     * @param n_numeric Number of numeric attributes. Values are rounded to one decimal place in [0, 1], so that each
+     *                  attribute has at most 11 distinct values
+     * @param n_nominal Number of nominal attributes
+     * @param n_values Number of values of each nominal attribute
+     * @param n_classes Number of classes
+     * @param missingRate Probability of each value (class excluded) being missing
+     * @return The dataset, with the last attribute as class
+     */
+    public static Instances generate(long seed, int n_instances, int n_numeric, int n_nominal, int n_values,
+                                     int n_classes, double missingRate) {
+        Random random = new Random(seed);
+
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for(int j = 0; j < n_numeric; j++) {
+            attributes.add(new Attribute("num" + j));
+        }
+        for(int j = 0; j < n_nominal; j++) {
+            attributes.add(new Attribute("nom" + j, SyntheticData.values("v", n_values)));
+        }
+        attributes.add(new Attribute("class", SyntheticData.values("c", n_classes)));
+
+        Instances data = new Instances("synthetic" + seed, attributes, n_instances);
+        data.setClassIndex(data.numAttributes() - 1);
+
+        for(int i = 0; i < n_instances; i++) {
+            double[] values = new double[data.numAttributes()];
+            for(int j = 0; j < n_numeric; j++) {
+                values[j] = Math.round(random.nextDouble() * 10) / 10.0;
+            }
+            for(int j = n_numeric; j < n_numeric + n_nominal; j++) {
+                values[j] = random.nextInt(n_values);
+            }
+
+            // class depends on the first numeric and nominal attributes, plus some noise
+            double score = 0;
+            if(n_numeric > 0) {
+                score += values[0] * n_classes;
+            }
+            if(n_nominal > 0) {
+                score += values[n_numeric] % n_classes;
+            }
+            int classValue = (int)score % n_classes;
+            if(random.nextDouble() < 0.1) {
+                classValue = random.nextInt(n_classes);
+            }
+            values[data.classIndex()] = classValue;
+
+            for(int j = 0; j < data.classIndex(); j++) {
+                if(random.nextDouble() < missingRate) {
+                    values[j] = Utils.missingValue();
+                }
+            }
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+
+    private static ArrayList<String> values(String prefix, int n_values) {
+        ArrayList<String> values = new ArrayList<>(n_values);
+        for(int k = 0; k < n_values; k++) {
+            values.add(prefix + k);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,171 @@
+package ednel.classifiers.trees;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the optimized paths of SimpleCart build and evaluate the same trees as the plain ones.
+ */
+public class SimpleCartTest {
+    private static SimpleCart train(Instances data, int numBins, boolean usePrune) throws Exception {
+        SimpleCart clf = new SimpleCart();
+        clf.setNumBins(numBins);
+        clf.setUsePrune(usePrune);
+        clf.buildClassifier(data);
+        return clf;
+    }
+
+    private static void assertSamePredictions(SimpleCart expected, SimpleCart actual, Instances data) throws Exception {
+        for(int i = 0; i < data.numInstances(); i++) {
+            assertArrayEquals(
+                    "instance " + i,
+                    expected.distributionForInstance(data.instance(i)),
+                    actual.distributionForInstance(data.instance(i)),
+                    0
+            );
+        }
+    }
+
+    /**
+     * Predicts with the recursive walk over nodes, instead of the flattened tree.
+     */
+    private static double[] recursiveDistribution(SimpleCart clf, Instance instance) throws Exception {
+        SimpleCart.CompiledTree compiled = clf.m_Compiled;
+        clf.m_Compiled = null;
+        try {
+            return clf.distributionForInstance(instance);
+        } finally {
+            clf.m_Compiled = compiled;
+        }
+    }
+
+    /**
+     * The flattened tree must give the same distributions as the recursive walk, both for single instances and for
+     * batches, including instances with missing values (which are sent down both branches).
+     */
+    @Test
+    public void flattenedTreePredictsSameAsRecursiveWalk() throws Exception {
+        for(long seed = 0; seed < 5; seed++) {
+            Instances data = SyntheticData.generate(seed, 400, 4, 3, 6, 3, 0.1);
+            Instances test = SyntheticData.generate(seed + 100, 300, 4, 3, 6, 3, 0.3);
+
+            for(boolean usePrune : new boolean[]{false, true}) {
+                SimpleCart clf = train(data, 0, usePrune);
+                assertTrue(clf.implementsMoreEfficientBatchPrediction());
+
+                double[][] batch = clf.distributionsForInstances(test);
+                for(int i = 0; i < test.numInstances(); i++) {
+                    double[] expected = recursiveDistribution(clf, test.instance(i));
+                    assertArrayEquals("instance " + i, expected, clf.distributionForInstance(test.instance(i)), 1e-12);
+                    assertArrayEquals("batch, instance " + i, expected, batch[i], 1e-12);
+                }
+            }
+        }
+    }
+
+    /**
+     * With at least as many bins as distinct values, every distinct value is a bin of its own, so histogram mode
+     * evaluates the same split points, with the same class counts, as the exact search.
+     */
+    @Test
+    public void histogramsWithEnoughBinsBuildSameTree() throws Exception {
+        for(long seed = 0; seed < 5; seed++) {
+            // no missing values: all weights are one, so class counts are exact in both modes
+            Instances data = SyntheticData.generate(seed, 400, 4, 2, 4, 3, 0);
+            Instances test = SyntheticData.generate(seed + 100, 200, 4, 2, 4, 3, 0);
+
+            for(boolean usePrune : new boolean[]{false, true}) {
+                SimpleCart exact = train(data, 0, usePrune);
+                // numeric attributes have at most 11 distinct values
+                for(int numBins : new int[]{11, 64}) {
+                    SimpleCart binned = train(data, numBins, usePrune);
+                    assertEquals(exact.toString(), binned.toString());
+                    assertSamePredictions(exact, binned, test);
+                }
+            }
+        }
+    }
+
+    /**
+     * Predicts by routing nominal values with the textual description of split subsets, as SimpleCart did before
+     * subsets were bitmasks.
+     */
+    private static double[] splitStringDistribution(SimpleCart node, Instance instance) {
+        if(node.m_isLeaf) {
+            return node.m_ClassProbs;
+        }
+        if(instance.isMissing(node.m_Attribute)) {
+            double[] dist = new double[node.m_ClassProbs.length];
+            for(int i = 0; i < node.m_Successors.length; i++) {
+                double[] help = splitStringDistribution(node.m_Successors[i], instance);
+                if(help != null) {
+                    for(int j = 0; j < help.length; j++) {
+                        dist[j] += node.m_Props[i] * help[j];
+                    }
+                }
+            }
+            return dist;
+        }
+        boolean first;
+        if(node.m_Attribute.isNominal()) {
+            String value = node.m_Attribute.value((int)instance.value(node.m_Attribute));
+            first = node.m_SplitString.indexOf("(" + value + ")") != -1;
+        } else {
+            first = instance.value(node.m_Attribute) < node.m_SplitValue;
+        }
+        return splitStringDistribution(node.m_Successors[first? 0 : 1], instance);
+    }
+
+    private static int checkSplitSubsets(SimpleCart node) {
+        if(node.m_isLeaf) {
+            return 0;
+        }
+        int n_nominal = 0;
+        if(node.m_Attribute.isNominal()) {
+            for(int v = 0; v < node.m_Attribute.numValues(); v++) {
+                assertEquals(
+                        node.m_Attribute.name() + "=" + node.m_Attribute.value(v),
+                        node.m_SplitString.indexOf("(" + node.m_Attribute.value(v) + ")") != -1,
+                        node.isInSplitSubset(v)
+                );
+            }
+            n_nominal += 1;
+        }
+        for(SimpleCart successor : node.m_Successors) {
+            n_nominal += checkSplitSubsets(successor);
+        }
+        return n_nominal;
+    }
+
+    /**
+     * Nominal attributes with more than 64 values use bitmasks of several words; routing with bitmasks must be the
+     * same as routing with the textual description of subsets.
+     */
+    @Test
+    public void nominalBitmasksRouteSameAsSplitStrings() throws Exception {
+        for(int n_values : new int[]{3, 10, 70}) {
+            for(int n_classes : new int[]{2, 3}) {
+                Instances data = SyntheticData.generate(n_values, 600, 1, 3, n_values, n_classes, 0.05);
+                Instances test = SyntheticData.generate(n_values + 100, 300, 1, 3, n_values, n_classes, 0.1);
+
+                SimpleCart clf = train(data, 0, false);
+                assertTrue("tree has nominal splits", checkSplitSubsets(clf) > 0);
+
+                for(int i = 0; i < test.numInstances(); i++) {
+                    assertArrayEquals(
+                            "instance " + i,
+                            splitStringDistribution(clf, test.instance(i)),
+                            clf.distributionForInstance(test.instance(i)),
+                            1e-12
+                    );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ednel.data;
+
+import ednel.SyntheticData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import weka.core.Instances;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that datasets loaded from binary copies are the same as datasets parsed from their ARFF files, and that
+ * binary copies are replaced when their ARFF files change.
+ */
+public class DatasetCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameDataset(Instances expected, Instances actual) {
+        assertEquals(expected.relationName(), actual.relationName());
+        assertEquals(expected.numAttributes(), actual.numAttributes());
+        assertEquals(expected.classIndex(), actual.classIndex());
+        for(int j = 0; j < expected.numAttributes(); j++) {
+            assertEquals(expected.attribute(j).name(), actual.attribute(j).name());
+            assertEquals(expected.attribute(j).type(), actual.attribute(j).type());
+            assertEquals(expected.attribute(j).numValues(), actual.attribute(j).numValues());
+        }
+        assertEquals(expected.numInstances(), actual.numInstances());
+        for(int i = 0; i < expected.numInstances(); i++) {
+            assertArrayEquals("instance " + i, expected.instance(i).toDoubleArray(), actual.instance(i).toDoubleArray(), 0);
+            assertEquals("instance " + i, expected.instance(i).weight(), actual.instance(i).weight(), 0);
+        }
+    }
+
+    private Path writeArff(String name, Instances data) throws Exception {
+        Path path = new File(this.folder.getRoot(), name).toPath();
+        Files.write(path, data.toString().getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    public void binaryCopyHoldsSameDataset() throws Exception {
+        for(boolean streaming : new boolean[]{false, true}) {
+            Instances data = SyntheticData.generate(0, 500, 3, 3, 4, 3, 0.1);
+            Path arff = this.writeArff("data" + streaming + ".arff", data);
+
+            // first load parses the ARFF file and writes the binary copy; second load reads the binary copy
+            Instances parsed = DatasetCache.load(arff.toString(), streaming);
+            assertTrue(Files.exists(new File(arff + DatasetCache.EXTENSION).toPath()));
+            Instances cached = DatasetCache.load(arff.toString(), streaming);
+
+            assertSameDataset(data, parsed);
+            assertSameDataset(data, cached);
+        }
+    }
+
+    @Test
+    public void changedFileIsParsedAgain() throws Exception {
+        Path arff = this.writeArff("data.arff", SyntheticData.generate(1, 100, 2, 2, 3, 2, 0.1));
+        DatasetCache.load(arff.toString());
+
+        Instances changed = SyntheticData.generate(2, 150, 2, 2, 3, 2, 0.1);
+        this.writeArff("data.arff", changed);
+        assertSameDataset(changed, DatasetCache.load(arff.toString()));
+        assertSameDataset(changed, DatasetCache.load(arff.toString()));
+    }
+
+    @Test
+    public void touchedFileKeepsBinaryCopy() throws Exception {
+        Instances data = SyntheticData.generate(3, 100, 2, 2, 3, 2, 0.1);
+        Path arff = this.writeArff("data.arff", data);
+        DatasetCache.load(arff.toString());
+
+        // same contents, another modification time: file is hashed again, and the binary copy is still used
+        Files.setLastModifiedTime(arff, FileTime.fromMillis(Files.getLastModifiedTime(arff).toMillis() + 60000));
+        assertSameDataset(data, DatasetCache.load(arff.toString()));
+        assertSameDataset(data, DatasetCache.load(arff.toString()));
+    }
+
+    @Test
+    public void truncatedBinaryCopyIsIgnored() throws Exception {
+        Instances data = SyntheticData.generate(4, 100, 2, 2, 3, 2, 0.1);
+        Path arff = this.writeArff("data.arff", data);
+        DatasetCache.load(arff.toString());
+
+        Path cache = new File(arff + DatasetCache.EXTENSION).toPath();
+        byte[] bytes = Files.readAllBytes(cache);
+        Files.write(cache, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertSameDataset(data, DatasetCache.load(arff.toString()));
+    }
+}
@@ -0,0 +1,59 @@
+package ednel.data;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.AttributeStats;
+import weka.core.Instances;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that statistics kept by columnar datasets and their views are the same as statistics computed one instance
+ * at a time, and as those given by Instances.attributeStats.
+ */
+public class DatasetStatisticsTest {
+    private static final double DELTA = 1e-9;
+
+    private static void assertSameStatistics(Instances data, DatasetStatistics expected, DatasetStatistics actual) {
+        assertEquals(expected.getNumInstances(), actual.getNumInstances());
+        for(int j = 0; j < data.numAttributes(); j++) {
+            AttributeStats stats = data.attributeStats(j);
+            if(data.attribute(j).isNominal()) {
+                assertArrayEquals(data.attribute(j).name(), expected.getNominalCounts(j), actual.getNominalCounts(j));
+                assertArrayEquals(data.attribute(j).name(), stats.nominalCounts, actual.getNominalCounts(j));
+            } else {
+                assertEquals(data.attribute(j).name(), expected.getMean(j), actual.getMean(j), DELTA);
+                assertEquals(data.attribute(j).name(), stats.numericStats.mean, actual.getMean(j), DELTA);
+            }
+        }
+        assertArrayEquals(expected.getMostCommonValues(), actual.getMostCommonValues(), DELTA);
+    }
+
+    @Test
+    public void viewStatisticsAreSameAsInstanceByInstance() {
+        for(long seed = 0; seed < 5; seed++) {
+            Instances data = SyntheticData.generate(seed, 150, 3, 3, 4, 3, 0.2);
+            Random random = new Random(seed);
+            for(int i = 0; i < data.numInstances(); i++) {
+                data.instance(i).setWeight(0.5 + random.nextDouble());
+            }
+            ColumnarDataset dataset = ColumnarDataset.of(data);
+
+            DatasetStatistics statistics = dataset.getStatistics();
+            assertSame(statistics, dataset.getStatistics());
+            assertSameStatistics(data, DatasetStatistics.of(data), statistics);
+
+            for(int f = 0; f < 5; f++) {
+                for(DatasetView view : new DatasetView[]{dataset.all().trainCV(5, f), dataset.all().testCV(5, f)}) {
+                    Instances instances = view.toInstances();
+                    assertSame(view.getStatistics(), view.getStatistics());
+                    assertSameStatistics(instances, DatasetStatistics.of(instances), view.getStatistics());
+                }
+            }
+        }
+    }
+}
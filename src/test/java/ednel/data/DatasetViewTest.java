@@ -0,0 +1,122 @@
+package ednel.data;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that views of a columnar dataset hold the same instances, in the same order, as the Instances returned by
+ * the equivalent methods of Weka.
+ */
+public class DatasetViewTest {
+    private static void assertSameInstances(Instances expected, Instances actual) {
+        assertEquals(expected.numInstances(), actual.numInstances());
+        for(int i = 0; i < expected.numInstances(); i++) {
+            assertArrayEquals("instance " + i, expected.instance(i).toDoubleArray(), actual.instance(i).toDoubleArray(), 0);
+            assertEquals("instance " + i, expected.instance(i).weight(), actual.instance(i).weight(), 0);
+        }
+    }
+
+    @Test
+    public void foldsAreSameAsTrainCVAndTestCV() {
+        // sizes that are, and are not, multiples of the number of folds
+        for(int n_instances : new int[]{10, 47, 100}) {
+            Instances data = SyntheticData.generate(n_instances, n_instances, 2, 2, 3, 3, 0.1);
+            DatasetView all = ColumnarDataset.of(data).all();
+
+            for(int n_folds : new int[]{2, 3, 5, 10}) {
+                for(int f = 0; f < n_folds; f++) {
+                    assertSameInstances(data.trainCV(n_folds, f), all.trainCV(n_folds, f).toInstances());
+                    assertSameInstances(data.testCV(n_folds, f), all.testCV(n_folds, f).toInstances());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shuffledFoldsAreSameAsRandomizedTrainCV() {
+        Instances data = SyntheticData.generate(0, 103, 2, 2, 3, 3, 0.1);
+        DatasetView all = ColumnarDataset.of(data).all();
+
+        for(int f = 0; f < 5; f++) {
+            assertSameInstances(
+                    data.trainCV(5, f, new Random(f)),
+                    all.trainCV(5, f).shuffle(new Random(f)).toInstances()
+            );
+        }
+    }
+
+    @Test
+    public void stratifiedViewIsSameAsStratifiedInstances() {
+        for(long seed = 0; seed < 5; seed++) {
+            Instances data = SyntheticData.generate(seed, 97, 2, 2, 3, 4, 0.1);
+            DatasetView all = ColumnarDataset.of(data).all();
+
+            for(int n_folds : new int[]{2, 5, 10}) {
+                Instances stratified = new Instances(data);
+                stratified.stratify(n_folds);
+                assertSameInstances(stratified, all.stratify(n_folds).toInstances());
+            }
+        }
+    }
+
+    @Test
+    public void viewsOfViewsAreSameAsFoldsOfFolds() {
+        Instances data = SyntheticData.generate(1, 120, 2, 2, 3, 3, 0.1);
+        DatasetView all = ColumnarDataset.of(data).all();
+
+        for(int f = 0; f < 4; f++) {
+            Instances train = data.trainCV(4, f);
+            DatasetView view = all.trainCV(4, f);
+            for(int g = 0; g < 3; g++) {
+                assertSameInstances(train.trainCV(3, g), view.trainCV(3, g).toInstances());
+                assertSameInstances(train.testCV(3, g), view.testCV(3, g).toInstances());
+            }
+        }
+    }
+
+    @Test
+    public void sharedInstancesLeadBackToTheirView() {
+        Instances data = SyntheticData.generate(2, 50, 2, 2, 3, 3, 0.1);
+        DatasetView view = ColumnarDataset.of(data).all().trainCV(5, 1);
+
+        Instances shared = view.toInstances();
+        assertSame(shared, view.toInstances());
+        assertSame(view, DatasetView.viewOf(shared));
+        assertNull(DatasetView.viewOf(data));
+        assertNull(DatasetView.viewOf(new Instances(shared)));
+    }
+
+    @Test
+    public void copiesDoNotShareInstances() {
+        Instances data = SyntheticData.generate(3, 50, 2, 2, 3, 3, 0.1);
+        DatasetView view = ColumnarDataset.of(data).all().testCV(5, 2);
+
+        Instances shared = view.toInstances();
+        Instances copy = view.toInstancesCopy();
+        assertSameInstances(shared, copy);
+
+        double[] before = shared.instance(0).toDoubleArray();
+        double weight = shared.instance(0).weight();
+        for(int i = 0; i < copy.numInstances(); i++) {
+            assertNotSame(shared.instance(i), copy.instance(i));
+        }
+        Instance first = copy.instance(0);
+        first.setWeight(first.weight() + 1);
+        first.setValue(0, 123.0);
+        copy.delete(copy.numInstances() - 1);
+
+        assertArrayEquals(before, shared.instance(0).toDoubleArray(), 0);
+        assertEquals(weight, shared.instance(0).weight(), 0);
+        assertEquals(view.size(), shared.numInstances());
+    }
+}
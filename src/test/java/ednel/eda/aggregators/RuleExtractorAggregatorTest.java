@@ -0,0 +1,167 @@
+package ednel.eda.aggregators;
+
+import ednel.SyntheticData;
+import ednel.classifiers.trees.SimpleCart;
+import ednel.eda.aggregators.rules.RuleExtractor;
+import ednel.eda.rules.ExtractedRule;
+import org.junit.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.rules.DecisionTable;
+import weka.classifiers.rules.JRip;
+import weka.classifiers.rules.PART;
+import weka.classifiers.trees.J48;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that rules selected by {@link RuleExtractorAggregator}, and the probabilities it predicts for batches and
+ * for single instances, are the same as those of a plain greedy selection: every candidate rule evaluated on every
+ * activated instance at each step, without removing duplicate or dominated candidates, and every selected rule
+ * checked for every instance at prediction time.
+ */
+public class RuleExtractorAggregatorTest {
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Rules selected by the plain greedy selection, and the weight of their votes.
+     */
+    private static class Reference {
+        final ArrayList<ExtractedRule> rules = new ArrayList<>();
+        final ArrayList<Double> weights = new ArrayList<>();
+
+        Reference(AbstractClassifier[] clfs, Instances train_data) throws Exception {
+            boolean[] all_activated = new boolean[train_data.size()];
+            Arrays.fill(all_activated, true);
+
+            ArrayList<ExtractedRule> candidates = new ArrayList<>();
+            for(AbstractClassifier clf : clfs) {
+                ExtractedRule[] rules = RuleExtractor.fromClassifierToRules(clf, train_data);
+                if(!(clf instanceof JRip) && !(clf instanceof PART)) {
+                    candidates.addAll(Arrays.asList(rules));
+                    continue;
+                }
+                // ordered rules vote with their quality on the instances left by previous rules
+                boolean[] activated = all_activated.clone();
+                for(ExtractedRule rule : rules) {
+                    this.rules.add(rule);
+                    this.weights.add(rule.quality(train_data, activated));
+                    deactivate(rule, train_data, activated);
+                }
+            }
+
+            boolean[] activated = all_activated.clone();
+            boolean[] selected = new boolean[candidates.size()];
+            while(count(activated) > 0) {
+                int best = -1;
+                double bestQuality = 0.0;
+                for(int j = 0; j < candidates.size(); j++) {
+                    double quality = candidates.get(j).quality(train_data, activated);
+                    if(!selected[j] && quality > bestQuality) {
+                        best = j;
+                        bestQuality = quality;
+                    }
+                }
+                if(best == -1) {
+                    break;
+                }
+                selected[best] = true;
+                this.rules.add(candidates.get(best));
+                this.weights.add(candidates.get(best).quality(train_data, all_activated));
+                deactivate(candidates.get(best), train_data, activated);
+            }
+        }
+
+        private static void deactivate(ExtractedRule rule, Instances data, boolean[] activated) {
+            boolean[] covered = rule.covers(data, activated);
+            for(int i = 0; i < data.size(); i++) {
+                activated[i] = activated[i] && !(covered[i] && rule.getConsequent() == data.get(i).classValue());
+            }
+        }
+
+        private static int count(boolean[] activated) {
+            int count = 0;
+            for(boolean value : activated) {
+                count += value? 1 : 0;
+            }
+            return count;
+        }
+
+        double[] distribution(Instance instance, int n_classes) {
+            double[] dist = new double[n_classes];
+            double votesSum = 0;
+            for(int r = 0; r < this.rules.size(); r++) {
+                if(this.rules.get(r).covers(instance)) {
+                    dist[(int)this.rules.get(r).getConsequent()] += this.weights.get(r);
+                    votesSum += this.weights.get(r);
+                }
+            }
+            for(int c = 0; c < n_classes; c++) {
+                dist[c] /= votesSum;
+            }
+            return dist;
+        }
+    }
+
+    private static AbstractClassifier[] trainClassifiers(Instances train_data) throws Exception {
+        AbstractClassifier[] clfs = new AbstractClassifier[]{
+                new J48(), new SimpleCart(), new JRip(), new PART(), new DecisionTable()
+        };
+        for(AbstractClassifier clf : clfs) {
+            clf.buildClassifier(train_data);
+        }
+        return clfs;
+    }
+
+    @Test
+    public void selectsAndVotesSameAsPlainGreedySelection() throws Exception {
+        for(long seed = 0; seed < 3; seed++) {
+            Instances train_data = SyntheticData.generate(seed, 300, 3, 3, 5, 3, 0.05);
+            Instances test_data = SyntheticData.generate(seed + 100, 200, 3, 3, 5, 3, 0.1);
+
+            AbstractClassifier[] clfs = trainClassifiers(train_data);
+
+            RuleExtractorAggregator aggregator = new RuleExtractorAggregator();
+            aggregator.setCompetences(clfs, train_data);
+            Reference reference = new Reference(clfs, train_data);
+
+            double[][] batch = aggregator.aggregateProba(clfs, test_data);
+            for(int i = 0; i < test_data.size(); i++) {
+                double[] expected = reference.distribution(test_data.get(i), test_data.numClasses());
+                assertArrayEquals("batch, instance " + i, expected, batch[i], DELTA);
+                assertArrayEquals(
+                        "single, instance " + i, expected, aggregator.aggregateProba(clfs, test_data.get(i)), DELTA
+                );
+            }
+        }
+    }
+
+    @Test
+    public void duplicateClassifiersDoNotChangeSelection() throws Exception {
+        Instances train_data = SyntheticData.generate(7, 300, 3, 3, 5, 3, 0.05);
+        Instances test_data = SyntheticData.generate(107, 200, 3, 3, 5, 3, 0.1);
+
+        // the same unordered classifiers twice: every candidate rule has an identical copy
+        AbstractClassifier[] once = new AbstractClassifier[]{new J48(), new SimpleCart()};
+        for(AbstractClassifier clf : once) {
+            clf.buildClassifier(train_data);
+        }
+        AbstractClassifier[] twice = new AbstractClassifier[]{once[0], once[1], once[0], once[1]};
+
+        RuleExtractorAggregator single = new RuleExtractorAggregator(), doubled = new RuleExtractorAggregator();
+        single.setCompetences(once, train_data);
+        doubled.setCompetences(twice, train_data);
+
+        assertEquals(single.getNumberOfRules(), doubled.getNumberOfRules());
+        double[][] expected = single.aggregateProba(once, test_data);
+        double[][] actual = doubled.aggregateProba(twice, test_data);
+        for(int i = 0; i < test_data.size(); i++) {
+            assertArrayEquals("instance " + i, expected[i], actual[i], DELTA);
+        }
+    }
+}
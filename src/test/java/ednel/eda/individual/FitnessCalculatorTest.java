@@ -0,0 +1,106 @@
+package ednel.eda.individual;
+
+import ednel.SyntheticData;
+import ednel.data.ColumnarDataset;
+import ednel.data.DatasetView;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that stratified folds have the sizes of the folds of Instances.testCV, that classes are spread evenly over
+ * folds, and that folds of stratified views are the folds that were assigned to instances.
+ */
+public class FitnessCalculatorTest {
+    private static Instances generate(long seed, int n_instances, int n_classes) {
+        Instances data = SyntheticData.generate(seed, n_instances, 2, 2, 3, n_classes, 0.1);
+        // instances with missing class form a group of their own
+        for(int i = 0; i < data.numInstances(); i += 13) {
+            data.instance(i).setClassMissing();
+        }
+        return data;
+    }
+
+    @Test
+    public void foldsHaveSizesOfTestCVAndSpreadClassesEvenly() {
+        for(long seed = 0; seed < 5; seed++) {
+            for(int n_instances : new int[]{200, 237}) {
+                Instances data = generate(seed, n_instances, 3);
+                DatasetView all = ColumnarDataset.of(data).all();
+
+                for(int n_folds : new int[]{2, 3, 5, 10}) {
+                    int[] folds = FitnessCalculator.stratifiedFolds(all, n_folds, new Random(seed));
+
+                    int[] sizes = new int[n_folds];
+                    int[][] counts = new int[data.numClasses() + 1][n_folds];
+                    for(int i = 0; i < folds.length; i++) {
+                        sizes[folds[i]] += 1;
+                        int group = data.instance(i).classIsMissing()?
+                                data.numClasses() : (int)data.instance(i).classValue();
+                        counts[group][folds[i]] += 1;
+                    }
+                    for(int f = 0; f < n_folds; f++) {
+                        assertEquals("fold " + f, data.testCV(n_folds, f).numInstances(), sizes[f]);
+                    }
+                    for(int[] count : counts) {
+                        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+                        for(int f = 0; f < n_folds; f++) {
+                            min = Math.min(min, count[f]);
+                            max = Math.max(max, count[f]);
+                        }
+                        assertTrue("counts of a class differ by more than one", max - min <= 1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameRandomGivesSameFolds() {
+        DatasetView all = ColumnarDataset.of(generate(0, 150, 4)).all();
+        for(long seed = 0; seed < 5; seed++) {
+            assertArrayEquals(
+                    FitnessCalculator.stratifiedFolds(all, 5, new Random(seed)),
+                    FitnessCalculator.stratifiedFolds(all, 5, new Random(seed))
+            );
+        }
+    }
+
+    @Test
+    public void testCVOfStratifiedViewIsAssignedFold() {
+        for(long seed = 0; seed < 5; seed++) {
+            Instances data = generate(seed, 211, 3);
+            DatasetView all = ColumnarDataset.of(data).all();
+
+            for(int n_folds : new int[]{2, 5, 10}) {
+                int[] folds = FitnessCalculator.stratifiedFolds(all, n_folds, new Random(seed));
+                DatasetView stratified = FitnessCalculator.stratify(all, n_folds, new Random(seed));
+                Instances instances = stratified.toInstances();
+
+                for(int f = 0; f < n_folds; f++) {
+                    int[] rows = stratified.testCV(n_folds, f).getRows();
+                    // rows of a fold keep the order of the original data
+                    int k = 0;
+                    for(int i = 0; i < folds.length; i++) {
+                        if(folds[i] == f) {
+                            assertEquals("fold " + f, i, rows[k]);
+                            k += 1;
+                        }
+                    }
+                    assertEquals("fold " + f, k, rows.length);
+
+                    Instances test = instances.testCV(n_folds, f);
+                    assertEquals(rows.length, test.numInstances());
+                    for(int i = 0; i < rows.length; i++) {
+                        assertArrayEquals(data.instance(rows[i]).toDoubleArray(), test.instance(i).toDoubleArray(), 0);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ednel.eda.rules;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that votes of a compiled rule set are the same as evaluating every rule on every instance with
+ * {@link ExtractedRule#covers}.
+ */
+public class CompiledRuleSetTest {
+    private static final double DELTA = 1e-12;
+
+    /**
+     * Sums the votes of rules, one rule and instance at a time.
+     */
+    static double[][] voteRuleByRule(ArrayList<ExtractedRule> rules, ArrayList<Double> weights, Instances batch,
+                                     double[] votesSum) {
+        double[][] votes = new double[batch.size()][batch.numClasses()];
+        for(int i = 0; i < batch.size(); i++) {
+            for(int r = 0; r < rules.size(); r++) {
+                if(rules.get(r).covers(batch.get(i))) {
+                    votes[i][(int)rules.get(r).getConsequent()] += weights.get(r);
+                    votesSum[i] += weights.get(r);
+                }
+            }
+        }
+        return votes;
+    }
+
+    @Test
+    public void votesAreSameAsRuleByRule() {
+        for(long seed = 0; seed < 5; seed++) {
+            Instances train = SyntheticData.generate(seed, 200, 3, 3, 5, 3, 0.1);
+            Instances batch = SyntheticData.generate(seed + 100, 150, 3, 3, 5, 3, 0.2);
+
+            Random random = new Random(seed);
+            ArrayList<ExtractedRule> rules = RandomRules.generate(train, 100, random);
+            ArrayList<Double> weights = RandomRules.weights(rules.size(), random);
+
+            CompiledRuleSet compiled = new CompiledRuleSet(rules, weights);
+            assertEquals(rules.size(), compiled.getNumRules());
+
+            double[] expectedSum = new double[batch.size()], actualSum = new double[batch.size()];
+            double[][] expected = voteRuleByRule(rules, weights, batch, expectedSum);
+            double[][] actual = compiled.vote(batch, batch.numClasses(), actualSum);
+
+            assertArrayEquals(expectedSum, actualSum, DELTA);
+            for(int i = 0; i < batch.size(); i++) {
+                assertArrayEquals("instance " + i, expected[i], actual[i], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void emptyRuleSetDoesNotVote() {
+        Instances batch = SyntheticData.generate(0, 10, 2, 2, 3, 2, 0.0);
+        CompiledRuleSet compiled = new CompiledRuleSet(new ArrayList<>(), new ArrayList<>());
+
+        double[] votesSum = new double[batch.size()];
+        double[][] votes = compiled.vote(batch, batch.numClasses(), votesSum);
+        for(int i = 0; i < batch.size(); i++) {
+            assertArrayEquals(new double[batch.numClasses()], votes[i], 0);
+            assertEquals(0, votesSum[i], 0);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ednel.eda.rules;
+
+import ednel.data.DatasetStatistics;
+import ednel.utils.operators.AbstractOperator;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Random rules over a dataset, for comparing optimized rule evaluation with {@link ExtractedRule#covers}.
+ *
+ * Rules test numeric attributes with inequalities (and, sometimes, with a missing threshold, as parsed from decision
+ * tables), and nominal attributes with equalities and inequalities; some conditions always pass.
+ */
+public class RandomRules {
+    private static final AbstractOperator[] NUMERIC_OPERATORS = new AbstractOperator[]{
+            AbstractOperator.GREATER_THAN, AbstractOperator.GREATER_THAN_OR_EQUAL_TO,
+            AbstractOperator.LESS_THAN, AbstractOperator.LESS_THAN_OR_EQUAL_TO,
+            AbstractOperator.EQUAL_TO, AbstractOperator.EQUALS_ANY
+    };
+
+    /**
+     * Generates rules.
+     *
+     * @param data Dataset, with class index set
+     * @param n_rules Number of rules
+     * @param random Random number generator
+     * @return Rules with one to three conditions each; about one in twenty rules has no conditions
+     */
+    public static ArrayList<ExtractedRule> generate(Instances data, int n_rules, Random random) {
+        double[] mostCommonValues = DatasetStatistics.of(data).getMostCommonValues();
+
+        ArrayList<ExtractedRule> rules = new ArrayList<>(n_rules);
+        for(int r = 0; r < n_rules; r++) {
+            int n_conditions = random.nextInt(20) == 0? 0 : 1 + random.nextInt(3);
+
+            int[] attrIndex = new int[n_conditions];
+            AbstractOperator[] operators = new AbstractOperator[n_conditions];
+            double[] thresholds = new double[n_conditions];
+
+            for(int c = 0; c < n_conditions; c++) {
+                int attribute = random.nextInt(data.numAttributes() - 1);
+                if(attribute >= data.classIndex()) {
+                    attribute += 1;
+                }
+                attrIndex[c] = attribute;
+                if(data.attribute(attribute).isNominal()) {
+                    operators[c] = random.nextBoolean()? AbstractOperator.EQUAL_TO : AbstractOperator.NOT_EQUAL_TO;
+                    thresholds[c] = random.nextInt(data.attribute(attribute).numValues());
+                } else {
+                    operators[c] = NUMERIC_OPERATORS[random.nextInt(NUMERIC_OPERATORS.length)];
+                    thresholds[c] = random.nextInt(10) == 0? Double.NaN : Math.round(random.nextDouble() * 20) / 20.0;
+                }
+            }
+            rules.add(new ExtractedRule(
+                    attrIndex, operators, thresholds, random.nextInt(data.numClasses()), data, mostCommonValues
+            ));
+        }
+        return rules;
+    }
+
+    /**
+     * Generates a random weight for each rule.
+     */
+    public static ArrayList<Double> weights(int n_rules, Random random) {
+        ArrayList<Double> weights = new ArrayList<>(n_rules);
+        for(int r = 0; r < n_rules; r++) {
+            weights.add(random.nextDouble());
+        }
+        return weights;
+    }
+}
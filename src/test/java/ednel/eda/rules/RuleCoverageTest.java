@@ -0,0 +1,130 @@
+package ednel.eda.rules;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that coverage and quality of rules computed with bitsets are the same as computed one instance at a time
+ * with {@link ExtractedRule#covers} and {@link ExtractedRule#quality}.
+ */
+public class RuleCoverageTest {
+    private static final int N_RULES = 200;
+
+    private static boolean isSet(long[] bitset, int i) {
+        return (bitset[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static long[] toBitset(boolean[] values) {
+        long[] bitset = new long[(values.length + 63) >>> 6];
+        for(int i = 0; i < values.length; i++) {
+            if(values[i]) {
+                bitset[i >>> 6] |= 1L << i;
+            }
+        }
+        return bitset;
+    }
+
+    @Test
+    public void coversSameInstancesAsRules() {
+        // sizes that are, and are not, multiples of 64
+        for(int n_instances : new int[]{1, 63, 64, 65, 300}) {
+            Instances data = SyntheticData.generate(n_instances, n_instances, 3, 2, 4, 3, 0.1);
+            RuleCoverage coverage = new RuleCoverage(data);
+            ArrayList<ExtractedRule> rules = RandomRules.generate(data, N_RULES, new Random(n_instances));
+
+            long[][] covered = coverage.covers(rules.toArray(new ExtractedRule[0]), data);
+            for(int r = 0; r < rules.size(); r++) {
+                assertArrayEquals(covered[r], coverage.covers(rules.get(r), data));
+                for(int i = 0; i < n_instances; i++) {
+                    assertEquals(rules.get(r).covers(data.get(i)), isSet(covered[r], i));
+                }
+                // no bits past the last instance
+                long[] outside = coverage.allInstances();
+                for(int w = 0; w < outside.length; w++) {
+                    assertEquals(0, covered[r][w] & ~outside[w]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void qualityIsSameAsConfusionMatrix() {
+        Instances data = SyntheticData.generate(1, 300, 3, 2, 4, 3, 0.1);
+        RuleCoverage coverage = new RuleCoverage(data);
+        Random random = new Random(1);
+        ArrayList<ExtractedRule> rules = RandomRules.generate(data, N_RULES, random);
+
+        for(ExtractedRule rule : rules) {
+            boolean[] activated = new boolean[data.size()];
+            for(int i = 0; i < activated.length; i++) {
+                activated[i] = random.nextDouble() < 0.7;
+            }
+            long[] covered = coverage.covers(rule, data);
+
+            // NaN (no positive instances) must be NaN as well
+            assertEquals(
+                    rule.quality(data, activated),
+                    coverage.quality(covered, rule.getConsequent(), toBitset(activated)),
+                    0
+            );
+        }
+    }
+
+    @Test
+    public void deactivatesCoveredAndCorrectlyClassifiedInstances() {
+        Instances data = SyntheticData.generate(2, 300, 3, 2, 4, 3, 0.1);
+        RuleCoverage coverage = new RuleCoverage(data);
+        ArrayList<ExtractedRule> rules = RandomRules.generate(data, N_RULES, new Random(2));
+
+        boolean[] expected = new boolean[data.size()];
+        Arrays.fill(expected, true);
+        long[] activated = coverage.allInstances();
+
+        for(ExtractedRule rule : rules) {
+            boolean[] covered = rule.covers(data, expected);
+            int remaining = 0;
+            for(int i = 0; i < data.size(); i++) {
+                expected[i] = expected[i] && !(covered[i] && rule.getConsequent() == data.get(i).classValue());
+                remaining += expected[i]? 1 : 0;
+            }
+            assertEquals(remaining, coverage.deactivate(activated, coverage.covers(rule, data), rule.getConsequent()));
+            assertArrayEquals(toBitset(expected), activated);
+        }
+    }
+
+    @Test
+    public void onlyRulesThatCanNeverBeSelectedAreRedundant() {
+        Instances data = SyntheticData.generate(3, 200, 2, 2, 3, 2, 0.1);
+        RuleCoverage coverage = new RuleCoverage(data);
+        ArrayList<ExtractedRule> rules = RandomRules.generate(data, N_RULES, new Random(3));
+        // duplicates of some rules, further down the list
+        rules.addAll(new ArrayList<>(rules.subList(0, N_RULES / 4)));
+
+        long[][] covered = coverage.covers(rules.toArray(new ExtractedRule[0]), data);
+        double[] consequents = new double[rules.size()];
+        for(int r = 0; r < rules.size(); r++) {
+            consequents[r] = rules.get(r).getConsequent();
+        }
+        boolean[] redundant = coverage.findRedundant(covered, consequents);
+
+        boolean[] all = new boolean[data.size()];
+        Arrays.fill(all, true);
+        for(int r = 0; r < rules.size(); r++) {
+            boolean correctsNothing = !(rules.get(r).quality(data, all) > 0);
+            boolean repeatsPrevious = false;
+            for(int k = 0; k < r && !repeatsPrevious; k++) {
+                repeatsPrevious = !redundant[k] && consequents[k] == consequents[r] &&
+                        Arrays.equals(covered[k], covered[r]);
+            }
+            assertEquals("rule " + r, correctsNothing || repeatsPrevious, redundant[r]);
+        }
+    }
+}
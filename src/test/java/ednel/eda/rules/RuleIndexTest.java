@@ -0,0 +1,69 @@
+package ednel.eda.rules;
+
+import ednel.SyntheticData;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that votes of a rule index are the same as checking every rule with {@link ExtractedRule#covers}, that is,
+ * that the index never misses a rule that covers an instance.
+ */
+public class RuleIndexTest {
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void votesAreSameAsCheckingEveryRule() {
+        for(long seed = 0; seed < 5; seed++) {
+            // thresholds of random rules are multiples of 0.05, and numeric values multiples of 0.1, so that values
+            // often fall right on thresholds
+            Instances train = SyntheticData.generate(seed, 200, 3, 3, 5, 3, 0.1);
+            Instances test = SyntheticData.generate(seed + 100, 300, 3, 3, 5, 3, 0.2);
+
+            Random random = new Random(seed);
+            ArrayList<ExtractedRule> rules = RandomRules.generate(train, 150, random);
+            ArrayList<Double> weights = RandomRules.weights(rules.size(), random);
+
+            RuleIndex index = new RuleIndex(rules, weights);
+            assertEquals(rules.size(), index.getNumRules());
+
+            double[] expectedSum = new double[test.size()];
+            double[][] expected = CompiledRuleSetTest.voteRuleByRule(rules, weights, test, expectedSum);
+            for(int i = 0; i < test.size(); i++) {
+                double[] votes = new double[test.numClasses()];
+                double votesSum = index.vote(test.get(i), votes);
+
+                assertEquals("instance " + i, expectedSum[i], votesSum, DELTA);
+                assertArrayEquals("instance " + i, expected[i], votes, DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void rulesWithoutConditionsAlwaysVote() {
+        Instances data = SyntheticData.generate(0, 50, 2, 2, 3, 2, 0.5);
+        Random random = new Random(0);
+
+        ArrayList<ExtractedRule> rules = new ArrayList<>();
+        for(ExtractedRule rule : RandomRules.generate(data, 200, random)) {
+            if(!rule.hasAntds()) {
+                rules.add(rule);
+            }
+        }
+        ArrayList<Double> weights = RandomRules.weights(rules.size(), random);
+        double total = 0;
+        for(double weight : weights) {
+            total += weight;
+        }
+
+        RuleIndex index = new RuleIndex(rules, weights);
+        for(int i = 0; i < data.size(); i++) {
+            assertEquals(total, index.vote(data.get(i), new double[data.numClasses()]), DELTA);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ednel.utils.operators;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that evaluating operators by opcode gives the same results as calling their operate method.
+ */
+public class AbstractOperatorTest {
+    private static final AbstractOperator[] OPERATORS = new AbstractOperator[]{
+            AbstractOperator.GREATER_THAN, AbstractOperator.GREATER_THAN_OR_EQUAL_TO,
+            AbstractOperator.LESS_THAN, AbstractOperator.LESS_THAN_OR_EQUAL_TO,
+            AbstractOperator.EQUAL_TO, AbstractOperator.NOT_EQUAL_TO, AbstractOperator.EQUALS_ANY
+    };
+
+    private static final double[] VALUES = new double[]{
+            Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, 0.5, 1, 2, Double.POSITIVE_INFINITY, Double.NaN
+    };
+
+    @Test
+    public void evaluateIsSameAsOperate() {
+        for(AbstractOperator operator : OPERATORS) {
+            for(double a : VALUES) {
+                for(double b : VALUES) {
+                    assertEquals(
+                            operator.getClass().getSimpleName() + "(" + a + ", " + b + ")",
+                            operator.operate(a, b),
+                            AbstractOperator.evaluate(operator.getOpcode(), a, b)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void operatorsParsedFromSymbolsHaveTheirOpcodes() throws Exception {
+        String[] symbols = new String[]{">", ">=", "<", "<=", "=", "!="};
+        byte[] opcodes = new byte[]{
+                AbstractOperator.OP_GREATER_THAN, AbstractOperator.OP_GREATER_THAN_OR_EQUAL_TO,
+                AbstractOperator.OP_LESS_THAN, AbstractOperator.OP_LESS_THAN_OR_EQUAL_TO,
+                AbstractOperator.OP_EQUAL_TO, AbstractOperator.OP_NOT_EQUAL_TO
+        };
+        for(int i = 0; i < symbols.length; i++) {
+            assertEquals(symbols[i], opcodes[i], AbstractOperator.valueOf(symbols[i]).getOpcode());
+        }
+    }
+}